@@ -62,6 +62,66 @@ public interface TicketAppConfiguration {
 	@NestedBean
 	WebServerConfiguration web_server();
 
+	/**
+	 * <p>
+	 * The codec used to encode values stored in Redis: {@code json} or {@code compact}.
+	 * </p>
+	 *
+	 * <p>
+	 * Values encoded with any of these codecs can always be decoded, values are then re-encoded with the selected codec when they are updated.
+	 * </p>
+	 *
+	 * @return the value codec
+	 */
+	default String value_codec() {
+		return "json";
+	}
+
+	/**
+	 * <p>
+	 * The maximum number of tickets kept in the in-process ticket cache, the cache is disabled when set to {@code 0}.
+	 * </p>
+	 *
+	 * <p>
+	 * Cached tickets are invalidated using Redis keyspace notifications.
+	 * </p>
+	 *
+	 * @return the ticket cache size
+	 */
+	default int ticket_cache_size() {
+		return 0;
+	}
+
+	/**
+	 * <p>
+	 * Indicates whether simple reads are executed on a dedicated multiplexed Redis connection instead of borrowing a connection from the Redis client pool.
+	 * </p>
+	 *
+	 * <p>
+	 * The size of the pool used for transactions, scripts and batches is set in the Redis configuration.
+	 * </p>
+	 *
+	 * @return true to use a dedicated read connection, false otherwise
+	 */
+	default boolean redis_read_connection() {
+		return true;
+	}
+
+	/**
+	 * <p>
+	 * The interval in milliseconds between two probes of the Redis client pool wait time, the pool is not probed when set to {@code 0} (default).
+	 * </p>
+	 *
+	 * <p>
+	 * A probe acquires and releases a pool connection, it measures the time a request would have waited at that moment, the wait time of actual requests is only measured for Redis scripts.
+	 * </p>
+	 *
+	 * @return the pool probe interval
+	 */
+	default long redis_pool_probe_interval() {
+		return 0;
+	}
+
 	default URI web_root() {
 		return URI.create("module://" + TicketAppConfiguration.class.getModule().getName() + "/static");
 	}
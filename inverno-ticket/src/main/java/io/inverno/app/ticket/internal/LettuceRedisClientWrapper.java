@@ -0,0 +1,119 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal;
+
+import io.inverno.app.ticket.TicketAppConfiguration;
+import io.inverno.app.ticket.internal.exception.TicketException;
+import io.inverno.core.annotation.Bean;
+import io.inverno.core.annotation.Destroy;
+import io.inverno.core.annotation.Init;
+import io.inverno.core.annotation.Wrapper;
+import io.inverno.mod.redis.lettuce.LettuceRedisClientConfiguration;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisException;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
+import java.time.Duration;
+import java.util.function.Supplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <p>
+ * Provides the Lettuce Redis client used for features not exposed by the Inverno Redis client such as Pub/Sub or dedicated connections.
+ * </p>
+ * 
+ * <p>
+ * The client connects to the Redis server specified in the Redis configuration with the same settings as the Inverno Redis client (TLS, authentication, database, client name and timeout). A single
+ * client is shared by all components so that they share the same client resources (event loops and timers), each component is responsible for closing the connections it opens.
+ * </p>
+ * 
+ * <p>
+ * Some scripts access keys derived from data stored in Redis which can't be declared in their KEYS (eg. the status counters of the plans of a ticket), the application then requires a standalone
+ * Redis server: startup fails when the server has cluster mode enabled.
+ * </p>
+ * 
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+@Bean( name = "lettuceRedisClient", visibility = Bean.Visibility.PRIVATE )
+@Wrapper
+public class LettuceRedisClientWrapper implements Supplier<RedisClient> {
+
+	private static final Logger LOGGER = LogManager.getLogger(LettuceRedisClientWrapper.class);
+	
+	private final LettuceRedisClientConfiguration redisConfiguration;
+	
+	private ClientResources resources;
+	private RedisClient client;
+
+	public LettuceRedisClientWrapper(TicketAppConfiguration configuration) {
+		this.redisConfiguration = configuration.redis();
+	}
+	
+	@Init
+	public void init() {
+		RedisURI.Builder uriBuilder = RedisURI.Builder.redis(this.redisConfiguration.host(), this.redisConfiguration.port())
+			.withSsl(this.redisConfiguration.tls())
+			.withDatabase(this.redisConfiguration.database())
+			.withTimeout(Duration.ofMillis(this.redisConfiguration.timeout()));
+		if(this.redisConfiguration.password() != null) {
+			if(this.redisConfiguration.username() != null) {
+				uriBuilder.withAuthentication(this.redisConfiguration.username(), this.redisConfiguration.password());
+			}
+			else {
+				uriBuilder.withPassword(this.redisConfiguration.password().toCharArray());
+			}
+		}
+		if(this.redisConfiguration.client_name() != null) {
+			uriBuilder.withClientName(this.redisConfiguration.client_name());
+		}
+		this.resources = DefaultClientResources.create();
+		this.client = RedisClient.create(this.resources, uriBuilder.build());
+		this.checkStandalone();
+	}
+	
+	private void checkStandalone() {
+		boolean clusterEnabled;
+		try(StatefulRedisConnection<String, String> connection = this.client.connect()) {
+			clusterEnabled = connection.sync().info("cluster").contains("cluster_enabled:1");
+		}
+		catch(RedisException e) {
+			LOGGER.warn("Failed to check Redis server mode, a standalone Redis server is required", e);
+			return;
+		}
+		if(clusterEnabled) {
+			this.destroy();
+			throw new TicketException("Redis cluster is not supported, a standalone Redis server is required");
+		}
+	}
+	
+	@Destroy
+	public void destroy() {
+		if(this.client != null) {
+			this.client.shutdown();
+		}
+		if(this.resources != null) {
+			this.resources.shutdown();
+		}
+	}
+	
+	@Override
+	public RedisClient get() {
+		return this.client;
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal;
+
+import io.inverno.app.ticket.TicketAppConfiguration;
+import io.inverno.core.annotation.Bean;
+import io.inverno.core.annotation.Destroy;
+import io.inverno.core.annotation.Init;
+import io.inverno.mod.redis.RedisTransactionalClient;
+import java.time.Duration;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * <p>
+ * Monitors the time spent waiting for a connection from the Redis client pool.
+ * </p>
+ * 
+ * <p>
+ * The wait time of actual requests is measured when a connection is borrowed to execute a Redis script (see {@link RedisPoolWaitTimes#SCRIPTS}), other commands borrow connections internally in the
+ * Redis client and can't be measured.
+ * </p>
+ * 
+ * <p>
+ * The pool can also be probed periodically by acquiring and releasing a connection without sending any command: probes wait in the same queue as application requests, the time to acquire a
+ * connection is then the time a request would have waited at that moment. Probes are disabled by default.
+ * </p>
+ * 
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+@Bean( name = "redisPoolMonitor", visibility = Bean.Visibility.PRIVATE )
+public class RedisPoolMonitor {
+
+	private static final Logger LOGGER = LogManager.getLogger(RedisPoolMonitor.class);
+	
+	private final RedisTransactionalClient<String, String> redisClient;
+	private final long probeInterval;
+	
+	private final RedisPoolWaitTimes probeWaitTimes;
+	
+	private Disposable probe;
+
+	public RedisPoolMonitor(TicketAppConfiguration configuration, RedisTransactionalClient<String, String> redisClient) {
+		this.redisClient = redisClient;
+		this.probeInterval = configuration.redis_pool_probe_interval();
+		this.probeWaitTimes = new RedisPoolWaitTimes();
+	}
+	
+	@Init
+	public void init() {
+		if(!this.isEnabled()) {
+			return;
+		}
+		this.probe = Flux.interval(Duration.ofMillis(this.probeInterval))
+			.onBackpressureDrop()
+			.concatMap(ign -> this.sample())
+			.subscribe();
+	}
+	
+	@Destroy
+	public void destroy() {
+		if(this.probe != null) {
+			this.probe.dispose();
+		}
+	}
+	
+	private Mono<Long> sample() {
+		return Mono.defer(() -> {
+				long start = System.nanoTime();
+				return Flux.from(this.redisClient.connection(operations -> Mono.just(System.nanoTime() - start))).next();
+			})
+			.doOnNext(this.probeWaitTimes::record)
+			.onErrorResume(e -> {
+				LOGGER.warn("Failed to probe Redis connection pool", e);
+				return Mono.empty();
+			});
+	}
+	
+	/**
+	 * <p>
+	 * Determines whether the pool is probed.
+	 * </p>
+	 * 
+	 * @return true if the pool is probed, false otherwise
+	 */
+	public boolean isEnabled() {
+		return this.probeInterval > 0;
+	}
+	
+	/**
+	 * <p>
+	 * Returns the number of pool probes.
+	 * </p>
+	 * 
+	 * @return the number of probes
+	 */
+	public long getProbes() {
+		return this.probeWaitTimes.getCount();
+	}
+	
+	/**
+	 * <p>
+	 * Returns the pool wait time of the last probe in microseconds.
+	 * </p>
+	 * 
+	 * @return the last probe wait time
+	 */
+	public long getProbeLastWait() {
+		return this.probeWaitTimes.getLastWait();
+	}
+	
+	/**
+	 * <p>
+	 * Returns the average pool wait time of probes in microseconds.
+	 * </p>
+	 * 
+	 * @return the average probe wait time
+	 */
+	public long getProbeAverageWait() {
+		return this.probeWaitTimes.getAverageWait();
+	}
+	
+	/**
+	 * <p>
+	 * Returns the maximum pool wait time of probes in microseconds.
+	 * </p>
+	 * 
+	 * @return the maximum probe wait time
+	 */
+	public long getProbeMaxWait() {
+		return this.probeWaitTimes.getMaxWait();
+	}
+	
+	/**
+	 * <p>
+	 * Returns the number of connections borrowed from the pool to execute scripts.
+	 * </p>
+	 * 
+	 * @return the number of timed acquisitions
+	 */
+	public long getAcquisitions() {
+		return RedisPoolWaitTimes.SCRIPTS.getCount();
+	}
+	
+	/**
+	 * <p>
+	 * Returns the pool wait time of the last script in microseconds.
+	 * </p>
+	 * 
+	 * @return the last acquisition wait time
+	 */
+	public long getAcquisitionLastWait() {
+		return RedisPoolWaitTimes.SCRIPTS.getLastWait();
+	}
+	
+	/**
+	 * <p>
+	 * Returns the average pool wait time of scripts in microseconds.
+	 * </p>
+	 * 
+	 * @return the average acquisition wait time
+	 */
+	public long getAcquisitionAverageWait() {
+		return RedisPoolWaitTimes.SCRIPTS.getAverageWait();
+	}
+	
+	/**
+	 * <p>
+	 * Returns the maximum pool wait time of scripts in microseconds.
+	 * </p>
+	 * 
+	 * @return the maximum acquisition wait time
+	 */
+	public long getAcquisitionMaxWait() {
+		return RedisPoolWaitTimes.SCRIPTS.getMaxWait();
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Statistics of the time spent waiting for a connection from the Redis client pool.
+ * </p>
+ * 
+ * <p>
+ * Wait times are recorded in nanoseconds and reported in microseconds. Connections borrowed to execute Redis scripts, which perform all writes, are timed in {@link #SCRIPTS}, scripts are shared by
+ * all services, these statistics are then global to the application.
+ * </p>
+ * 
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+public final class RedisPoolWaitTimes {
+
+	/**
+	 * The wait times of the connections borrowed to execute Redis scripts.
+	 */
+	public static final RedisPoolWaitTimes SCRIPTS = new RedisPoolWaitTimes();
+	
+	private final LongAdder count;
+	private final LongAdder totalWait;
+	private final AtomicLong lastWait;
+	private final AtomicLong maxWait;
+
+	public RedisPoolWaitTimes() {
+		this.count = new LongAdder();
+		this.totalWait = new LongAdder();
+		this.lastWait = new AtomicLong();
+		this.maxWait = new AtomicLong();
+	}
+	
+	/**
+	 * <p>
+	 * Records a wait time.
+	 * </p>
+	 * 
+	 * @param wait the wait time in nanoseconds
+	 */
+	public void record(long wait) {
+		this.count.increment();
+		this.totalWait.add(wait);
+		this.lastWait.set(wait);
+		this.maxWait.accumulateAndGet(wait, Math::max);
+	}
+	
+	/**
+	 * <p>
+	 * Returns the number of recorded wait times.
+	 * </p>
+	 * 
+	 * @return the number of wait times
+	 */
+	public long getCount() {
+		return this.count.sum();
+	}
+	
+	/**
+	 * <p>
+	 * Returns the last wait time in microseconds.
+	 * </p>
+	 * 
+	 * @return the last wait time
+	 */
+	public long getLastWait() {
+		return TimeUnit.NANOSECONDS.toMicros(this.lastWait.get());
+	}
+	
+	/**
+	 * <p>
+	 * Returns the average wait time in microseconds.
+	 * </p>
+	 * 
+	 * @return the average wait time
+	 */
+	public long getAverageWait() {
+		long waitCount = this.count.sum();
+		return waitCount > 0 ? TimeUnit.NANOSECONDS.toMicros(this.totalWait.sum() / waitCount) : 0;
+	}
+	
+	/**
+	 * <p>
+	 * Returns the maximum wait time in microseconds.
+	 * </p>
+	 * 
+	 * @return the maximum wait time
+	 */
+	public long getMaxWait() {
+		return TimeUnit.NANOSECONDS.toMicros(this.maxWait.get());
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal;
+
+import io.inverno.app.ticket.TicketAppConfiguration;
+import io.inverno.core.annotation.Bean;
+import io.inverno.core.annotation.Destroy;
+import io.inverno.core.annotation.Init;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.reactive.RedisReactiveCommands;
+import java.util.concurrent.atomic.LongAdder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * <p>
+ * A dedicated Redis connection used to execute simple reads without borrowing a connection from the Redis client pool.
+ * </p>
+ * 
+ * <p>
+ * The connection is multiplexed: it is shared by all callers and commands issued concurrently are pipelined. It must not be used for transactions or blocking commands which would hold the
+ * connection.
+ * </p>
+ * 
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+@Bean( name = "redisReadConnection", visibility = Bean.Visibility.PRIVATE )
+public class RedisReadConnection {
+
+	private final RedisClient client;
+	private final boolean enabled;
+	
+	private final LongAdder commands;
+	
+	private StatefulRedisConnection<String, String> connection;
+
+	public RedisReadConnection(TicketAppConfiguration configuration, RedisClient lettuceRedisClient) {
+		this.client = lettuceRedisClient;
+		this.enabled = configuration.redis_read_connection();
+		this.commands = new LongAdder();
+	}
+	
+	@Init
+	public void init() {
+		if(!this.enabled) {
+			return;
+		}
+		this.connection = this.client.connect();
+	}
+	
+	@Destroy
+	public void destroy() {
+		if(this.connection != null) {
+			this.connection.close();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Determines whether reads should be executed on the read connection.
+	 * </p>
+	 * 
+	 * @return true if the read connection is enabled, false otherwise
+	 */
+	public boolean isEnabled() {
+		return this.enabled && this.connection != null;
+	}
+	
+	/**
+	 * <p>
+	 * Returns the reactive commands of the read connection.
+	 * </p>
+	 * 
+	 * <p>
+	 * Commands should be passed to {@link #read(Mono)} or {@link #read(Flux)} in order to be counted.
+	 * </p>
+	 * 
+	 * @return reactive commands
+	 */
+	public RedisReactiveCommands<String, String> reactive() {
+		return this.connection.reactive();
+	}
+	
+	/**
+	 * <p>
+	 * Counts the specified command when it is sent to Redis, that is when it is subscribed.
+	 * </p>
+	 * 
+	 * @param <T>     the type of result
+	 * @param command a command created from {@link #reactive()}
+	 * 
+	 * @return the counted command
+	 */
+	public <T> Mono<T> read(Mono<T> command) {
+		return command.doOnSubscribe(ign -> this.commands.increment());
+	}
+	
+	/**
+	 * <p>
+	 * Counts the specified command when it is sent to Redis, that is when it is subscribed.
+	 * </p>
+	 * 
+	 * @param <T>     the type of results
+	 * @param command a command created from {@link #reactive()}
+	 * 
+	 * @return the counted command
+	 */
+	public <T> Flux<T> read(Flux<T> command) {
+		return command.doOnSubscribe(ign -> this.commands.increment());
+	}
+	
+	/**
+	 * <p>
+	 * Returns the number of commands sent on the read connection.
+	 * </p>
+	 * 
+	 * @return the number of commands
+	 */
+	public long getCommands() {
+		return this.commands.sum();
+	}
+}
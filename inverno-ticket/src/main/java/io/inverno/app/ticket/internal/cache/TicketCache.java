@@ -0,0 +1,169 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal.cache;
+
+import io.inverno.app.ticket.internal.model.Ticket;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * A size-bounded, least recently used, in-process cache of {@link Ticket}.
+ * </p>
+ * 
+ * <p>
+ * Tickets are mutable, copies are then stored and returned. In order to prevent a stale ticket from being cached when it is invalidated while it is read from Redis, a ticket must be put along with
+ * the invalidation mark of its id obtained before reading it, it is only cached when the ticket was not invalidated in between.
+ * </p>
+ * 
+ * <p>
+ * Invalidations are tracked per stripe of ticket ids in order to bound memory: the invalidation of a ticket only prevents concurrent reads of tickets in the same stripe from being cached.
+ * </p>
+ * 
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+public class TicketCache {
+
+	private static final int INVALIDATION_STRIPES = 1024;
+	
+	private final int maxSize;
+	
+	private final Map<Long, Ticket> tickets;
+	
+	private final AtomicLongArray marks;
+	private final LongAdder invalidations;
+	
+	private final LongAdder hits;
+	private final LongAdder misses;
+	private final LongAdder evictions;
+	
+	public TicketCache(int maxSize) {
+		this.maxSize = maxSize;
+		this.tickets = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Ticket> eldest) {
+				if(this.size() > TicketCache.this.maxSize) {
+					TicketCache.this.evictions.increment();
+					return true;
+				}
+				return false;
+			}
+		};
+		this.marks = new AtomicLongArray(INVALIDATION_STRIPES);
+		this.invalidations = new LongAdder();
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.evictions = new LongAdder();
+	}
+	
+	public boolean isEnabled() {
+		return this.maxSize > 0;
+	}
+	
+	public Ticket get(long ticketId) {
+		Ticket ticket;
+		synchronized(this.tickets) {
+			ticket = this.tickets.get(ticketId);
+		}
+		if(ticket == null) {
+			this.misses.increment();
+			return null;
+		}
+		this.hits.increment();
+		return copy(ticket);
+	}
+	
+	public long mark(long ticketId) {
+		return this.marks.get(stripe(ticketId));
+	}
+	
+	public void put(Ticket ticket, long mark) {
+		if(!this.isEnabled()) {
+			return;
+		}
+		Ticket copy = copy(ticket);
+		synchronized(this.tickets) {
+			if(this.marks.get(stripe(copy.getId())) == mark) {
+				this.tickets.put(copy.getId(), copy);
+			}
+		}
+	}
+	
+	public void invalidate(long ticketId) {
+		synchronized(this.tickets) {
+			this.marks.incrementAndGet(stripe(ticketId));
+			this.invalidations.increment();
+			this.tickets.remove(ticketId);
+		}
+	}
+	
+	public void invalidateAll() {
+		synchronized(this.tickets) {
+			for(int i = 0; i < INVALIDATION_STRIPES; i++) {
+				this.marks.incrementAndGet(i);
+			}
+			this.invalidations.increment();
+			this.tickets.clear();
+		}
+	}
+	
+	public int getMaxSize() {
+		return this.maxSize;
+	}
+	
+	public int getSize() {
+		synchronized(this.tickets) {
+			return this.tickets.size();
+		}
+	}
+	
+	public long getHits() {
+		return this.hits.sum();
+	}
+	
+	public long getMisses() {
+		return this.misses.sum();
+	}
+	
+	public long getEvictions() {
+		return this.evictions.sum();
+	}
+	
+	public long getInvalidations() {
+		return this.invalidations.sum();
+	}
+	
+	private static int stripe(long ticketId) {
+		return Long.hashCode(ticketId) & (INVALIDATION_STRIPES - 1);
+	}
+	
+	/**
+	 * <p>
+	 * Returns a copy of a ticket.
+	 * </p>
+	 * 
+	 * @param ticket a ticket
+	 * 
+	 * @return a copy of the ticket
+	 */
+	public static Ticket copy(Ticket ticket) {
+		Ticket copy = new Ticket(ticket.getId(), ticket.getType(), ticket.getStatus(), ticket.getTitle(), ticket.getSummary(), ticket.getDescription(), ticket.getCreationDateTime());
+		copy.setVersion(ticket.getVersion());
+		return copy;
+	}
+}
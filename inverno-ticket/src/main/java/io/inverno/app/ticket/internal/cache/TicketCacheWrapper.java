@@ -0,0 +1,172 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal.cache;
+
+import io.inverno.app.ticket.TicketApp;
+import io.inverno.app.ticket.TicketAppConfiguration;
+import io.inverno.core.annotation.Bean;
+import io.inverno.core.annotation.Destroy;
+import io.inverno.core.annotation.Init;
+import io.inverno.core.annotation.Wrapper;
+import io.inverno.mod.redis.lettuce.LettuceRedisClientConfiguration;
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisConnectionStateListener;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import java.net.SocketAddress;
+import java.util.function.Supplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <p>
+ * Provides the ticket cache sized in the application configuration and keeps it coherent with Redis.
+ * </p>
+ * 
+ * <p>
+ * Tickets are invalidated when Redis keyspace notifications are received for their keys, which allows multiple application instances to share the same data store. The whole cache is invalidated
+ * when the notification connection is lost since notifications might have been missed.
+ * </p>
+ * 
+ * <p>
+ * Keyspace notifications must be enabled in Redis configuration, the cache is disabled when required events are missing since tickets updated by other instances could never be invalidated.
+ * </p>
+ * 
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+@Bean( name = "ticketCache", visibility = Bean.Visibility.PRIVATE )
+@Wrapper
+public class TicketCacheWrapper implements Supplier<TicketCache> {
+
+	private static final Logger LOGGER = LogManager.getLogger(TicketCacheWrapper.class);
+	
+	private static final String KEYSPACE_CHANNEL_PREFIX = "__keyspace@";
+	private static final String KEYSPACE_CHANNEL_SEPARATOR = "__:";
+	private static final String TICKET_KEY_PREFIX = TicketApp.REDIS_KEY + ":Ticket:";
+	
+	/**
+	 * Keyspace events required to track ticket updates: keyspace notifications, generic commands (DEL, RENAME...) and hash commands.
+	 */
+	private static final String NOTIFY_KEYSPACE_EVENTS = "Kgh";
+	
+	private final LettuceRedisClientConfiguration redisConfiguration;
+	private final RedisClient client;
+	private TicketCache cache;
+	
+	private RedisConnectionStateListener connectionStateListener;
+	private volatile StatefulRedisPubSubConnection<String, String> connection;
+
+	public TicketCacheWrapper(TicketAppConfiguration configuration, RedisClient lettuceRedisClient) {
+		this.redisConfiguration = configuration.redis();
+		this.client = lettuceRedisClient;
+		this.cache = new TicketCache(configuration.ticket_cache_size());
+	}
+	
+	@Init
+	public void init() {
+		if(!this.cache.isEnabled()) {
+			return;
+		}
+		// The client is shared, only events of the notification connection are considered, the connection is not yet assigned on first connect when the cache is empty anyway
+		this.connectionStateListener = new RedisConnectionStateListener() {
+			
+			@Override
+			public void onRedisConnected(RedisChannelHandler<?, ?> connection, SocketAddress socketAddress) {
+				if(connection == TicketCacheWrapper.this.connection) {
+					TicketCacheWrapper.this.cache.invalidateAll();
+				}
+			}
+
+			@Override
+			public void onRedisDisconnected(RedisChannelHandler<?, ?> connection) {
+				if(connection == TicketCacheWrapper.this.connection) {
+					TicketCacheWrapper.this.cache.invalidateAll();
+				}
+			}
+
+			@Override
+			public void onRedisExceptionCaught(RedisChannelHandler<?, ?> connection, Throwable cause) {
+				if(connection == TicketCacheWrapper.this.connection) {
+					LOGGER.warn("Error on ticket cache invalidation connection", cause);
+				}
+			}
+		};
+		this.client.addListener(this.connectionStateListener);
+		this.connection = this.client.connectPubSub();
+		if(!this.checkKeyspaceEvents()) {
+			this.destroy();
+			this.connectionStateListener = null;
+			this.connection = null;
+			this.cache = new TicketCache(0);
+			return;
+		}
+		this.connection.addListener(new RedisPubSubAdapter<>() {
+			
+			@Override
+			public void message(String pattern, String channel, String message) {
+				TicketCacheWrapper.this.onKeyspaceEvent(channel);
+			}
+		});
+		this.connection.sync().psubscribe(KEYSPACE_CHANNEL_PREFIX + this.redisConfiguration.database() + KEYSPACE_CHANNEL_SEPARATOR + TICKET_KEY_PREFIX + "*");
+	}
+	
+	@Destroy
+	public void destroy() {
+		if(this.connectionStateListener != null) {
+			this.client.removeListener(this.connectionStateListener);
+		}
+		if(this.connection != null) {
+			this.connection.close();
+		}
+	}
+	
+	private boolean checkKeyspaceEvents() {
+		String events;
+		try {
+			events = this.connection.sync().configGet("notify-keyspace-events").getOrDefault("notify-keyspace-events", "");
+		}
+		catch(RuntimeException e) {
+			LOGGER.warn("Ticket cache disabled: failed to check keyspace notifications, notify-keyspace-events must include " + NOTIFY_KEYSPACE_EVENTS + " in Redis configuration", e);
+			return false;
+		}
+		for(char flag : NOTIFY_KEYSPACE_EVENTS.toCharArray()) {
+			// A is an alias for all event classes
+			if(events.indexOf(flag) == -1 && (flag == 'K' || events.indexOf('A') == -1)) {
+				LOGGER.warn("Ticket cache disabled: notify-keyspace-events is \"" + events + "\" and must include " + NOTIFY_KEYSPACE_EVENTS + " in Redis configuration");
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private void onKeyspaceEvent(String channel) {
+		int keyIndex = channel.indexOf(KEYSPACE_CHANNEL_SEPARATOR);
+		if(keyIndex == -1 || !channel.startsWith(TICKET_KEY_PREFIX, keyIndex + KEYSPACE_CHANNEL_SEPARATOR.length())) {
+			return;
+		}
+		String ticketId = channel.substring(keyIndex + KEYSPACE_CHANNEL_SEPARATOR.length() + TICKET_KEY_PREFIX.length());
+		// Only ticket hashes are cached, notes and status indexes share the same prefix
+		if(!ticketId.isEmpty() && ticketId.chars().allMatch(Character::isDigit)) {
+			this.cache.invalidate(Long.parseLong(ticketId));
+		}
+	}
+	
+	@Override
+	public TicketCache get() {
+		return this.cache;
+	}
+}
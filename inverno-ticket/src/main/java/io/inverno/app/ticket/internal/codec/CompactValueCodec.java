@@ -0,0 +1,99 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal.codec;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.inverno.app.ticket.internal.model.Note;
+import io.inverno.app.ticket.internal.model.Plan;
+import io.inverno.app.ticket.internal.model.Ticket;
+import java.io.UncheckedIOException;
+
+/**
+ * <p>
+ * Compact value codec.
+ * </p>
+ * 
+ * <p>
+ * Domain objects are encoded as JSON arrays of property values ordered as specified in the domain class and date times are encoded as epoch milliseconds. This drops property names and ISO date
+ * times from stored values, as a result properties must only be appended to domain classes in order to be able to decode existing values.
+ * </p>
+ * 
+ * <p>
+ * Encoded values are prefixed with a format version header ({@code #1[...]}) which must be incremented, along with decoding support for previous versions, when the property order of a domain
+ * class is changed. Values without header were encoded before the header was introduced and follow the format version 1.
+ * </p>
+ * 
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+public class CompactValueCodec implements ValueCodec {
+
+	/**
+	 * The format version header prefix.
+	 */
+	public static final char FORMAT_HEADER_PREFIX = '#';
+	
+	/**
+	 * The current format version.
+	 */
+	public static final int FORMAT_VERSION = 1;
+	
+	private static final String FORMAT_HEADER = FORMAT_HEADER_PREFIX + Integer.toString(FORMAT_VERSION);
+	
+	private final ObjectMapper mapper;
+
+	public CompactValueCodec(ObjectMapper mapper) {
+		this.mapper = mapper.copy()
+			.enable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+			.disable(SerializationFeature.WRITE_DATE_TIMESTAMPS_AS_NANOSECONDS)
+			.disable(DeserializationFeature.READ_DATE_TIMESTAMPS_AS_NANOSECONDS);
+		
+		JsonFormat.Value arrayFormat = JsonFormat.Value.forShape(JsonFormat.Shape.ARRAY);
+		this.mapper.configOverride(Ticket.class).setFormat(arrayFormat);
+		this.mapper.configOverride(Plan.class).setFormat(arrayFormat);
+		this.mapper.configOverride(Note.class).setFormat(arrayFormat);
+	}
+	
+	@Override
+	public String encode(Object value) {
+		try {
+			return FORMAT_HEADER + this.mapper.writeValueAsString(value);
+		}
+		catch (JsonProcessingException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	@Override
+	public <T> T decode(String value, Class<T> type) {
+		if(!value.isEmpty() && value.charAt(0) == FORMAT_HEADER_PREFIX) {
+			int valueIndex = value.indexOf('[');
+			if(valueIndex == -1 || !value.substring(1, valueIndex).equals(Integer.toString(FORMAT_VERSION))) {
+				throw new IllegalArgumentException("Unsupported compact value format: " + value.substring(0, valueIndex == -1 ? value.length() : valueIndex));
+			}
+			value = value.substring(valueIndex);
+		}
+		try {
+			return this.mapper.readValue(value, type);
+		}
+		catch (JsonProcessingException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal.codec;
+
+/**
+ * <p>
+ * A value codec that encodes values using a specific codec and decodes values encoded with either the {@link JsonValueCodec} or the {@link CompactValueCodec}.
+ * </p>
+ * 
+ * <p>
+ * This allows to switch codec without migrating existing values which are eventually re-encoded when updated.
+ * </p>
+ * 
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+public class FormatDetectingValueCodec implements ValueCodec {
+
+	private final ValueCodec encoder;
+	private final JsonValueCodec jsonCodec;
+	private final CompactValueCodec compactCodec;
+
+	public FormatDetectingValueCodec(ValueCodec encoder, JsonValueCodec jsonCodec, CompactValueCodec compactCodec) {
+		this.encoder = encoder;
+		this.jsonCodec = jsonCodec;
+		this.compactCodec = compactCodec;
+	}
+	
+	@Override
+	public String encode(Object value) {
+		return this.encoder.encode(value);
+	}
+
+	@Override
+	public <T> T decode(String value, Class<T> type) {
+		// JSON objects vs compact JSON arrays, with or without format version header
+		if(!value.isEmpty() && (value.charAt(0) == CompactValueCodec.FORMAT_HEADER_PREFIX || value.charAt(0) == '[')) {
+			return this.compactCodec.decode(value, type);
+		}
+		return this.jsonCodec.decode(value, type);
+	}
+}
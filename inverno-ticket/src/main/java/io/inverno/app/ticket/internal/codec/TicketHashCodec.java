@@ -0,0 +1,157 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal.codec;
+
+import io.inverno.app.ticket.internal.model.Ticket;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Encodes/decodes {@link Ticket} to/from Redis hash fields.
+ * </p>
+ * 
+ * <p>
+ * Each ticket property is stored in its own hash field which allows to update or read specific properties, creation date time is stored as epoch milliseconds so it can be directly used as a score
+ * in sorted sets.
+ * </p>
+ * 
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+public final class TicketHashCodec {
+
+	public static final String FIELD_ID = "id";
+	public static final String FIELD_TYPE = "type";
+	public static final String FIELD_STATUS = "status";
+	public static final String FIELD_CREATION_DATE_TIME = "creationDateTime";
+	public static final String FIELD_TITLE = "title";
+	public static final String FIELD_SUMMARY = "summary";
+	public static final String FIELD_DESCRIPTION = "description";
+	public static final String FIELD_VERSION = "version";
+	
+	/**
+	 * All ticket fields.
+	 */
+	public static final List<String> FIELDS = List.of(FIELD_ID, FIELD_TYPE, FIELD_STATUS, FIELD_CREATION_DATE_TIME, FIELD_TITLE, FIELD_SUMMARY, FIELD_DESCRIPTION, FIELD_VERSION);
+	
+	/**
+	 * Ticket fields required to display a ticket in a list.
+	 */
+	public static final List<String> SUMMARY_FIELDS = List.of(FIELD_ID, FIELD_TYPE, FIELD_STATUS, FIELD_CREATION_DATE_TIME, FIELD_TITLE, FIELD_SUMMARY, FIELD_VERSION);
+	
+	private TicketHashCodec() {}
+	
+	/**
+	 * <p>
+	 * Encodes a ticket into hash fields, null properties are ignored.
+	 * </p>
+	 * 
+	 * <p>
+	 * The version is not encoded since it is incremented by Redis scripts on each write.
+	 * </p>
+	 * 
+	 * @param ticket a ticket
+	 * 
+	 * @return a map of hash fields
+	 */
+	public static Map<String, String> encode(Ticket ticket) {
+		Map<String, String> hash = new LinkedHashMap<>();
+		if(ticket.getId() != null) {
+			hash.put(FIELD_ID, ticket.getId().toString());
+		}
+		if(ticket.getType() != null) {
+			hash.put(FIELD_TYPE, ticket.getType().name());
+		}
+		if(ticket.getStatus() != null) {
+			hash.put(FIELD_STATUS, ticket.getStatus().name());
+		}
+		if(ticket.getCreationDateTime() != null) {
+			hash.put(FIELD_CREATION_DATE_TIME, Long.toString(ticket.getCreationDateTime().toInstant().toEpochMilli()));
+		}
+		if(ticket.getTitle() != null) {
+			hash.put(FIELD_TITLE, ticket.getTitle());
+		}
+		if(ticket.getSummary() != null) {
+			hash.put(FIELD_SUMMARY, ticket.getSummary());
+		}
+		if(ticket.getDescription() != null) {
+			hash.put(FIELD_DESCRIPTION, ticket.getDescription());
+		}
+		return hash;
+	}
+	
+	/**
+	 * <p>
+	 * Decodes a ticket from hash fields.
+	 * </p>
+	 * 
+	 * @param hash a map of hash fields
+	 * 
+	 * @return a ticket or null if the hash fields do not contain a ticket id (ie. the ticket does not exist)
+	 */
+	public static Ticket decode(Map<String, String> hash) {
+		String id = hash.get(FIELD_ID);
+		if(id == null) {
+			return null;
+		}
+		Ticket ticket = new Ticket();
+		ticket.setId(Long.parseLong(id));
+		String type = hash.get(FIELD_TYPE);
+		if(type != null) {
+			ticket.setType(Ticket.Type.valueOf(type));
+		}
+		String status = hash.get(FIELD_STATUS);
+		if(status != null) {
+			ticket.setStatus(Ticket.Status.valueOf(status));
+		}
+		String creationDateTime = hash.get(FIELD_CREATION_DATE_TIME);
+		if(creationDateTime != null) {
+			ticket.setCreationDateTime(ZonedDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(creationDateTime)), ZoneOffset.UTC));
+		}
+		ticket.setTitle(hash.get(FIELD_TITLE));
+		ticket.setSummary(hash.get(FIELD_SUMMARY));
+		ticket.setDescription(hash.get(FIELD_DESCRIPTION));
+		// Tickets created before versioning was introduced have no version
+		String version = hash.get(FIELD_VERSION);
+		ticket.setVersion(version != null ? Long.parseLong(version) : 0l);
+		return ticket;
+	}
+	
+	/**
+	 * <p>
+	 * Decodes a ticket from a list of hash field values as returned by an {@code HMGET} command.
+	 * </p>
+	 * 
+	 * @param fields the hash fields
+	 * @param values the hash field values in the same order as the fields
+	 * 
+	 * @return a ticket or null if the hash fields do not contain a ticket id (ie. the ticket does not exist)
+	 */
+	public static Ticket decode(List<String> fields, List<?> values) {
+		Map<String, String> hash = new LinkedHashMap<>();
+		for(int i = 0;i < fields.size() && i < values.size();i++) {
+			Object value = values.get(i);
+			if(value != null) {
+				hash.put(fields.get(i), value.toString());
+			}
+		}
+		return decode(hash);
+	}
+}
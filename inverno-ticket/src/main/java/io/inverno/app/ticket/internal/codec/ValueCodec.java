@@ -0,0 +1,52 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal.codec;
+
+/**
+ * <p>
+ * Encodes/decodes domain objects to/from the values stored in Redis data store.
+ * </p>
+ * 
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+public interface ValueCodec {
+
+	/**
+	 * <p>
+	 * Encodes a domain object.
+	 * </p>
+	 * 
+	 * @param value the object to encode
+	 * 
+	 * @return an encoded value
+	 * @throws java.io.UncheckedIOException if the object could not be encoded
+	 */
+	String encode(Object value);
+	
+	/**
+	 * <p>
+	 * Decodes a domain object.
+	 * </p>
+	 * 
+	 * @param <T>   the type of object
+	 * @param value the encoded value
+	 * @param type  the type of object
+	 * 
+	 * @return a domain object
+	 * @throws java.io.UncheckedIOException if the value could not be decoded
+	 */
+	<T> T decode(String value, Class<T> type);
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.inverno.app.ticket.TicketAppConfiguration;
+import io.inverno.core.annotation.Bean;
+import io.inverno.core.annotation.Wrapper;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * Provides the value codec selected in the application configuration.
+ * </p>
+ * 
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+@Bean( name = "valueCodec", visibility = Bean.Visibility.PRIVATE )
+@Wrapper
+public class ValueCodecWrapper implements Supplier<ValueCodec> {
+
+	public static final String CODEC_JSON = "json";
+	public static final String CODEC_COMPACT = "compact";
+	
+	private final ValueCodec codec;
+
+	public ValueCodecWrapper(TicketAppConfiguration configuration, ObjectMapper mapper) {
+		JsonValueCodec jsonCodec = new JsonValueCodec(mapper);
+		CompactValueCodec compactCodec = new CompactValueCodec(mapper);
+		switch(configuration.value_codec()) {
+			case CODEC_JSON: this.codec = new FormatDetectingValueCodec(jsonCodec, jsonCodec, compactCodec);
+				break;
+			case CODEC_COMPACT: this.codec = new FormatDetectingValueCodec(compactCodec, jsonCodec, compactCodec);
+				break;
+			default: throw new IllegalArgumentException("Unsupported value codec: " + configuration.value_codec());
+		}
+	}
+	
+	@Override
+	public ValueCodec get() {
+		return this.codec;
+	}
+}
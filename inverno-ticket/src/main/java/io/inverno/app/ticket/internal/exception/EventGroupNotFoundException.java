@@ -0,0 +1,49 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal.exception;
+
+/**
+ * <p>
+ * Thrown when trying to read events with a consumer group that does not exist.
+ * </p>
+ * 
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+public class EventGroupNotFoundException extends TicketException {
+
+	private static final String MESSAGE_PATTERN = "Event group %s was not found";
+	
+	private final String group;
+	
+	public EventGroupNotFoundException(String group) {
+		super(String.format(MESSAGE_PATTERN, group));
+		this.group = group;
+	}
+
+	public EventGroupNotFoundException(String group, Throwable cause) {
+		super(String.format(MESSAGE_PATTERN, group), cause);
+		this.group = group;
+	}
+
+	public EventGroupNotFoundException(String group, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+		super(String.format(MESSAGE_PATTERN, group), cause, enableSuppression, writableStackTrace);
+		this.group = group;
+	}
+
+	public String getGroup() {
+		return group;
+	}
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal.exception;
+
+/**
+ * <p>
+ * Thrown when trying to update an entity whose current version is not the expected version.
+ * </p>
+ * 
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+public class VersionMismatchException extends TicketException {
+
+	private static final String MESSAGE_PATTERN = "Version mismatch: expected %d";
+	
+	private final long expectedVersion;
+	
+	public VersionMismatchException(long expectedVersion) {
+		super(String.format(MESSAGE_PATTERN, expectedVersion));
+		this.expectedVersion = expectedVersion;
+	}
+
+	public VersionMismatchException(long expectedVersion, Throwable cause) {
+		super(String.format(MESSAGE_PATTERN, expectedVersion), cause);
+		this.expectedVersion = expectedVersion;
+	}
+
+	public VersionMismatchException(long expectedVersion, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+		super(String.format(MESSAGE_PATTERN, expectedVersion), cause, enableSuppression, writableStackTrace);
+		this.expectedVersion = expectedVersion;
+	}
+
+	public long getExpectedVersion() {
+		return expectedVersion;
+	}
+}
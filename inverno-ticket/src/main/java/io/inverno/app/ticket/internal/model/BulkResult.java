@@ -0,0 +1,76 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal.model;
+
+/**
+ * <p>
+ * The result of an operation applied to a single item of a bulk operation.
+ * </p>
+ * 
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+public class BulkResult {
+	
+	/**
+	 * <p>
+	 * Represents the outcome of an operation applied to a single item.
+	 * </p>
+	 */
+	public enum Outcome {
+		UPDATED,
+		UNCHANGED,
+		NOT_FOUND,
+		VERSION_MISMATCH,
+		REFERENCE_NOT_FOUND
+	}
+
+	private long id;
+	private Outcome outcome;
+	private Long version;
+
+	public BulkResult() {
+	}
+
+	public BulkResult(long id, Outcome outcome, Long version) {
+		this.id = id;
+		this.outcome = outcome;
+		this.version = version;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public void setId(long id) {
+		this.id = id;
+	}
+
+	public Outcome getOutcome() {
+		return outcome;
+	}
+
+	public void setOutcome(Outcome outcome) {
+		this.outcome = outcome;
+	}
+
+	public Long getVersion() {
+		return version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
+}
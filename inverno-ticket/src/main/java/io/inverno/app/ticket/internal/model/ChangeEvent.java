@@ -0,0 +1,142 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import java.time.ZonedDateTime;
+
+/**
+ * <p>
+ * A change event represents a change made to a {@link Ticket}, a {@link Plan} or a {@link Note}.
+ * </p>
+ * 
+ * <p>
+ * A change event only identifies the changed entity, the entity must be fetched to get its actual state. The status of a ticket is specified in ticket events to track status transitions.
+ * The id of an event is the id of its entry in the event log or in a ticket history.
+ * </p>
+ * 
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+@JsonInclude(Include.NON_NULL)
+@JsonPropertyOrder({ "id", "type", "planId", "ticketId", "noteIndex", "status", "version", "dateTime" })
+public class ChangeEvent {
+	
+	/**
+	 * <p>
+	 * Represents the type of a change event.
+	 * </p>
+	 */
+	public enum Type {
+		TICKET_CREATED,
+		TICKET_UPDATED,
+		TICKET_STATUS_CHANGED,
+		TICKET_DELETED,
+		PLAN_CREATED,
+		PLAN_UPDATED,
+		PLAN_DELETED,
+		PLAN_TICKET_MOVED,
+		PLAN_TICKET_REMOVED,
+		NOTE_CREATED,
+		NOTE_UPDATED,
+		NOTE_DELETED
+	}
+	
+	private String id;
+	private Type type;
+	private Long planId;
+	private Long ticketId;
+	private Integer noteIndex;
+	private Ticket.Status status;
+	private Long version;
+	private ZonedDateTime dateTime;
+
+	public ChangeEvent() {
+	}
+
+	public ChangeEvent(Type type, Long planId, Long ticketId, Integer noteIndex, Long version) {
+		this.type = type;
+		this.planId = planId;
+		this.ticketId = ticketId;
+		this.noteIndex = noteIndex;
+		this.version = version;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public void setType(Type type) {
+		this.type = type;
+	}
+
+	public Long getPlanId() {
+		return planId;
+	}
+
+	public void setPlanId(Long planId) {
+		this.planId = planId;
+	}
+
+	public Long getTicketId() {
+		return ticketId;
+	}
+
+	public void setTicketId(Long ticketId) {
+		this.ticketId = ticketId;
+	}
+
+	public Integer getNoteIndex() {
+		return noteIndex;
+	}
+
+	public void setNoteIndex(Integer noteIndex) {
+		this.noteIndex = noteIndex;
+	}
+
+	public Ticket.Status getStatus() {
+		return status;
+	}
+
+	public void setStatus(Ticket.Status status) {
+		this.status = status;
+	}
+
+	public Long getVersion() {
+		return version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
+
+	public ZonedDateTime getDateTime() {
+		return dateTime;
+	}
+
+	public void setDateTime(ZonedDateTime dateTime) {
+		this.dateTime = dateTime;
+	}
+}
@@ -17,6 +17,7 @@ package io.inverno.app.ticket.internal.model;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 
 /**
  * <p>
@@ -26,12 +27,14 @@ import com.fasterxml.jackson.annotation.JsonInclude.Include;
  * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
  */
 @JsonInclude(Include.NON_NULL)
+@JsonPropertyOrder({ "ticketId", "index", "title", "content", "version" })
 public class Note {
 
 	private long ticketId;
 	private Integer index;
 	private String title;
 	private String content;
+	private Long version;
 
 	public Note() {
 	}
@@ -74,4 +77,12 @@ public class Note {
 	public void setContent(String content) {
 		this.content = content;
 	}
+
+	public Long getVersion() {
+		return version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
 }
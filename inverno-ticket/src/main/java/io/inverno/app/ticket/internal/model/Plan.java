@@ -18,6 +18,7 @@ package io.inverno.app.ticket.internal.model;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import java.time.ZonedDateTime;
 import reactor.core.publisher.Flux;
 
@@ -29,6 +30,7 @@ import reactor.core.publisher.Flux;
  * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
  */
 @JsonInclude(Include.NON_NULL)
+@JsonPropertyOrder({ "id", "title", "summary", "description", "creationDateTime", "version" })
 public class Plan {
 	
 	private Long id;
@@ -36,6 +38,7 @@ public class Plan {
 	private String summary;
 	private String description;
 	private ZonedDateTime creationDateTime;
+	private Long version;
 	@JsonIgnore
 	private Flux<Ticket> tickets;
 
@@ -98,4 +101,12 @@ public class Plan {
 	public void setTickets(Flux<Ticket> tickets) {
 		this.tickets = tickets;
 	}
+
+	public Long getVersion() {
+		return version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
 }
@@ -17,6 +17,7 @@ package io.inverno.app.ticket.internal.model;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import java.time.ZonedDateTime;
 
 /**
@@ -29,6 +30,7 @@ import java.time.ZonedDateTime;
  * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
  */
 @JsonInclude(Include.NON_NULL)
+@JsonPropertyOrder({ "id", "type", "status", "creationDateTime", "title", "summary", "description", "version" })
 public class Ticket {
 	
 	/**
@@ -61,6 +63,7 @@ public class Ticket {
 	private String title;
 	private String summary;
 	private String description;
+	private Long version;
 
 	public Ticket() {
 	}
@@ -130,4 +133,12 @@ public class Ticket {
 	public void setDescription(String description) {
 		this.description = description;
 	}
+
+	public Long getVersion() {
+		return version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
 }
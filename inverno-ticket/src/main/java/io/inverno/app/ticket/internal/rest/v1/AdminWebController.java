@@ -0,0 +1,223 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal.rest.v1;
+
+import io.inverno.app.ticket.internal.RedisPoolMonitor;
+import io.inverno.app.ticket.internal.RedisReadConnection;
+import io.inverno.app.ticket.internal.cache.TicketCache;
+import io.inverno.app.ticket.internal.model.Ticket;
+import io.inverno.app.ticket.internal.rest.v1.dto.CacheStatsDto;
+import io.inverno.app.ticket.internal.rest.v1.dto.IndexCheckDto;
+import io.inverno.app.ticket.internal.rest.v1.dto.RedisStatsDto;
+import io.inverno.app.ticket.internal.service.NoteService;
+import io.inverno.app.ticket.internal.service.PlanService;
+import io.inverno.app.ticket.internal.service.SearchService;
+import io.inverno.app.ticket.internal.service.TicketService;
+import io.inverno.core.annotation.Bean;
+import io.inverno.mod.base.resource.MediaTypes;
+import io.inverno.mod.http.base.Method;
+import io.inverno.mod.web.server.annotation.WebController;
+import io.inverno.mod.web.server.annotation.WebRoute;
+import java.util.stream.Collectors;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuples;
+
+/**
+ * <p>
+ * Administration operations: data migrations and maintenance tasks.
+ * </p>
+ *
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+@Bean( visibility = Bean.Visibility.PRIVATE )
+@WebController( path = "/api/v1/admin" )
+public class AdminWebController {
+
+	private static final int SEARCH_INDEX_CHUNK_SIZE = 100;
+
+	private final TicketService ticketService;
+	private final PlanService planService;
+	private final NoteService noteService;
+	private final SearchService searchService;
+	private final TicketCache ticketCache;
+	private final RedisReadConnection readConnection;
+	private final RedisPoolMonitor poolMonitor;
+
+	public AdminWebController(TicketService ticketService, PlanService planService, NoteService noteService, SearchService searchService, TicketCache ticketCache, RedisReadConnection readConnection, RedisPoolMonitor poolMonitor) {
+		this.ticketService = ticketService;
+		this.planService = planService;
+		this.noteService = noteService;
+		this.searchService = searchService;
+		this.ticketCache = ticketCache;
+		this.readConnection = readConnection;
+		this.poolMonitor = poolMonitor;
+	}
+
+	/**
+	 * Get the ticket cache statistics.
+	 *
+	 * @return the ticket cache statistics
+	 */
+	@WebRoute( path = "/cache/ticket", method = Method.GET, produces = MediaTypes.APPLICATION_JSON )
+	public Mono<CacheStatsDto> getTicketCacheStats() {
+		return Mono.fromSupplier(() -> new CacheStatsDto(
+			this.ticketCache.isEnabled(), 
+			this.ticketCache.getMaxSize(), 
+			this.ticketCache.getSize(), 
+			this.ticketCache.getHits(), 
+			this.ticketCache.getMisses(), 
+			this.ticketCache.getEvictions(), 
+			this.ticketCache.getInvalidations()
+		));
+	}
+
+	/**
+	 * Get the Redis read connection and connection pool statistics.
+	 *
+	 * @return the Redis statistics
+	 */
+	@WebRoute( path = "/redis", method = Method.GET, produces = MediaTypes.APPLICATION_JSON )
+	public Mono<RedisStatsDto> getRedisStats() {
+		return Mono.fromSupplier(() -> new RedisStatsDto(
+			this.readConnection.isEnabled(), 
+			this.readConnection.getCommands(), 
+			this.poolMonitor.isEnabled(), 
+			this.poolMonitor.getProbes(), 
+			this.poolMonitor.getProbeLastWait(), 
+			this.poolMonitor.getProbeAverageWait(), 
+			this.poolMonitor.getProbeMaxWait(), 
+			this.poolMonitor.getAcquisitions(), 
+			this.poolMonitor.getAcquisitionLastWait(), 
+			this.poolMonitor.getAcquisitionAverageWait(), 
+			this.poolMonitor.getAcquisitionMaxWait()
+		));
+	}
+
+	/**
+	 * Backfill the plan index from existing plans.
+	 *
+	 * @return the number of indexed plans
+	 */
+	@WebRoute( path = "/migration/plan_index", method = Method.POST, produces = MediaTypes.TEXT_PLAIN )
+	public Mono<Long> migratePlanIndex() {
+		return this.planService.indexPlans();
+	}
+
+	/**
+	 * Convert plan ticket lists to sorted sets.
+	 *
+	 * @return the number of converted plans
+	 */
+	@WebRoute( path = "/migration/plan_tickets_zset", method = Method.POST, produces = MediaTypes.TEXT_PLAIN )
+	public Mono<Long> migratePlanTicketsToSortedSet() {
+		return this.planService.migratePlanTicketsToSortedSet();
+	}
+
+	/**
+	 * Convert ticket notes lists to hashes indexed by stable note indexes.
+	 *
+	 * @return the number of tickets whose notes were converted
+	 */
+	@WebRoute( path = "/migration/note_hash", method = Method.POST, produces = MediaTypes.TEXT_PLAIN )
+	public Mono<Long> migrateNotesToHash() {
+		return this.noteService.migrateTicketNotesToHash();
+	}
+
+	/**
+	 * Index existing tickets and notes in the search index.
+	 *
+	 * @return the number of indexed tickets
+	 */
+	@WebRoute( path = "/migration/search_index", method = Method.POST, produces = MediaTypes.TEXT_PLAIN )
+	public Mono<Long> migrateSearchIndex() {
+		return this.ticketService.listTickets()
+			.buffer(SEARCH_INDEX_CHUNK_SIZE)
+			.concatMap(tickets -> Flux.fromIterable(tickets)
+				.zipWith(this.noteService.listTicketsNotes(tickets.stream().map(Ticket::getId).collect(Collectors.toList())), (ticket, ticketNotes) -> Tuples.of(ticket, ticketNotes.getT2()))
+				.collectList()
+				.flatMap(this.searchService::indexTickets)
+			)
+			.reduce(0l, Long::sum);
+	}
+
+	/**
+	 * Rebuild the status counters of plans and the plans of each ticket from plan sorted sets and ticket statuses.
+	 *
+	 * @return the number of reconciled plans
+	 */
+	@WebRoute( path = "/reconciliation/plan_counts", method = Method.POST, produces = MediaTypes.TEXT_PLAIN )
+	public Mono<Long> reconcilePlanCounts() {
+		return this.planService.reconcilePlanTicketCounts();
+	}
+
+	/**
+	 * Remove tickets which do not exist anymore from plans.
+	 *
+	 * @return the number of removed tickets
+	 */
+	@WebRoute( path = "/reconciliation/plan_tickets", method = Method.POST, produces = MediaTypes.TEXT_PLAIN )
+	public Mono<Long> compactPlanTickets() {
+		return this.planService.compactPlanTickets();
+	}
+
+	/**
+	 * Check that status indexes and plans are consistent with existing tickets.
+	 *
+	 * @return the number of checked tickets, mis-indexed tickets and orphan tickets in status indexes and plans
+	 */
+	@WebRoute( path = "/reconciliation/indexes", method = Method.GET, produces = MediaTypes.APPLICATION_JSON )
+	public Mono<IndexCheckDto> checkIndexes() {
+		return this.checkIndexes(false);
+	}
+
+	/**
+	 * Re-index mis-indexed tickets and remove orphan tickets from status indexes and plans.
+	 *
+	 * @return the number of checked tickets, repaired mis-indexed tickets and removed orphan tickets in status indexes and plans
+	 */
+	@WebRoute( path = "/reconciliation/indexes", method = Method.POST, produces = MediaTypes.APPLICATION_JSON )
+	public Mono<IndexCheckDto> repairIndexes() {
+		return this.checkIndexes(true);
+	}
+
+	private Mono<IndexCheckDto> checkIndexes(boolean repair) {
+		return this.ticketService.checkTicketIndexes(repair)
+			.flatMap(ticketsCheck -> this.planService.checkPlanTickets(repair)
+				.map(orphanPlanTickets -> new IndexCheckDto(repair, ticketsCheck.getT1(), ticketsCheck.getT2(), ticketsCheck.getT3(), orphanPlanTickets))
+			);
+	}
+
+	/**
+	 * Convert tickets stored as strings to hashes.
+	 *
+	 * @return the number of converted tickets
+	 */
+	@WebRoute( path = "/migration/ticket_hash", method = Method.POST, produces = MediaTypes.TEXT_PLAIN )
+	public Mono<Long> migrateTicketHash() {
+		return this.ticketService.migrateTicketsToHash();
+	}
+
+	/**
+	 * Rebuild the ticket status indexes from existing tickets.
+	 *
+	 * @return the number of indexed tickets
+	 */
+	@WebRoute( path = "/migration/ticket_status_index", method = Method.POST, produces = MediaTypes.TEXT_PLAIN )
+	public Mono<Long> migrateTicketStatusIndex() {
+		return this.ticketService.indexTicketStatuses();
+	}
+}
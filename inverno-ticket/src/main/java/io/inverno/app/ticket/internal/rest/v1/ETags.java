@@ -0,0 +1,143 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal.rest.v1;
+
+import io.inverno.app.ticket.internal.exception.VersionMismatchException;
+import io.inverno.mod.http.base.BadRequestException;
+import io.inverno.mod.http.base.HttpException;
+import io.inverno.mod.http.base.Status;
+import io.inverno.mod.web.server.WebExchange;
+import java.util.Optional;
+
+/**
+ * <p>
+ * Entity tags utilities used to expose entity versions and to evaluate conditional requests.
+ * </p>
+ *
+ * <p>
+ * The entity tag of a ticket, plan or note is its version as a strong validator (eg. {@code "3"}).
+ * </p>
+ *
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+final class ETags {
+
+	static final String HEADER_ETAG = "etag";
+	static final String HEADER_IF_MATCH = "if-match";
+	static final String HEADER_IF_NONE_MATCH = "if-none-match";
+
+	private ETags() {}
+
+	/**
+	 * <p>
+	 * Returns the entity tag corresponding to the specified version.
+	 * </p>
+	 *
+	 * @param version an entity version, null is considered as version 0
+	 *
+	 * @return an entity tag
+	 */
+	static String of(Long version) {
+		return "\"" + (version != null ? version : 0l) + "\"";
+	}
+
+	/**
+	 * <p>
+	 * Sets the entity tag response header.
+	 * </p>
+	 *
+	 * @param exchange the web exchange
+	 * @param version  the entity version
+	 */
+	static void set(WebExchange<?> exchange, Long version) {
+		exchange.response().headers(headers -> headers.set(HEADER_ETAG, of(version)));
+	}
+
+	/**
+	 * <p>
+	 * Returns the version expected by the client as specified in the {@code if-match} request header.
+	 * </p>
+	 *
+	 * @param exchange the web exchange
+	 *
+	 * @return an optional returning the expected version or an empty optional if any version is accepted
+	 * @throws BadRequestException if the {@code if-match} header is not a single entity tag
+	 */
+	static Optional<Long> ifMatch(WebExchange<?> exchange) throws BadRequestException {
+		return exchange.request().headers().get(HEADER_IF_MATCH)
+			.map(String::trim)
+			.filter(ifMatch -> !ifMatch.equals("*"))
+			.map(ifMatch -> {
+				if(ifMatch.length() < 2 || !ifMatch.startsWith("\"") || !ifMatch.endsWith("\"")) {
+					throw new BadRequestException("Invalid if-match header: " + ifMatch);
+				}
+				try {
+					return Long.parseLong(ifMatch.substring(1, ifMatch.length() - 1));
+				}
+				catch(NumberFormatException e) {
+					// Not one of our tags, it can't match
+					return -1l;
+				}
+			});
+	}
+
+	/**
+	 * <p>
+	 * Sets the entity tag response header and determines whether the entity has not been modified based on the {@code if-none-match} request header in which case the response status is set to
+	 * {@code 304}.
+	 * </p>
+	 *
+	 * @param exchange the web exchange
+	 * @param version  the entity version
+	 *
+	 * @return true if the entity has not been modified, false otherwise
+	 */
+	static boolean notModified(WebExchange<?> exchange, Long version) {
+		String etag = of(version);
+		set(exchange, version);
+		boolean notModified = exchange.request().headers().get(HEADER_IF_NONE_MATCH)
+			.map(ifNoneMatch -> {
+				for(String tag : ifNoneMatch.split(",")) {
+					tag = tag.trim();
+					if(tag.startsWith("W/")) {
+						tag = tag.substring(2);
+					}
+					if(tag.equals("*") || tag.equals(etag)) {
+						return true;
+					}
+				}
+				return false;
+			})
+			.orElse(false);
+		if(notModified) {
+			exchange.response().headers(headers -> headers.status(Status.NOT_MODIFIED));
+		}
+		return notModified;
+	}
+
+	/**
+	 * <p>
+	 * Maps a version mismatch to a {@code 412} error.
+	 * </p>
+	 *
+	 * @param error a version mismatch
+	 *
+	 * @return an HTTP exception
+	 */
+	static HttpException preconditionFailed(VersionMismatchException error) {
+		return new HttpException(Status.PRECONDITION_FAILED, error.getMessage(), error);
+	}
+}
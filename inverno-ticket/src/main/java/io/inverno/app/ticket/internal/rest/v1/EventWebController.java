@@ -0,0 +1,254 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal.rest.v1;
+
+import io.inverno.app.ticket.internal.exception.EventGroupNotFoundException;
+import io.inverno.app.ticket.internal.model.ChangeEvent;
+import io.inverno.app.ticket.internal.rest.DtoMapper;
+import io.inverno.app.ticket.internal.rest.v1.dto.ChangeEventDto;
+import io.inverno.app.ticket.internal.service.ChangeFeed;
+import io.inverno.app.ticket.internal.service.EventService;
+import io.inverno.app.ticket.internal.service.PlanService;
+import io.inverno.core.annotation.Bean;
+import io.inverno.mod.base.resource.MediaTypes;
+import io.inverno.mod.http.base.BadRequestException;
+import io.inverno.mod.http.base.Method;
+import io.inverno.mod.http.base.NotFoundException;
+import io.inverno.mod.http.base.Status;
+import io.inverno.mod.web.base.annotation.Body;
+import io.inverno.mod.web.base.annotation.PathParam;
+import io.inverno.mod.web.base.annotation.QueryParam;
+import io.inverno.mod.web.server.WebExchange;
+import io.inverno.mod.web.server.WebResponseBody;
+import io.inverno.mod.web.server.annotation.SseEventFactory;
+import io.inverno.mod.web.server.annotation.WebController;
+import io.inverno.mod.web.server.annotation.WebRoute;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * <p>
+ * Streams changes made to tickets, plans and notes as server-sent events and exposes the event log to consumer groups.
+ * </p>
+ *
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+@Bean( visibility = Bean.Visibility.PRIVATE )
+@WebController( path = "/api/v1/event" )
+public class EventWebController {
+
+	private static final int READ_EVENTS_DEFAULT_COUNT = 100;
+	private static final int READ_EVENTS_MAX_COUNT = 1000;
+
+	private final ChangeFeed changeFeed;
+	private final EventService eventService;
+	private final PlanService planService;
+	
+	private final DtoMapper<ChangeEventDto, ChangeEvent> changeEventDtoMapper;
+
+	public EventWebController(ChangeFeed changeFeed, EventService eventService, PlanService planService, DtoMapper<ChangeEventDto, ChangeEvent> changeEventDtoMapper) {
+		this.changeFeed = changeFeed;
+		this.eventService = eventService;
+		this.planService = planService;
+		this.changeEventDtoMapper = changeEventDtoMapper;
+	}
+	
+	/**
+	 * Stream change events.
+	 * 
+	 * <p>
+	 * When a plan is specified, only changes made to the plan, to its tickets and to their notes are streamed. Events only identify changed entities which must be fetched to get their actual
+	 * state.
+	 * </p>
+	 * 
+	 * @param planId an optional plan id
+	 * @param events the server-sent events factory
+	 * 
+	 * @return a stream of server-sent events
+	 */
+	@WebRoute( method = Method.GET, produces = MediaTypes.TEXT_EVENT_STREAM )
+	public Publisher<WebResponseBody.SseEncoder.Event<ChangeEventDto>> getEvents(@QueryParam Optional<Long> planId, @SseEventFactory(MediaTypes.APPLICATION_JSON) WebResponseBody.SseEncoder.EventFactory<ChangeEventDto> events) {
+		return planId.map(this::getPlanEvents).orElseGet(this.changeFeed::events)
+			.concatMap(this.changeEventDtoMapper::toDto)
+			.map(changeEvent -> events.create(event -> event
+				.id(changeEvent.getId())
+				.event(changeEvent.getType().name())
+				.value(changeEvent)
+			));
+	}
+	
+	private Flux<ChangeEvent> getPlanEvents(long planId) {
+		// Ticket events do not reference plans, plan tickets are tracked from the plan tickets set and plan membership events
+		// The feed is subscribed while plan tickets are loaded so that membership changes made in between are not missed, these events are buffered until the load completes (empty marker)
+		PlanEventFilter planEventFilter = new PlanEventFilter(planId);
+		return Flux.merge(
+				this.planService.listPlanTicketIds(planId).doOnNext(planEventFilter::addTicket).then(Mono.just(Optional.<ChangeEvent>empty())),
+				this.changeFeed.events().map(Optional::of)
+			)
+			.concatMapIterable(planEventFilter);
+	}
+	
+	/**
+	 * <p>
+	 * Filters the change events related to a plan, to its tickets and to their notes.
+	 * </p>
+	 * 
+	 * <p>
+	 * Events are buffered until the plan tickets are loaded which is signaled by an empty event, buffered events are then replayed against the complete set of plan tickets. Events must be
+	 * applied sequentially.
+	 * </p>
+	 */
+	private static class PlanEventFilter implements Function<Optional<ChangeEvent>, List<ChangeEvent>> {
+		
+		private final long planId;
+		private final Set<Long> planTicketIds;
+		
+		private List<ChangeEvent> pendingEvents;
+
+		public PlanEventFilter(long planId) {
+			this.planId = planId;
+			this.planTicketIds = ConcurrentHashMap.newKeySet();
+			this.pendingEvents = new ArrayList<>();
+		}
+		
+		public void addTicket(long ticketId) {
+			this.planTicketIds.add(ticketId);
+		}
+
+		@Override
+		public List<ChangeEvent> apply(Optional<ChangeEvent> event) {
+			if(event.isEmpty()) {
+				List<ChangeEvent> planEvents = this.pendingEvents.stream().filter(this::test).collect(Collectors.toList());
+				this.pendingEvents = null;
+				return planEvents;
+			}
+			else if(this.pendingEvents != null) {
+				this.pendingEvents.add(event.get());
+				return List.of();
+			}
+			return this.test(event.get()) ? List.of(event.get()) : List.of();
+		}
+		
+		private boolean test(ChangeEvent changeEvent) {
+			if(changeEvent.getPlanId() != null) {
+				if(changeEvent.getPlanId() != this.planId) {
+					return false;
+				}
+				switch(changeEvent.getType()) {
+					case PLAN_TICKET_MOVED: this.planTicketIds.add(changeEvent.getTicketId());
+						break;
+					case PLAN_TICKET_REMOVED: this.planTicketIds.remove(changeEvent.getTicketId());
+						break;
+				}
+				return true;
+			}
+			else if(changeEvent.getTicketId() != null && this.planTicketIds.contains(changeEvent.getTicketId())) {
+				if(changeEvent.getType() == ChangeEvent.Type.TICKET_DELETED) {
+					this.planTicketIds.remove(changeEvent.getTicketId());
+				}
+				return true;
+			}
+			return false;
+		}
+	}
+	
+	/**
+	 * Create a consumer group on the event log.
+	 * 
+	 * <p>
+	 * A consumer group tracks the events delivered to its consumers, which allows downstream systems to process changes incrementally.
+	 * </p>
+	 * 
+	 * @param group     the name of the group
+	 * @param fromStart true to deliver all events in the event log, false or not specified to only deliver events logged after the group is created
+	 * @param exchange
+	 * 
+	 * @return {@inverno.web.status 201} if the group was created, {@inverno.web.status 200} if it already exists
+	 */
+	@WebRoute( path = "/group/{group}", method = Method.POST )
+	public Mono<Void> createEventGroup(@PathParam String group, @QueryParam Optional<Boolean> fromStart, WebExchange<?> exchange) {
+		return this.eventService.createEventGroup(group, fromStart.orElse(false))
+			.doOnNext(created -> {
+				if(created) {
+					exchange.response().headers(headers -> headers.status(Status.CREATED));
+				}
+			})
+			.then();
+	}
+	
+	/**
+	 * Read events for a consumer of a consumer group.
+	 * 
+	 * <p>
+	 * Events are delivered once to the consumers of a group, a delivered event is pending until it is acknowledged. Pending events of a consumer can be read again, after a failure for
+	 * instance.
+	 * </p>
+	 * 
+	 * @param group    the name of the group
+	 * @param consumer the name of the consumer
+	 * @param count    the maximum number of events to read, defaults to 100
+	 * @param pending  true to read the events delivered to the consumer and not acknowledged yet, false or not specified to read new events
+	 * 
+	 * @return a list of events
+	 * @throws NotFoundException if there's no group with the specified name
+	 * @throws BadRequestException if the specified count is invalid
+	 */
+	@WebRoute( path = "/group/{group}/{consumer}", method = Method.GET, produces = MediaTypes.APPLICATION_JSON )
+	public Flux<ChangeEventDto> readEventGroup(@PathParam String group, @PathParam String consumer, @QueryParam Optional<Integer> count, @QueryParam Optional<Boolean> pending) {
+		int actualCount = count.orElse(READ_EVENTS_DEFAULT_COUNT);
+		if(actualCount <= 0 || actualCount > READ_EVENTS_MAX_COUNT) {
+			throw new BadRequestException("Count must be between 1 and " + READ_EVENTS_MAX_COUNT);
+		}
+		return this.eventService.readEventGroup(group, consumer, actualCount, pending.orElse(false))
+			.onErrorMap(EventGroupNotFoundException.class, e -> new NotFoundException(e.getMessage()))
+			.concatMap(this.changeEventDtoMapper::toDto);
+	}
+	
+	/**
+	 * Acknowledge events processed by a consumer group.
+	 * 
+	 * @param group    the name of the group
+	 * @param eventIds the ids of the processed events
+	 * 
+	 * @return the number of acknowledged events
+	 */
+	@WebRoute( path = "/group/{group}/ack", method = Method.POST, consumes = MediaTypes.APPLICATION_JSON, produces = MediaTypes.TEXT_PLAIN )
+	public Mono<Long> acknowledgeEvents(@PathParam String group, @Body List<String> eventIds) {
+		return this.eventService.acknowledgeEvents(group, eventIds);
+	}
+	
+	/**
+	 * Delete a consumer group.
+	 * 
+	 * @param group the name of the group
+	 * 
+	 * @return an empty response
+	 * @throws NotFoundException if there's no group with the specified name
+	 */
+	@WebRoute( path = "/group/{group}", method = Method.DELETE )
+	public Mono<Void> removeEventGroup(@PathParam String group) {
+		return this.eventService.removeEventGroup(group)
+			.flatMap(removed -> removed ? Mono.<Void>empty() : Mono.error(() -> new NotFoundException()));
+	}
+}
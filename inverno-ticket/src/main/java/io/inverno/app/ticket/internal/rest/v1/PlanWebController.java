@@ -17,12 +17,19 @@ package io.inverno.app.ticket.internal.rest.v1;
 
 import io.inverno.core.annotation.Bean;
 import io.inverno.app.ticket.internal.exception.PlanAlreadyExistsException;
+import io.inverno.app.ticket.internal.exception.VersionMismatchException;
 import io.inverno.app.ticket.internal.model.Plan;
 import io.inverno.app.ticket.internal.model.Ticket;
 import io.inverno.app.ticket.internal.rest.DtoMapper;
+import io.inverno.app.ticket.internal.rest.v1.dto.BulkResultDto;
 import io.inverno.app.ticket.internal.rest.v1.dto.PlanDto;
+import io.inverno.app.ticket.internal.rest.v1.dto.PlanTicketMoveDto;
+import io.inverno.app.ticket.internal.rest.v1.dto.StatusCountsDto;
+import io.inverno.app.ticket.internal.rest.v1.dto.TicketDto;
 import io.inverno.app.ticket.internal.service.PlanService;
 import io.inverno.mod.base.resource.MediaTypes;
+import io.inverno.mod.http.base.BadRequestException;
+import io.inverno.mod.http.base.HttpException;
 import io.inverno.mod.http.base.Method;
 import io.inverno.mod.http.base.NotFoundException;
 import io.inverno.mod.http.base.Status;
@@ -38,6 +45,8 @@ import java.util.List;
 import java.util.Optional;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 
 /**
  * <p>
@@ -50,12 +59,16 @@ import reactor.core.publisher.Mono;
 @WebController( path = "/api/v1/plan" )
 public class PlanWebController {
 
+	private static final int BULK_MOVE_MAX_SIZE = 1000;
+	
 	private final PlanService planService;
 	private final DtoMapper<PlanDto, Plan> planDtoMapper;
+	private final DtoMapper<TicketDto, Ticket> ticketDtoMapper;
 
-	public PlanWebController(PlanService planService, DtoMapper<PlanDto, Plan> planDtoMapper) {
+	public PlanWebController(PlanService planService, DtoMapper<PlanDto, Plan> planDtoMapper, DtoMapper<TicketDto, Ticket> ticketDtoMapper) {
 		this.planService = planService;
 		this.planDtoMapper = planDtoMapper;
+		this.ticketDtoMapper = ticketDtoMapper;
 	}
 
 	/**
@@ -71,56 +84,113 @@ public class PlanWebController {
 		plan.setId(null);
 		return this.planDtoMapper.toDomain(plan)
 			.flatMap(this.planService::savePlan)
-			.doOnNext(savedPlan -> exchange.response()
-				.headers(headers -> headers
-					.status(Status.CREATED)
-					.add(Headers.NAME_LOCATION, exchange.request().getPathBuilder().segment(savedPlan.getId().toString()).buildPath())
-				)
-			)
+			.doOnNext(savedPlan -> {
+				exchange.response()
+					.headers(headers -> headers
+						.status(Status.CREATED)
+						.add(Headers.NAME_LOCATION, exchange.request().getPathBuilder().segment(savedPlan.getId().toString()).buildPath())
+					);
+				ETags.set(exchange, savedPlan.getVersion());
+			})
 			.flatMap(this.planDtoMapper::toDto);
 	}
 
 	/**
 	 * List plans.
 	 *
+	 * @param tickets true to include the tickets of each plan, false or not specified to only return plans
+	 * @param view    {@code summary} to exclude ticket descriptions, {@code full} or not specified to return complete tickets
+	 *
 	 * @return the list of plans
+	 * @throws BadRequestException if the specified view is invalid
 	 */
 	@WebRoute( method = Method.GET, produces = MediaTypes.APPLICATION_JSON )
-	public Flux<PlanDto> listPlans() {
-		return this.planService.listPlans()
-			.doOnNext(plan -> plan.setTickets(null)) // We don't want to return tickets when listing plans
+	public Flux<PlanDto> listPlans(@QueryParam Optional<Boolean> tickets, @QueryParam Optional<String> view) {
+		return (tickets.orElse(false) ? this.planService.listPlansWithTickets(TicketWebController.isSummaryView(view)) : this.planService.listPlans())
 			.flatMap(this.planDtoMapper::toDto);
 	}
 
+	/**
+	 * <p>
+	 * Count the tickets of each plan by status.
+	 * </p>
+	 *
+	 * <p>
+	 * Counters are maintained when tickets are added to or removed from a plan and when their status changes, they can be used to get an overview of all plans without listing their tickets.
+	 * </p>
+	 *
+	 * @return the number of tickets in each status for each plan
+	 */
+	@WebRoute( path = "/_count", method = Method.GET, produces = MediaTypes.APPLICATION_JSON )
+	public Flux<StatusCountsDto> countPlanTickets() {
+		return this.planService.countPlanTickets()
+			.map(counts -> new StatusCountsDto(counts.getT1(), counts.getT2()));
+	}
+
+	/**
+	 * <p>
+	 * Export all plans.
+	 * </p>
+	 *
+	 * <p>
+	 * Plans are streamed as newline delimited JSON with the summary of their tickets.
+	 * </p>
+	 *
+	 * @return the list of plans
+	 */
+	@WebRoute( path = "/_bulk", method = Method.GET, produces = MediaTypes.APPLICATION_X_NDJSON )
+	public Flux<PlanDto> exportPlans() {
+		return this.planService.listPlansWithTickets(true)
+			.concatMap(this.planDtoMapper::toDto);
+	}
+
 	/**
 	 * Get a plan with its associated tickets filtered by status.
 	 *
+	 * <p>
+	 * The plan version is returned in the {@code etag} header, since it does not cover the plan's tickets, the {@code if-none-match} header is ignored.
+	 * </p>
+	 *
 	 * @param planId   the id of the plan to get
 	 * @param statuses the statuses of the tickets to include, if not specified include all tickets
+	 * @param view     {@code summary} to exclude ticket descriptions, {@code full} or not specified to return complete tickets
+	 * @param exchange
 	 *
 	 * @return a plan
 	 * @throws NotFoundException if there's no ticket with the specified id
+	 * @throws BadRequestException if the specified view is invalid
 	 */
 	@WebRoute( path = "/{planId}", method = Method.GET, produces = MediaTypes.APPLICATION_JSON )
-	public Mono<PlanDto> getPlan(@PathParam long planId, @QueryParam Optional<List<Ticket.Status>> statuses) {
-		return statuses.map(s -> this.planService.getPlan(planId, s)).orElse(this.planService.getPlan(planId))
-			.flatMap(this.planDtoMapper::toDto)
-			.switchIfEmpty(Mono.error(() -> new NotFoundException()));
+	public Mono<PlanDto> getPlan(@PathParam long planId, @QueryParam Optional<List<Ticket.Status>> statuses, @QueryParam Optional<String> view, WebExchange<?> exchange) {
+		return this.planService.getPlan(planId, statuses.orElse(List.of(Ticket.Status.values())), TicketWebController.isSummaryView(view))
+			.switchIfEmpty(Mono.error(() -> new NotFoundException()))
+			.doOnNext(plan -> ETags.set(exchange, plan.getVersion()))
+			.flatMap(this.planDtoMapper::toDto);
 	}
 
 	/**
 	 * Update a plan.
 	 *
-	 * @param planId the id of the plan to update
-	 * @param plan   the updated plan
+	 * <p>
+	 * The update is only performed if the plan version matches the {@code if-match} header when specified.
+	 * </p>
+	 *
+	 * @param planId   the id of the plan to update
+	 * @param plan     the updated plan
+	 * @param exchange
 	 *
 	 * @return the updated plan
+	 * @throws HttpException {@inverno.web.status 412} if the plan version does not match the {@code if-match} header
 	 */
 	@WebRoute( path = "/{planId}", method = Method.PUT, consumes = MediaTypes.APPLICATION_JSON, produces = MediaTypes.APPLICATION_JSON )
-	public Mono<PlanDto> updatePlan(@PathParam long planId, @Body PlanDto plan) {
+	public Mono<PlanDto> updatePlan(@PathParam long planId, @Body PlanDto plan, WebExchange<?> exchange) {
 		plan.setId(planId);
+		Long expectedVersion = ETags.ifMatch(exchange).orElse(null);
 		return this.planDtoMapper.toDomain(plan)
+			.doOnNext(domain -> domain.setVersion(expectedVersion))
 			.flatMap(this.planService::savePlan)
+			.onErrorMap(VersionMismatchException.class, ETags::preconditionFailed)
+			.doOnNext(savedPlan -> ETags.set(exchange, savedPlan.getVersion()))
 			.flatMap(this.planDtoMapper::toDto)
 			.switchIfEmpty(Mono.error(() -> new NotFoundException()));
 	}
@@ -140,6 +210,30 @@ public class PlanWebController {
 			.switchIfEmpty(Mono.error(() -> new NotFoundException()));
 	}
 
+	/**
+	 * <p>
+	 * List the tickets of a plan in plan order.
+	 * </p>
+	 *
+	 * <p>
+	 * A page of tickets can be requested by specifying an offset and a limit.
+	 * </p>
+	 *
+	 * @param planId   the id of the plan
+	 * @param statuses the statuses of the tickets to return, if not specified include all tickets
+	 * @param offset   the number of tickets to skip, if not specified start from the first ticket
+	 * @param limit    the maximum number of tickets to return, if not specified return all tickets
+	 * @param view     {@code summary} to exclude ticket descriptions, {@code full} or not specified to return complete tickets
+	 *
+	 * @return a list of tickets
+	 * @throws BadRequestException if the specified view is invalid
+	 */
+	@WebRoute( path = "/{planId}/ticket", method = Method.GET, produces = MediaTypes.APPLICATION_JSON )
+	public Flux<TicketDto> listPlanTickets(@PathParam long planId, @QueryParam Optional<List<Ticket.Status>> statuses, @QueryParam Optional<Long> offset, @QueryParam Optional<Integer> limit, @QueryParam Optional<String> view) {
+		return this.planService.listPlanTickets(planId, statuses.orElse(List.of(Ticket.Status.values())), offset.filter(o -> o >= 0).orElse(0l), limit.filter(l -> l >= 0).orElse(-1), TicketWebController.isSummaryView(view))
+			.concatMap(this.ticketDtoMapper::toDto);
+	}
+
 	/**
 	 * Add a ticket to a plan.
 	 *
@@ -156,6 +250,43 @@ public class PlanWebController {
 			.orElse(this.planService.addTicket(planId, ticketId));
 	}
 
+	/**
+	 * <p>
+	 * Move multiple tickets in a plan.
+	 * </p>
+	 *
+	 * <p>
+	 * Moves are applied atomically in order, a ticket is inserted before its reference ticket or added at the end of the plan if no reference ticket is specified. Tickets not yet associated to the
+	 * plan are added to the plan. The outcome of each move is returned in order.
+	 * </p>
+	 *
+	 * @param planId the id of the plan
+	 * @param moves  the list of moves
+	 *
+	 * @return the list of move results
+	 * @throws BadRequestException if a ticket id is missing or if there are too many moves
+	 */
+	@WebRoute( path = "/{planId}/ticket/_bulk", method = Method.POST, consumes = MediaTypes.APPLICATION_JSON, produces = MediaTypes.APPLICATION_JSON )
+	public Flux<BulkResultDto> moveTickets(@PathParam long planId, @Body Flux<PlanTicketMoveDto> moves) {
+		// All moves are applied in a single script, the number of moves is limited to avoid blocking Redis
+		return moves
+			.take(BULK_MOVE_MAX_SIZE + 1)
+			.index()
+			.<Tuple2<Long, Optional<Long>>>map(indexedMove -> {
+				if(indexedMove.getT1() >= BULK_MOVE_MAX_SIZE) {
+					throw new BadRequestException("Too many moves, maximum is " + BULK_MOVE_MAX_SIZE);
+				}
+				PlanTicketMoveDto move = indexedMove.getT2();
+				if(move.getTicketId() == null) {
+					throw new BadRequestException("Missing ticket id");
+				}
+				return Tuples.of(move.getTicketId(), Optional.ofNullable(move.getReferenceTicketId()));
+			})
+			.collectList()
+			.flatMapMany(tuples -> this.planService.moveTickets(planId, tuples))
+			.map(result -> new BulkResultDto(result.getId(), result.getOutcome(), result.getVersion()));
+	}
+
 	/**
 	 * Remove a ticket from a plan.
 	 *
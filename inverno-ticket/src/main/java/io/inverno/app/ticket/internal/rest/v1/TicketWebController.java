@@ -15,15 +15,26 @@
  */
 package io.inverno.app.ticket.internal.rest.v1;
 
+import io.inverno.app.ticket.internal.exception.VersionMismatchException;
+import io.inverno.app.ticket.internal.service.EventService;
 import io.inverno.app.ticket.internal.service.NoteService;
+import io.inverno.app.ticket.internal.service.SearchService;
 import io.inverno.app.ticket.internal.service.TicketService;
+import io.inverno.app.ticket.internal.model.ChangeEvent;
 import io.inverno.app.ticket.internal.model.Note;
 import io.inverno.app.ticket.internal.model.Ticket;
 import io.inverno.app.ticket.internal.rest.DtoMapper;
+import io.inverno.app.ticket.internal.rest.v1.dto.BulkResultDto;
+import io.inverno.app.ticket.internal.rest.v1.dto.ChangeEventDto;
 import io.inverno.app.ticket.internal.rest.v1.dto.NoteDto;
+import io.inverno.app.ticket.internal.rest.v1.dto.StatusCountsDto;
+import io.inverno.app.ticket.internal.rest.v1.dto.TicketBulkDto;
 import io.inverno.app.ticket.internal.rest.v1.dto.TicketDto;
+import io.inverno.app.ticket.internal.rest.v1.dto.TicketStatusUpdateDto;
 import io.inverno.core.annotation.Bean;
 import io.inverno.mod.base.resource.MediaTypes;
+import io.inverno.mod.http.base.BadRequestException;
+import io.inverno.mod.http.base.HttpException;
 import io.inverno.mod.http.base.Method;
 import io.inverno.mod.http.base.NotFoundException;
 import io.inverno.mod.http.base.Status;
@@ -34,10 +45,13 @@ import io.inverno.mod.web.base.annotation.QueryParam;
 import io.inverno.mod.web.server.WebExchange;
 import io.inverno.mod.web.server.annotation.WebController;
 import io.inverno.mod.web.server.annotation.WebRoute;
+import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 
 /**
  * <p>
@@ -50,17 +64,39 @@ import reactor.core.publisher.Mono;
 @WebController( path = "/api/v1/ticket" )
 public class TicketWebController {
 
+	static final String VIEW_FULL = "full";
+	static final String VIEW_SUMMARY = "summary";
+	
+	static final String HEADER_TOTAL_COUNT = "x-total-count";
+	
+	private static final int SEARCH_DEFAULT_LIMIT = 50;
+	
+	private static final int RANGE_DEFAULT_LIMIT = 100;
+	private static final int RANGE_MAX_LIMIT = 1000;
+	
+	private static final int EXPORT_TICKETS_CHUNK_SIZE = 100;
+	
+	private static final int HISTORY_DEFAULT_LIMIT = 100;
+	
+	private static final int BULK_STATUS_MAX_SIZE = 1000;
+
 	private final TicketService ticketService;
 	private final NoteService noteService;
+	private final SearchService searchService;
+	private final EventService eventService;
 	
 	private final DtoMapper<TicketDto, Ticket> ticketDtoMapper;
 	private final DtoMapper<NoteDto, Note> noteDtoMapper;
+	private final DtoMapper<ChangeEventDto, ChangeEvent> changeEventDtoMapper;
 	
-	public TicketWebController(TicketService ticketService, NoteService noteService, DtoMapper<TicketDto, Ticket> ticketDtoMapper, DtoMapper<NoteDto, Note> noteDtoMapper) {
+	public TicketWebController(TicketService ticketService, NoteService noteService, SearchService searchService, EventService eventService, DtoMapper<TicketDto, Ticket> ticketDtoMapper, DtoMapper<NoteDto, Note> noteDtoMapper, DtoMapper<ChangeEventDto, ChangeEvent> changeEventDtoMapper) {
 		this.ticketService = ticketService;
 		this.noteService = noteService;
+		this.searchService = searchService;
+		this.eventService = eventService;
 		this.ticketDtoMapper = ticketDtoMapper;
 		this.noteDtoMapper = noteDtoMapper;
+		this.changeEventDtoMapper = changeEventDtoMapper;
 	}
 
 	/**
@@ -76,57 +112,208 @@ public class TicketWebController {
 		ticket.setId(null);
 		return this.ticketDtoMapper.toDomain(ticket)
 			.flatMap(this.ticketService::saveTicket)
-			.doOnNext(savedTicket ->
+			.doOnNext(savedTicket -> {
 				exchange.response().headers(headers -> headers
 					.status(Status.CREATED)
 					.add(Headers.NAME_LOCATION, exchange.request().getPathBuilder().segment(savedTicket.getId().toString()).buildPath())
-				)
-			)
+				);
+				ETags.set(exchange, savedTicket.getVersion());
+			})
 			.flatMap(this.ticketDtoMapper::toDto);
 	}
 
 	/**
-	 * List tickets
+	 * <p>
+	 * List tickets ordered by id.
+	 * </p>
+	 *
+	 * <p>
+	 * Tickets are streamed to the client, a page of tickets can be requested by specifying a limit, the id of the last ticket of a page is then the cursor to use to get the next page.
+	 * </p>
 	 *
 	 * @param statuses the statuses of the tickets to return, if not specified include all tickets
+	 * @param after    the id of the ticket after which tickets are returned, if not specified start from the first ticket
+	 * @param limit    the maximum number of tickets to return, if not specified return all tickets
+	 * @param view     {@code summary} to exclude ticket descriptions, {@code full} or not specified to return complete tickets
 	 *
 	 * @return a list of tickets
+	 * @throws BadRequestException if the specified view is invalid
 	 */
 	@WebRoute( method = Method.GET, produces = MediaTypes.APPLICATION_JSON )
-	public Flux<TicketDto> listTickets(@QueryParam Optional<List<Ticket.Status>> statuses) {
-		return statuses.map(this.ticketService::listTickets).orElse(this.ticketService.listTickets())
-			.flatMap(this.ticketDtoMapper::toDto);
+	public Flux<TicketDto> listTickets(@QueryParam Optional<List<Ticket.Status>> statuses, @QueryParam Optional<Long> after, @QueryParam Optional<Integer> limit, @QueryParam Optional<String> view) {
+		return this.ticketService.listTickets(statuses.orElse(List.of(Ticket.Status.values())), after.orElse(0l), limit.filter(l -> l >= 0).orElse(-1), isSummaryView(view))
+			.concatMap(this.ticketDtoMapper::toDto);
+	}
+
+	/**
+	 * <p>
+	 * List tickets ordered by creation date time.
+	 * </p>
+	 *
+	 * @param statuses the statuses of the tickets to return, if not specified include all tickets
+	 * @param from     the date time from which tickets were created, if not specified there's no lower bound
+	 * @param to       the date time until which tickets were created, if not specified there's no upper bound
+	 * @param limit    the maximum number of tickets to return, at most 1000, if not specified return at most 100 tickets
+	 * @param reverse  true to return newest tickets first, false or not specified to return oldest tickets first
+	 * @param view     {@code summary} to exclude ticket descriptions, {@code full} or not specified to return complete tickets
+	 *
+	 * @return a list of tickets
+	 * @throws BadRequestException if the specified limit or view is invalid
+	 */
+	@WebRoute( path = "/_range", method = Method.GET, produces = MediaTypes.APPLICATION_JSON )
+	public Flux<TicketDto> listTicketsByCreationDateTime(@QueryParam Optional<List<Ticket.Status>> statuses, @QueryParam Optional<ZonedDateTime> from, @QueryParam Optional<ZonedDateTime> to, @QueryParam Optional<Integer> limit, @QueryParam Optional<Boolean> reverse, @QueryParam Optional<String> view) {
+		int actualLimit = limit.orElse(RANGE_DEFAULT_LIMIT);
+		if(actualLimit < 0 || actualLimit > RANGE_MAX_LIMIT) {
+			throw new BadRequestException("Limit must be between 0 and " + RANGE_MAX_LIMIT);
+		}
+		return this.ticketService.listTicketsByCreationDateTime(statuses.orElse(List.of(Ticket.Status.values())), from.orElse(null), to.orElse(null), actualLimit, reverse.orElse(false), isSummaryView(view))
+			.concatMap(this.ticketDtoMapper::toDto);
+	}
+
+	/**
+	 * <p>
+	 * Count tickets by status.
+	 * </p>
+	 *
+	 * @return the number of tickets in each status
+	 */
+	@WebRoute( path = "/_count", method = Method.GET, produces = MediaTypes.APPLICATION_JSON )
+	public Mono<StatusCountsDto> countTickets() {
+		return this.ticketService.countTickets()
+			.map(counts -> new StatusCountsDto(null, counts));
+	}
+
+	/**
+	 * <p>
+	 * Search tickets.
+	 * </p>
+	 *
+	 * <p>
+	 * Tickets containing all the terms of the query in their title, summary, description or notes are returned, the most relevant first. Terms are case insensitive words of at least 2 letters or
+	 * digits.
+	 * </p>
+	 * 
+	 * <p>
+	 * A page of tickets can be requested by specifying an offset and a limit, the result of a query is kept for a few seconds so that the next pages are consistent with the first one.
+	 * </p>
+	 *
+	 * @param q      the search query
+	 * @param offset the number of tickets to skip, if not specified start from the most relevant ticket
+	 * @param limit  the maximum number of tickets to return, if not specified return at most 50 tickets
+	 * @param view   {@code summary} to exclude ticket descriptions, {@code full} or not specified to return complete tickets
+	 *
+	 * @return a list of tickets
+	 * @throws BadRequestException if the specified view is invalid
+	 */
+	@WebRoute( path = "/_search", method = Method.GET, produces = MediaTypes.APPLICATION_JSON )
+	public Flux<TicketDto> searchTickets(@QueryParam String q, @QueryParam Optional<Long> offset, @QueryParam Optional<Integer> limit, @QueryParam Optional<String> view) {
+		boolean summary = isSummaryView(view);
+		return this.searchService.search(q, offset.filter(o -> o >= 0).orElse(0l), limit.filter(l -> l >= 0).orElse(SEARCH_DEFAULT_LIMIT))
+			.collectList()
+			.flatMapMany(ticketIds -> summary ? this.ticketService.getTicketSummaries(ticketIds) : this.ticketService.getTickets(ticketIds))
+			.concatMap(this.ticketDtoMapper::toDto);
+	}
+
+	/**
+	 * <p>
+	 * Import tickets in bulk.
+	 * </p>
+	 *
+	 * <p>
+	 * Tickets are streamed as newline delimited JSON, each line is a ticket with an optional list of {@code notes}. Tickets are always created with new ids, status and creation date time are
+	 * preserved when specified. Imported tickets are returned without description in the order they were submitted.
+	 * </p>
+	 *
+	 * @param tickets the tickets to import
+	 *
+	 * @return the imported tickets
+	 */
+	@WebRoute( path = "/_bulk", method = Method.POST, consumes = MediaTypes.APPLICATION_X_NDJSON, produces = MediaTypes.APPLICATION_X_NDJSON )
+	public Flux<TicketDto> importTickets(@Body Flux<TicketBulkDto> tickets) {
+		return this.ticketService.importTickets(tickets
+				.concatMap(ticket -> this.ticketDtoMapper.toDomain(ticket.getTicket())
+					.zipWith(Flux.fromIterable(ticket.getNotes() != null ? ticket.getNotes() : List.<NoteDto>of())
+						.concatMap(this.noteDtoMapper::toDomain)
+						.collectList()
+					)
+				)
+			)
+			.concatMap(this.ticketDtoMapper::toDto)
+			.doOnNext(ticket -> ticket.setDescription(null));
+	}
+
+	/**
+	 * <p>
+	 * Export all tickets with their notes.
+	 * </p>
+	 *
+	 * <p>
+	 * Tickets are streamed as newline delimited JSON in id order, the result can be imported as is.
+	 * </p>
+	 *
+	 * @return the list of tickets with their notes
+	 */
+	@WebRoute( path = "/_bulk", method = Method.GET, produces = MediaTypes.APPLICATION_X_NDJSON )
+	public Flux<TicketBulkDto> exportTickets() {
+		return this.ticketService.listTickets()
+			.buffer(EXPORT_TICKETS_CHUNK_SIZE)
+			.concatMap(tickets -> Flux.fromIterable(tickets)
+				.zipWith(this.noteService.listTicketsNotes(tickets.stream().map(Ticket::getId).collect(Collectors.toList())))
+			)
+			.concatMap(ticketNotes -> this.ticketDtoMapper.toDto(ticketNotes.getT1())
+				.zipWith(Flux.fromIterable(ticketNotes.getT2().getT2())
+					.concatMap(this.noteDtoMapper::toDto)
+					.collectList()
+				)
+				.map(dtos -> new TicketBulkDto(dtos.getT1(), dtos.getT2()))
+			);
 	}
 
 	/**
 	 * Get a ticket by id.
 	 *
+	 * <p>
+	 * The ticket version is returned in the {@code etag} header, an empty {@code 304} response is returned when it matches the {@code if-none-match} header.
+	 * </p>
+	 *
 	 * @param ticketId the id of the ticket to get
+	 * @param exchange
 	 *
 	 * @return a ticket
 	 * @throws NotFoundException if there's no ticket with the specified id
 	 */
 	@WebRoute( path = "/{ticketId}", method = Method.GET, produces = MediaTypes.APPLICATION_JSON )
-	public Mono<TicketDto> getTicket(@PathParam long ticketId) {
+	public Mono<TicketDto> getTicket(@PathParam long ticketId, WebExchange<?> exchange) {
 		return this.ticketService.getTicket(ticketId)
-			.flatMap(this.ticketDtoMapper::toDto)
-			.switchIfEmpty(Mono.error(() -> new NotFoundException()));
+			.switchIfEmpty(Mono.error(() -> new NotFoundException()))
+			.filter(ticket -> !ETags.notModified(exchange, ticket.getVersion()))
+			.flatMap(this.ticketDtoMapper::toDto);
 	}
 
 	/**
 	 * Update a ticket.
 	 *
+	 * <p>
+	 * The update is only performed if the ticket version matches the {@code if-match} header when specified.
+	 * </p>
+	 *
 	 * @param ticketId the id of the ticket to update
 	 * @param ticket   the updated ticket
+	 * @param exchange
 	 *
 	 * @return the updated ticket
 	 * @throws NotFoundException if there's no ticket with the specified id
+	 * @throws HttpException {@inverno.web.status 412} if the ticket version does not match the {@code if-match} header
 	 */
 	@WebRoute( path = "/{ticketId}", method = Method.PUT, consumes = MediaTypes.APPLICATION_JSON, produces = MediaTypes.APPLICATION_JSON )
-	public Mono<TicketDto> updateTicket(@PathParam long ticketId, @Body TicketDto ticket) {
+	public Mono<TicketDto> updateTicket(@PathParam long ticketId, @Body TicketDto ticket, WebExchange<?> exchange) {
 		ticket.setId(ticketId);
+		Long expectedVersion = ETags.ifMatch(exchange).orElse(null);
 		return this.ticketDtoMapper.toDomain(ticket)
+			.doOnNext(domain -> domain.setVersion(expectedVersion))
 			.flatMap(this.ticketService::saveTicket)
+			.onErrorMap(VersionMismatchException.class, ETags::preconditionFailed)
+			.doOnNext(savedTicket -> ETags.set(exchange, savedTicket.getVersion()))
 			.flatMap(this.ticketDtoMapper::toDto)
 			.switchIfEmpty(Mono.error(() -> new NotFoundException()));
 	}
@@ -134,19 +321,70 @@ public class TicketWebController {
 	/**
 	 * Update the status of a ticket.
 	 *
+	 * <p>
+	 * The update is only performed if the ticket version matches the {@code if-match} header when specified.
+	 * </p>
+	 *
 	 * @param ticketId the id of the ticket to update
 	 * @param status   the new ticket status
+	 * @param exchange
 	 *
 	 * @return the updated ticket
 	 * @throws NotFoundException if there's no ticket with the specified id
+	 * @throws HttpException {@inverno.web.status 412} if the ticket version does not match the {@code if-match} header
 	 */
 	@WebRoute( path = "/{ticketId}/status", method = Method.POST, consumes = MediaTypes.TEXT_PLAIN, produces = MediaTypes.APPLICATION_JSON)
-	public Mono<TicketDto> updateTicketStatus(@PathParam long ticketId, @Body Ticket.Status status) {
-		return this.ticketService.updateTicketStatus(ticketId, status)
+	public Mono<TicketDto> updateTicketStatus(@PathParam long ticketId, @Body Ticket.Status status, WebExchange<?> exchange) {
+		return this.ticketService.updateTicketStatus(ticketId, status, ETags.ifMatch(exchange).orElse(null))
+			.onErrorMap(VersionMismatchException.class, ETags::preconditionFailed)
+			.doOnNext(updatedTicket -> ETags.set(exchange, updatedTicket.getVersion()))
 			.flatMap(this.ticketDtoMapper::toDto)
 			.switchIfEmpty(Mono.error(() -> new NotFoundException()));
 	}
 
+	/**
+	 * <p>
+	 * Update the status of multiple tickets.
+	 * </p>
+	 *
+	 * <p>
+	 * All updates are applied atomically, an update is only performed if the ticket version matches the specified version when specified. The outcome of each update is returned in order, the new
+	 * ticket version is returned for updated tickets.
+	 * </p>
+	 *
+	 * @param updates the list of status updates
+	 *
+	 * @return the list of update results
+	 * @throws BadRequestException if a ticket id or a status is missing or if there are too many updates
+	 */
+	@WebRoute( path = "/_bulk/status", method = Method.POST, consumes = MediaTypes.APPLICATION_JSON, produces = MediaTypes.APPLICATION_JSON )
+	public Flux<BulkResultDto> updateTicketStatuses(@Body Flux<TicketStatusUpdateDto> updates) {
+		// All updates are applied in a single script, the number of updates is limited to avoid blocking Redis
+		return updates
+			.take(BULK_STATUS_MAX_SIZE + 1)
+			.index()
+			.map(indexedUpdate -> {
+				if(indexedUpdate.getT1() >= BULK_STATUS_MAX_SIZE) {
+					throw new BadRequestException("Too many updates, maximum is " + BULK_STATUS_MAX_SIZE);
+				}
+				TicketStatusUpdateDto update = indexedUpdate.getT2();
+				if(update.getTicketId() == null) {
+					throw new BadRequestException("Missing ticket id");
+				}
+				if(update.getStatus() == null) {
+					throw new BadRequestException("Missing status for ticket " + update.getTicketId());
+				}
+				Ticket ticket = new Ticket();
+				ticket.setId(update.getTicketId());
+				ticket.setStatus(update.getStatus());
+				ticket.setVersion(update.getVersion());
+				return ticket;
+			})
+			.collectList()
+			.flatMapMany(this.ticketService::updateTicketStatuses)
+			.map(result -> new BulkResultDto(result.getId(), result.getOutcome(), result.getVersion()));
+	}
+
 	/**
 	 * Delete a ticket.
 	 *
@@ -182,56 +420,102 @@ public class TicketWebController {
 					.status(Status.CREATED)
 					.add(Headers.NAME_LOCATION, exchange.request().getPathBuilder().segment(savedNote.getIndex().toString()).buildPath())
 				);
+				ETags.set(exchange, savedNote.getVersion());
 			})
 			.flatMap(this.noteDtoMapper::toDto)
 			.switchIfEmpty(Mono.error(() -> new NotFoundException()));
 	}
 
+	/**
+	 * List the changes made to a ticket.
+	 *
+	 * <p>
+	 * Changes are listed from the oldest, the next page of changes is requested by specifying the id of the last change received. Only the latest changes are kept in a ticket history.
+	 * </p>
+	 *
+	 * @param ticketId the id of the ticket
+	 * @param after    the id of the change after which changes must be listed, if not specified start from the oldest change
+	 * @param limit    the maximum number of changes to return, defaults to 100
+	 *
+	 * @return a list of changes
+	 */
+	@WebRoute( path = "/{ticketId}/history", method = Method.GET, produces = MediaTypes.APPLICATION_JSON )
+	public Flux<ChangeEventDto> listTicketHistory(@PathParam long ticketId, @QueryParam Optional<String> after, @QueryParam Optional<Integer> limit) {
+		return this.eventService.listTicketHistory(ticketId, after.orElse(null), limit.filter(l -> l > 0).orElse(HISTORY_DEFAULT_LIMIT))
+			.concatMap(this.changeEventDtoMapper::toDto);
+	}
+
 	/**
 	 * List notes associated to a ticket.
 	 *
+	 * <p>
+	 * A page of notes can be requested by specifying an offset and a limit, a negative offset is relative to the end of the list (eg. {@code offset=-20} returns the latest 20 notes). The total
+	 * number of notes is returned in the {@code x-total-count} header.
+	 * </p>
+	 *
 	 * @param ticketId the id of the ticket
+	 * @param offset   the number of notes to skip or, if negative, the number of latest notes to return, if not specified start from the first note
+	 * @param limit    the maximum number of notes to return, if not specified return all notes
+	 * @param exchange
 	 *
 	 * @return a list of ticket note
 	 */
 	@WebRoute( path = "/{ticketId}/note", method = Method.GET, produces = MediaTypes.APPLICATION_JSON )
-	public Flux<NoteDto> listTicketNotes(@PathParam long ticketId) {
-		return this.noteService.listTicketNotes(ticketId)
-			.flatMap(this.noteDtoMapper::toDto);
+	public Flux<NoteDto> listTicketNotes(@PathParam long ticketId, @QueryParam Optional<Long> offset, @QueryParam Optional<Integer> limit, WebExchange<?> exchange) {
+		return this.noteService.listTicketNotes(ticketId, offset.orElse(0l), limit.filter(l -> l >= 0).orElse(-1))
+			.doOnNext(page -> exchange.response().headers(headers -> headers.add(HEADER_TOTAL_COUNT, page.getT1().toString())))
+			.flatMapIterable(Tuple2::getT2)
+			.concatMap(this.noteDtoMapper::toDto);
 	}
 
 	/**
 	 * Get a ticket note.
 	 *
+	 * <p>
+	 * The note version is returned in the {@code etag} header, an empty {@code 304} response is returned when it matches the {@code if-none-match} header.
+	 * </p>
+	 *
 	 * @param ticketId  the id of the ticket
 	 * @param noteIndex the index of the note to get
+	 * @param exchange
 	 *
 	 * @return a ticket note
 	 * @throws NotFoundException if no ticket note exists for the specified ticket id and note index
 	 */
 	@WebRoute( path = "/{ticketId}/note/{noteIndex}", method = Method.GET, produces = MediaTypes.APPLICATION_JSON )
-	public Mono<NoteDto> getTicketNote(@PathParam long ticketId, @PathParam int noteIndex) {
+	public Mono<NoteDto> getTicketNote(@PathParam long ticketId, @PathParam int noteIndex, WebExchange<?> exchange) {
 		return this.noteService.getTicketNote(ticketId, noteIndex)
-			.flatMap(this.noteDtoMapper::toDto)
-			.switchIfEmpty(Mono.error(() -> new NotFoundException()));
+			.switchIfEmpty(Mono.error(() -> new NotFoundException()))
+			.filter(note -> !ETags.notModified(exchange, note.getVersion()))
+			.flatMap(this.noteDtoMapper::toDto);
 	}
 
 	/**
 	 * Update a ticket note.
 	 *
+	 * <p>
+	 * The update is only performed if the note version matches the {@code if-match} header when specified.
+	 * </p>
+	 *
 	 * @param ticketId  the id of the ticket
 	 * @param noteIndex the index of the note to update
 	 * @param note      the update note
+	 * @param exchange
 	 *
 	 * @return the updated note
 	 * @throws NotFoundException if no ticket note exists for the specified ticket id and note index
+	 * @throws HttpException {@inverno.web.status 412} if the note version does not match the {@code if-match} header
 	 */
 	@WebRoute( path = "/{ticketId}/note/{noteIndex}", method = Method.PUT, consumes = MediaTypes.APPLICATION_JSON, produces = MediaTypes.APPLICATION_JSON )
-	public Mono<NoteDto> updateTicketNote(@PathParam long ticketId, @PathParam int noteIndex, @Body NoteDto note) {
+	public Mono<NoteDto> updateTicketNote(@PathParam long ticketId, @PathParam int noteIndex, @Body NoteDto note, WebExchange<?> exchange) {
 		note.setTicketId(ticketId);
 		note.setIndex(noteIndex);
+		Long expectedVersion = ETags.ifMatch(exchange).orElse(null);
 		return this.noteDtoMapper.toDomain(note)
+			.doOnNext(domain -> domain.setVersion(expectedVersion))
 			.flatMap(this.noteService::saveTicketNote)
+			.onErrorMap(VersionMismatchException.class, ETags::preconditionFailed)
+			.doOnNext(savedNote -> ETags.set(exchange, savedNote.getVersion()))
 			.flatMap(this.noteDtoMapper::toDto)
 			.switchIfEmpty(Mono.error(() -> new NotFoundException()));
 	}
@@ -251,4 +535,24 @@ public class TicketWebController {
 			.flatMap(this.noteDtoMapper::toDto)
 			.switchIfEmpty(Mono.error(() -> new NotFoundException()));
 	}
+
+	/**
+	 * <p>
+	 * Determines whether the specified ticket view is the summary view.
+	 * </p>
+	 *
+	 * @param view a ticket view
+	 *
+	 * @return true if the summary view was requested, false otherwise
+	 * @throws BadRequestException if the specified view is invalid
+	 */
+	static boolean isSummaryView(Optional<String> view) throws BadRequestException {
+		return view.map(v -> {
+			switch(v) {
+				case VIEW_FULL: return false;
+				case VIEW_SUMMARY: return true;
+				default: throw new BadRequestException("Invalid view: " + v);
+			}
+		}).orElse(false);
+	}
 }
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal.rest.v1.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import io.inverno.app.ticket.internal.model.BulkResult;
+
+/**
+ * <p>
+ * Bulk operation item result Data Transfer Object.
+ * </p>
+ * 
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+@JsonInclude(Include.NON_NULL)
+public class BulkResultDto {
+	
+	private long id;
+	private BulkResult.Outcome outcome;
+	private Long version;
+
+	public BulkResultDto() {
+	}
+
+	public BulkResultDto(long id, BulkResult.Outcome outcome, Long version) {
+		this.id = id;
+		this.outcome = outcome;
+		this.version = version;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public void setId(long id) {
+		this.id = id;
+	}
+
+	public BulkResult.Outcome getOutcome() {
+		return outcome;
+	}
+
+	public void setOutcome(BulkResult.Outcome outcome) {
+		this.outcome = outcome;
+	}
+
+	public Long getVersion() {
+		return version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal.rest.v1.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import io.inverno.app.ticket.internal.model.ChangeEvent;
+import io.inverno.app.ticket.internal.model.Ticket;
+import java.time.ZonedDateTime;
+
+/**
+ * <p>
+ * Change event Data Transfer Object.
+ * </p>
+ * 
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+@JsonInclude(Include.NON_NULL)
+public class ChangeEventDto {
+	
+	private String id;
+	private ChangeEvent.Type type;
+	private Long planId;
+	private Long ticketId;
+	private Integer noteIndex;
+	private Ticket.Status status;
+	private Long version;
+	private ZonedDateTime dateTime;
+
+	public ChangeEventDto() {
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public ChangeEvent.Type getType() {
+		return type;
+	}
+
+	public void setType(ChangeEvent.Type type) {
+		this.type = type;
+	}
+
+	public Long getPlanId() {
+		return planId;
+	}
+
+	public void setPlanId(Long planId) {
+		this.planId = planId;
+	}
+
+	public Long getTicketId() {
+		return ticketId;
+	}
+
+	public void setTicketId(Long ticketId) {
+		this.ticketId = ticketId;
+	}
+
+	public Integer getNoteIndex() {
+		return noteIndex;
+	}
+
+	public void setNoteIndex(Integer noteIndex) {
+		this.noteIndex = noteIndex;
+	}
+
+	public Ticket.Status getStatus() {
+		return status;
+	}
+
+	public void setStatus(Ticket.Status status) {
+		this.status = status;
+	}
+
+	public Long getVersion() {
+		return version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
+
+	public ZonedDateTime getDateTime() {
+		return dateTime;
+	}
+
+	public void setDateTime(ZonedDateTime dateTime) {
+		this.dateTime = dateTime;
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal.rest.v1.dto;
+
+/**
+ * <p>
+ * Index consistency check Data Transfer Object.
+ * </p>
+ * 
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+public class IndexCheckDto {
+	
+	private boolean repaired;
+	private long tickets;
+	private long misindexedTickets;
+	private long orphanStatusTickets;
+	private long orphanPlanTickets;
+	
+	public IndexCheckDto() {
+	}
+
+	public IndexCheckDto(boolean repaired, long tickets, long misindexedTickets, long orphanStatusTickets, long orphanPlanTickets) {
+		this.repaired = repaired;
+		this.tickets = tickets;
+		this.misindexedTickets = misindexedTickets;
+		this.orphanStatusTickets = orphanStatusTickets;
+		this.orphanPlanTickets = orphanPlanTickets;
+	}
+
+	public boolean isRepaired() {
+		return repaired;
+	}
+
+	public void setRepaired(boolean repaired) {
+		this.repaired = repaired;
+	}
+
+	public long getTickets() {
+		return tickets;
+	}
+
+	public void setTickets(long tickets) {
+		this.tickets = tickets;
+	}
+
+	public long getMisindexedTickets() {
+		return misindexedTickets;
+	}
+
+	public void setMisindexedTickets(long misindexedTickets) {
+		this.misindexedTickets = misindexedTickets;
+	}
+
+	public long getOrphanStatusTickets() {
+		return orphanStatusTickets;
+	}
+
+	public void setOrphanStatusTickets(long orphanStatusTickets) {
+		this.orphanStatusTickets = orphanStatusTickets;
+	}
+
+	public long getOrphanPlanTickets() {
+		return orphanPlanTickets;
+	}
+
+	public void setOrphanPlanTickets(long orphanPlanTickets) {
+		this.orphanPlanTickets = orphanPlanTickets;
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal.rest.v1.dto;
+
+/**
+ * <p>
+ * Plan ticket move Data Transfer Object.
+ * </p>
+ * 
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+public class PlanTicketMoveDto {
+	
+	private Long ticketId;
+	private Long referenceTicketId;
+
+	public PlanTicketMoveDto() {
+	}
+
+	public Long getTicketId() {
+		return ticketId;
+	}
+
+	public void setTicketId(Long ticketId) {
+		this.ticketId = ticketId;
+	}
+
+	public Long getReferenceTicketId() {
+		return referenceTicketId;
+	}
+
+	public void setReferenceTicketId(Long referenceTicketId) {
+		this.referenceTicketId = referenceTicketId;
+	}
+}
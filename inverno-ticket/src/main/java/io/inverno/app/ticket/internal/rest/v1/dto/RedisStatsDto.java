@@ -0,0 +1,143 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal.rest.v1.dto;
+
+/**
+ * <p>
+ * Redis connections statistics Data Transfer Object, wait times are in microseconds.
+ * </p>
+ * 
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+public class RedisStatsDto {
+	
+	private boolean readConnectionEnabled;
+	private long readCommands;
+	private boolean poolProbeEnabled;
+	private long poolProbes;
+	private long poolProbeLastWait;
+	private long poolProbeAverageWait;
+	private long poolProbeMaxWait;
+	private long poolAcquisitions;
+	private long poolLastWait;
+	private long poolAverageWait;
+	private long poolMaxWait;
+	
+	public RedisStatsDto() {
+	}
+
+	public RedisStatsDto(boolean readConnectionEnabled, long readCommands, boolean poolProbeEnabled, long poolProbes, long poolProbeLastWait, long poolProbeAverageWait, long poolProbeMaxWait, long poolAcquisitions, long poolLastWait, long poolAverageWait, long poolMaxWait) {
+		this.readConnectionEnabled = readConnectionEnabled;
+		this.readCommands = readCommands;
+		this.poolProbeEnabled = poolProbeEnabled;
+		this.poolProbes = poolProbes;
+		this.poolProbeLastWait = poolProbeLastWait;
+		this.poolProbeAverageWait = poolProbeAverageWait;
+		this.poolProbeMaxWait = poolProbeMaxWait;
+		this.poolAcquisitions = poolAcquisitions;
+		this.poolLastWait = poolLastWait;
+		this.poolAverageWait = poolAverageWait;
+		this.poolMaxWait = poolMaxWait;
+	}
+
+	public boolean isReadConnectionEnabled() {
+		return readConnectionEnabled;
+	}
+
+	public void setReadConnectionEnabled(boolean readConnectionEnabled) {
+		this.readConnectionEnabled = readConnectionEnabled;
+	}
+
+	public long getReadCommands() {
+		return readCommands;
+	}
+
+	public void setReadCommands(long readCommands) {
+		this.readCommands = readCommands;
+	}
+
+	public boolean isPoolProbeEnabled() {
+		return poolProbeEnabled;
+	}
+
+	public void setPoolProbeEnabled(boolean poolProbeEnabled) {
+		this.poolProbeEnabled = poolProbeEnabled;
+	}
+
+	public long getPoolProbes() {
+		return poolProbes;
+	}
+
+	public void setPoolProbes(long poolProbes) {
+		this.poolProbes = poolProbes;
+	}
+
+	public long getPoolProbeLastWait() {
+		return poolProbeLastWait;
+	}
+
+	public void setPoolProbeLastWait(long poolProbeLastWait) {
+		this.poolProbeLastWait = poolProbeLastWait;
+	}
+
+	public long getPoolProbeAverageWait() {
+		return poolProbeAverageWait;
+	}
+
+	public void setPoolProbeAverageWait(long poolProbeAverageWait) {
+		this.poolProbeAverageWait = poolProbeAverageWait;
+	}
+
+	public long getPoolProbeMaxWait() {
+		return poolProbeMaxWait;
+	}
+
+	public void setPoolProbeMaxWait(long poolProbeMaxWait) {
+		this.poolProbeMaxWait = poolProbeMaxWait;
+	}
+
+	public long getPoolAcquisitions() {
+		return poolAcquisitions;
+	}
+
+	public void setPoolAcquisitions(long poolAcquisitions) {
+		this.poolAcquisitions = poolAcquisitions;
+	}
+
+	public long getPoolLastWait() {
+		return poolLastWait;
+	}
+
+	public void setPoolLastWait(long poolLastWait) {
+		this.poolLastWait = poolLastWait;
+	}
+
+	public long getPoolAverageWait() {
+		return poolAverageWait;
+	}
+
+	public void setPoolAverageWait(long poolAverageWait) {
+		this.poolAverageWait = poolAverageWait;
+	}
+
+	public long getPoolMaxWait() {
+		return poolMaxWait;
+	}
+
+	public void setPoolMaxWait(long poolMaxWait) {
+		this.poolMaxWait = poolMaxWait;
+	}
+}
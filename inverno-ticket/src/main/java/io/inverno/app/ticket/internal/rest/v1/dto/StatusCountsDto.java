@@ -0,0 +1,59 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal.rest.v1.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import io.inverno.app.ticket.internal.model.Ticket;
+import java.util.Map;
+
+/**
+ * <p>
+ * Ticket status counters Data Transfer Object.
+ * </p>
+ * 
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+@JsonInclude(Include.NON_NULL)
+public class StatusCountsDto {
+	
+	private Long planId;
+	private Map<Ticket.Status, Long> counts;
+
+	public StatusCountsDto() {
+	}
+
+	public StatusCountsDto(Long planId, Map<Ticket.Status, Long> counts) {
+		this.planId = planId;
+		this.counts = counts;
+	}
+
+	public Long getPlanId() {
+		return planId;
+	}
+
+	public void setPlanId(Long planId) {
+		this.planId = planId;
+	}
+
+	public Map<Ticket.Status, Long> getCounts() {
+		return counts;
+	}
+
+	public void setCounts(Map<Ticket.Status, Long> counts) {
+		this.counts = counts;
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal.rest.v1.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import java.util.List;
+
+/**
+ * <p>
+ * Ticket with notes Data Transfer Object used to import and export tickets in bulk.
+ * </p>
+ * 
+ * <p>
+ * Ticket properties are unwrapped so that a ticket with notes is represented as a ticket with an extra {@code notes} property.
+ * </p>
+ * 
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+@JsonInclude(Include.NON_NULL)
+public class TicketBulkDto {
+
+	@JsonUnwrapped
+	private TicketDto ticket;
+	private List<NoteDto> notes;
+
+	public TicketBulkDto() {
+		this.ticket = new TicketDto();
+	}
+
+	public TicketBulkDto(TicketDto ticket, List<NoteDto> notes) {
+		this.ticket = ticket;
+		this.notes = notes;
+	}
+
+	public TicketDto getTicket() {
+		return ticket;
+	}
+
+	public void setTicket(TicketDto ticket) {
+		this.ticket = ticket;
+	}
+
+	public List<NoteDto> getNotes() {
+		return notes;
+	}
+
+	public void setNotes(List<NoteDto> notes) {
+		this.notes = notes;
+	}
+}
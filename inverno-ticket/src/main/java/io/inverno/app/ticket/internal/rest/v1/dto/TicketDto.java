@@ -15,6 +15,8 @@
  */
 package io.inverno.app.ticket.internal.rest.v1.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import io.inverno.app.ticket.internal.model.Ticket;
 import java.time.ZonedDateTime;
 
@@ -25,6 +27,7 @@ import java.time.ZonedDateTime;
  * 
  * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
  */
+@JsonInclude(Include.NON_NULL)
 public class TicketDto {
 	
 	private Long id;
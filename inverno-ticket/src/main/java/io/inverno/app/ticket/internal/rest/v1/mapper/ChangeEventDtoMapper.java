@@ -0,0 +1,69 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal.rest.v1.mapper;
+
+import io.inverno.app.ticket.internal.model.ChangeEvent;
+import io.inverno.app.ticket.internal.rest.DtoMapper;
+import io.inverno.app.ticket.internal.rest.v1.dto.ChangeEventDto;
+import io.inverno.core.annotation.Bean;
+import reactor.core.publisher.Mono;
+
+/**
+ * <p>
+ * Change event DTO mapper.
+ * </p>
+ *
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+@Bean( visibility = Bean.Visibility.PRIVATE )
+public class ChangeEventDtoMapper implements DtoMapper<ChangeEventDto, ChangeEvent> {
+
+	@Override
+	public Mono<ChangeEventDto> toDto(ChangeEvent domain) {
+		return Mono.fromSupplier(() -> {
+			ChangeEventDto dto = new ChangeEventDto();
+		
+			dto.setId(domain.getId());
+			dto.setType(domain.getType());
+			dto.setPlanId(domain.getPlanId());
+			dto.setTicketId(domain.getTicketId());
+			dto.setNoteIndex(domain.getNoteIndex());
+			dto.setStatus(domain.getStatus());
+			dto.setVersion(domain.getVersion());
+			dto.setDateTime(domain.getDateTime());
+
+			return dto;
+		});
+	}
+
+	@Override
+	public Mono<ChangeEvent> toDomain(ChangeEventDto dto) {
+		return Mono.fromSupplier(() -> {
+			ChangeEvent domain = new ChangeEvent();
+
+			domain.setId(dto.getId());
+			domain.setType(dto.getType());
+			domain.setPlanId(dto.getPlanId());
+			domain.setTicketId(dto.getTicketId());
+			domain.setNoteIndex(dto.getNoteIndex());
+			domain.setStatus(dto.getStatus());
+			domain.setVersion(dto.getVersion());
+			domain.setDateTime(dto.getDateTime());
+
+			return domain;
+		});
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal.service;
+
+import io.inverno.app.ticket.internal.model.ChangeEvent;
+import io.inverno.core.annotation.Bean;
+import io.inverno.core.annotation.Destroy;
+import io.inverno.core.annotation.Init;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+/**
+ * <p>
+ * The change feed receives the {@link ChangeEvent} published by all application instances on the Redis events channel.
+ * </p>
+ * 
+ * <p>
+ * Events are multicast to current subscribers, events received while no subscriber is present or published while the Pub/Sub connection is lost are not replayed.
+ * </p>
+ * 
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+@Bean( visibility = Bean.Visibility.PRIVATE )
+public class ChangeFeed {
+
+	private static final Logger LOGGER = LogManager.getLogger(ChangeFeed.class);
+	
+	private final RedisClient client;
+	private final EventService eventService;
+	private final Sinks.Many<ChangeEvent> sink;
+	
+	private StatefulRedisPubSubConnection<String, String> connection;
+
+	public ChangeFeed(RedisClient lettuceRedisClient, EventService eventService) {
+		this.client = lettuceRedisClient;
+		this.eventService = eventService;
+		this.sink = Sinks.many().multicast().directBestEffort();
+	}
+	
+	@Init
+	public void init() {
+		this.connection = this.client.connectPubSub();
+		this.connection.addListener(new RedisPubSubAdapter<>() {
+			
+			@Override
+			public void message(String channel, String message) {
+				ChangeFeed.this.onMessage(message);
+			}
+		});
+		this.connection.sync().subscribe(EventService.REDIS_CHANNEL_EVENTS);
+	}
+	
+	@Destroy
+	public void destroy() {
+		this.sink.tryEmitComplete();
+		if(this.connection != null) {
+			this.connection.close();
+		}
+	}
+	
+	private void onMessage(String message) {
+		try {
+			// Messages are all received on the connection event loop, emissions are therefore serialized
+			this.sink.tryEmitNext(this.eventService.decodeMessage(message));
+		}
+		catch(RuntimeException e) {
+			LOGGER.warn("Ignoring invalid change event: " + message, e);
+		}
+	}
+	
+	public Flux<ChangeEvent> events() {
+		return this.sink.asFlux();
+	}
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.inverno.app.ticket.TicketApp;
+import io.inverno.app.ticket.internal.exception.EventGroupNotFoundException;
+import io.inverno.app.ticket.internal.exception.TicketException;
+import io.inverno.app.ticket.internal.model.ChangeEvent;
+import io.inverno.core.annotation.Bean;
+import io.inverno.mod.redis.RedisTransactionalClient;
+import io.inverno.mod.redis.operations.RedisScriptingReactiveOperations;
+import java.util.ArrayList;
+import java.util.List;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * <p>
+ * Event service is used to record and publish {@link ChangeEvent}.
+ * </p>
+ * 
+ * <p>
+ * Events are appended to the event log stream, to the history stream of the ticket they refer to and published to the Redis events channel by the scripts writing the changes, atomically
+ * with them. Recording is best effort: an error does not fail the change.
+ * </p>
+ * 
+ * <p>
+ * The event log can be processed incrementally by downstream systems using consumer groups, both the event log and ticket histories are trimmed to a maximum length.
+ * </p>
+ * 
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+@Bean
+public class EventService {
+
+	public static final String REDIS_CHANNEL_EVENTS = TicketApp.REDIS_KEY + ":Events";
+	public static final String REDIS_KEY_EVENT_LOG = TicketApp.REDIS_KEY + ":Events:LOG";
+	public static final String REDIS_KEY_TICKET_HISTORY = TicketService.REDIS_KEY_TICKET + ":History";
+	
+	private static final long EVENT_LOG_MAX_LENGTH = 100000;
+	private static final long TICKET_HISTORY_MAX_LENGTH = 1000;
+	
+	/**
+	 * <p>
+	 * Lua functions recording change events in the scripts making the changes: {@code record_event} appends an event to the event log stream and, for a ticket event, to the history stream of
+	 * the ticket, then publishes it to the events channel as a JSON message {"id": log entry id, "event": event}. Events are timestamped with the Redis server time, the same for all events of a
+	 * script.
+	 * </p>
+	 * 
+	 * <p>
+	 * Events are recorded with {@code redis.pcall()} once changes have been written so that a failure to record an event never fails a change. The ticket history key is derived from the ticket
+	 * id and not declared in KEYS, scripts using these functions require a standalone Redis server which is checked on startup.
+	 * </p>
+	 */
+	static final String LUA_EVENT_FUNCTIONS = 
+		"local EVENT_CHANNEL = '" + REDIS_CHANNEL_EVENTS + "'\n" + 
+		"local EVENT_LOG_KEY = '" + REDIS_KEY_EVENT_LOG + "'\n" + 
+		"local EVENT_LOG_MAX_LENGTH = " + EVENT_LOG_MAX_LENGTH + "\n" + 
+		"local TICKET_HISTORY_KEY = '" + REDIS_KEY_TICKET_HISTORY + "'\n" + 
+		"local TICKET_HISTORY_MAX_LENGTH = " + TICKET_HISTORY_MAX_LENGTH + "\n" + """
+		redis.replicate_commands()
+		local eventDateTime
+		local function event_date_time()
+			if not eventDateTime then
+				local time = redis.call('TIME')
+				local seconds = tonumber(time[1])
+				local days = math.floor(seconds / 86400)
+				local secondOfDay = seconds - days * 86400
+				-- civil date from the number of days since epoch
+				local z = days + 719468
+				local era = math.floor(z / 146097)
+				local dayOfEra = z - era * 146097
+				local yearOfEra = math.floor((dayOfEra - math.floor(dayOfEra / 1460) + math.floor(dayOfEra / 36524) - math.floor(dayOfEra / 146096)) / 365)
+				local dayOfYear = dayOfEra - (365 * yearOfEra + math.floor(yearOfEra / 4) - math.floor(yearOfEra / 100))
+				local mp = math.floor((5 * dayOfYear + 2) / 153)
+				local day = dayOfYear - math.floor((153 * mp + 2) / 5) + 1
+				local month = mp < 10 and mp + 3 or mp - 9
+				local year = yearOfEra + era * 400 + (month <= 2 and 1 or 0)
+				eventDateTime = string.format('%04d-%02d-%02dT%02d:%02d:%02d.%06dZ', year, month, day, math.floor(secondOfDay / 3600), math.floor(secondOfDay / 60) % 60, secondOfDay % 60, tonumber(time[2]))
+			end
+			return eventDateTime
+		end
+		local function record_event(event)
+			for field, value in pairs(event) do
+				if value == false then
+					event[field] = nil
+				end
+			end
+			event['dateTime'] = event_date_time()
+			local data = cjson.encode(event)
+			local id = redis.pcall('XADD', EVENT_LOG_KEY, 'MAXLEN', '~', EVENT_LOG_MAX_LENGTH, '*', 'event', data)
+			if event['ticketId'] then
+				redis.pcall('XADD', (string.gsub(TICKET_HISTORY_KEY, '%%d', event['ticketId'])), 'MAXLEN', '~', TICKET_HISTORY_MAX_LENGTH, '*', 'event', data)
+			end
+			if type(id) == 'string' then
+				redis.pcall('PUBLISH', EVENT_CHANNEL, cjson.encode({ id = id, event = data }))
+			end
+		end
+		""";
+	
+	/**
+	 * <p>
+	 * Returns at most ARGV[2] entries of the stream KEYS[1] after the entry ARGV[1] (from the beginning if empty) as {id, event, ...}.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_RANGE_EVENTS = new RedisScript("""
+		local start = ARGV[1] == '' and '-' or '(' .. ARGV[1]
+		local events = {}
+		for _, entry in ipairs(redis.call('XRANGE', KEYS[1], start, '+', 'COUNT', ARGV[2])) do
+			table.insert(events, entry[1])
+			table.insert(events, entry[2][2])
+		end
+		return events
+		""");
+	
+	/**
+	 * <p>
+	 * Creates the consumer group ARGV[1] on the event log stream KEYS[1] starting after ARGV[2], returns 1 if the group was created, 0 if it already exists.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_CREATE_GROUP = new RedisScript("""
+		local result = redis.pcall('XGROUP', 'CREATE', KEYS[1], ARGV[1], ARGV[2], 'MKSTREAM')
+		if type(result) == 'table' and result.err then
+			if string.find(result.err, 'BUSYGROUP') then
+				return 0
+			end
+			return result
+		end
+		return 1
+		""");
+	
+	/**
+	 * <p>
+	 * Reads at most ARGV[3] entries of the event log stream KEYS[1] for consumer ARGV[2] of group ARGV[1] after ARGV[4] ('>' for new entries, '0' for the consumer pending entries) as
+	 * {id, event, ...}. Pending entries trimmed from the log are acknowledged and skipped.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_READ_GROUP = new RedisScript("""
+		local result = redis.call('XREADGROUP', 'GROUP', ARGV[1], ARGV[2], 'COUNT', ARGV[3], 'STREAMS', KEYS[1], ARGV[4])
+		local events = {}
+		if result then
+			for _, entry in ipairs(result[1][2]) do
+				if entry[2] then
+					table.insert(events, entry[1])
+					table.insert(events, entry[2][2])
+				else
+					redis.call('XACK', KEYS[1], ARGV[1], entry[1])
+				end
+			end
+		end
+		return events
+		""");
+	
+	/**
+	 * <p>
+	 * Acknowledges the entries ARGV[2..n] of the event log stream KEYS[1] for group ARGV[1], returns the number of acknowledged entries. Entries are acknowledged by chunks to stay within the limits
+	 * of {@code unpack()}.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_ACK = new RedisScript("""
+		local CHUNK_SIZE = 1000
+		local acknowledged = 0
+		for i = 2, #ARGV, CHUNK_SIZE do
+			acknowledged = acknowledged + redis.call('XACK', KEYS[1], ARGV[1], unpack(ARGV, i, math.min(i + CHUNK_SIZE - 1, #ARGV)))
+		end
+		return acknowledged
+		""");
+	
+	/**
+	 * <p>
+	 * Destroys the consumer group ARGV[1] of the event log stream KEYS[1], returns 1 if the group was destroyed, 0 if it does not exist.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_REMOVE_GROUP = new RedisScript("""
+		if redis.call('EXISTS', KEYS[1]) == 0 then
+			return 0
+		end
+		return redis.call('XGROUP', 'DESTROY', KEYS[1], ARGV[1])
+		""");
+	
+	private final RedisTransactionalClient<String, String> redisClient;
+	private final ObjectMapper mapper;
+
+	public EventService(RedisTransactionalClient<String, String> redisClient, ObjectMapper mapper) {
+		this.redisClient = redisClient;
+		this.mapper = mapper;
+	}
+	
+	public Flux<ChangeEvent> listTicketHistory(long ticketId, String afterEventId, int limit) {
+		return SCRIPT_RANGE_EVENTS
+			.<List<String>>eval(
+				this.redisClient, 
+				RedisScriptingReactiveOperations.ScriptOutput.MULTI, 
+				keys -> keys.key(String.format(REDIS_KEY_TICKET_HISTORY, ticketId)),
+				args -> {
+					args.value(afterEventId != null ? afterEventId : "");
+					args.value(Integer.toString(limit));
+				}
+			)
+			.next()
+			.flatMapIterable(this::decodeEntries);
+	}
+	
+	public Mono<Boolean> createEventGroup(String group, boolean fromStart) {
+		// A new group only receives events logged after its creation unless it starts from the beginning of the log
+		return SCRIPT_CREATE_GROUP
+			.<Long>eval(
+				this.redisClient, 
+				RedisScriptingReactiveOperations.ScriptOutput.INTEGER, 
+				keys -> keys.key(REDIS_KEY_EVENT_LOG),
+				args -> {
+					args.value(group);
+					args.value(fromStart ? "0" : "$");
+				}
+			)
+			.next()
+			.map(created -> created == 1);
+	}
+	
+	public Flux<ChangeEvent> readEventGroup(String group, String consumer, int count, boolean pending) {
+		// Events read by a consumer are pending until acknowledged, pending events are read again after a consumer failure
+		return SCRIPT_READ_GROUP
+			.<List<String>>eval(
+				this.redisClient, 
+				RedisScriptingReactiveOperations.ScriptOutput.MULTI, 
+				keys -> keys.key(REDIS_KEY_EVENT_LOG),
+				args -> {
+					args.value(group);
+					args.value(consumer);
+					args.value(Integer.toString(count));
+					args.value(pending ? "0" : ">");
+				}
+			)
+			.onErrorMap(e -> e.getMessage() != null && e.getMessage().contains("NOGROUP"), e -> new EventGroupNotFoundException(group, e))
+			.next()
+			.flatMapIterable(this::decodeEntries);
+	}
+	
+	public Mono<Long> acknowledgeEvents(String group, List<String> eventIds) {
+		if(eventIds.isEmpty()) {
+			return Mono.just(0l);
+		}
+		return SCRIPT_ACK
+			.<Long>eval(
+				this.redisClient, 
+				RedisScriptingReactiveOperations.ScriptOutput.INTEGER, 
+				keys -> keys.key(REDIS_KEY_EVENT_LOG),
+				args -> {
+					args.value(group);
+					eventIds.forEach(args::value);
+				}
+			)
+			.next();
+	}
+	
+	public Mono<Boolean> removeEventGroup(String group) {
+		return SCRIPT_REMOVE_GROUP
+			.<Long>eval(
+				this.redisClient, 
+				RedisScriptingReactiveOperations.ScriptOutput.INTEGER, 
+				keys -> keys.key(REDIS_KEY_EVENT_LOG),
+				args -> args.value(group)
+			)
+			.next()
+			.map(removed -> removed == 1);
+	}
+	
+	public ChangeEvent decodeMessage(String message) {
+		try {
+			JsonNode messageNode = this.mapper.readTree(message);
+			ChangeEvent event = this.decode(messageNode.path("event").asText());
+			event.setId(messageNode.path("id").asText());
+			return event;
+		}
+		catch(JsonProcessingException e) {
+			throw new TicketException("Error decoding change event message", e);
+		}
+	}
+	
+	private ChangeEvent decode(String event) {
+		try {
+			return this.mapper.readValue(event, ChangeEvent.class);
+		}
+		catch(JsonProcessingException e) {
+			throw new TicketException("Error decoding change event", e);
+		}
+	}
+	
+	private List<ChangeEvent> decodeEntries(List<String> entries) {
+		List<ChangeEvent> events = new ArrayList<>(entries.size() / 2);
+		for(int i = 0; i < entries.size(); i += 2) {
+			ChangeEvent event = this.decode(entries.get(i + 1));
+			event.setId(entries.get(i));
+			events.add(event);
+		}
+		return events;
+	}
+}
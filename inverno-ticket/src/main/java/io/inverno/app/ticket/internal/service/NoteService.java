@@ -15,112 +15,324 @@
  */
 package io.inverno.app.ticket.internal.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.inverno.app.ticket.internal.codec.ValueCodec;
+import io.inverno.app.ticket.internal.exception.VersionMismatchException;
 import io.inverno.app.ticket.internal.model.Note;
 import io.inverno.core.annotation.Bean;
 import io.inverno.mod.redis.RedisTransactionalClient;
-import java.io.UncheckedIOException;
+import io.inverno.mod.redis.operations.Keys;
+import io.inverno.mod.redis.operations.RedisScriptingReactiveOperations;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.stream.LongStream;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+import reactor.util.retry.Retry;
 
 /**
  * <p>
  * Ticket note service is used to create/read/update/delete Ticket {@link Note} in Redis data store.
  * </p>
  * 
+ * <p>
+ * The notes of a ticket are stored in a hash by note index, note indexes are stable ids assigned from a sequence per ticket and ordered in a sorted set so that notes can be read, updated and
+ * removed without shifting other notes.
+ * </p>
+ * 
  * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
  */
 @Bean
 public class NoteService {
 	
 	public static final String REDIS_KEY_TICKET_NOTES = TicketService.REDIS_KEY_TICKET + ":Notes";
+	public static final String REDIS_KEY_TICKET_NOTES_INDEX = REDIS_KEY_TICKET_NOTES + ":INDEX";
+	public static final String REDIS_KEY_TICKET_NOTES_SEQ = REDIS_KEY_TICKET_NOTES + ":SEQ";
+	
+	private static final int MIGRATE_NOTES_CHUNK_SIZE = 100;
 
+	/**
+	 * <p>
+	 * Adds the notes in ARGV[2..n] to the notes hash KEYS[2] and to the notes index KEYS[3] with indexes assigned from the sequence KEYS[4] and records a {@code NOTE_CREATED} event for each note
+	 * if the ticket ARGV[1], whose hash is KEYS[1], exists. Returns the index of the last added note or 0 if the ticket does not exist.
+	 * </p>
+	 */
+	static final RedisScript SCRIPT_ADD_NOTES = new RedisScript(EventService.LUA_EVENT_FUNCTIONS + """
+		if redis.call('EXISTS', KEYS[1]) == 0 then
+			return 0
+		end
+		local index = 0
+		for i = 2, #ARGV do
+			index = redis.call('INCR', KEYS[4])
+			redis.call('HSET', KEYS[2], index, ARGV[i])
+			redis.call('ZADD', KEYS[3], index, index)
+			record_event({ type = 'NOTE_CREATED', ticketId = tonumber(ARGV[1]), noteIndex = index, version = 1 })
+		end
+		return index
+		""");
+	
+	/**
+	 * <p>
+	 * Returns the total number of notes in the notes index KEYS[2] followed by the (index, note) pairs of the notes in the notes hash KEYS[1] whose rank in the notes index is within ARGV[1] and
+	 * ARGV[2].
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_RANGE_NOTES = new RedisScript("""
+		local result = { tostring(redis.call('ZCARD', KEYS[2])) }
+		for _, index in ipairs(redis.call('ZRANGE', KEYS[2], ARGV[1], ARGV[2])) do
+			local value = redis.call('HGET', KEYS[1], index)
+			if value then
+				result[#result + 1] = index
+				result[#result + 1] = value
+			end
+		end
+		return result
+		""");
+	
+	/**
+	 * <p>
+	 * Sets the note ARGV[1] of ticket ARGV[4] in the notes hash KEYS[1] to ARGV[3] if it still holds the value ARGV[2] and records a {@code NOTE_UPDATED} event with version ARGV[5], returns 0
+	 * otherwise.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_UPDATE_NOTE = new RedisScript(EventService.LUA_EVENT_FUNCTIONS + """
+		if redis.call('HGET', KEYS[1], ARGV[1]) ~= ARGV[2] then
+			return 0
+		end
+		redis.call('HSET', KEYS[1], ARGV[1], ARGV[3])
+		record_event({ type = 'NOTE_UPDATED', ticketId = tonumber(ARGV[4]), noteIndex = tonumber(ARGV[1]), version = tonumber(ARGV[5]) })
+		return 1
+		""");
+	
+	/**
+	 * <p>
+	 * Removes the note ARGV[1] of ticket ARGV[2] from the notes hash KEYS[1] and from the notes index KEYS[2] and records a {@code NOTE_DELETED} event, returns the removed note or an empty string
+	 * if there was no such note.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_REMOVE_NOTE = new RedisScript(EventService.LUA_EVENT_FUNCTIONS + """
+		local value = redis.call('HGET', KEYS[1], ARGV[1])
+		if not value then
+			return ''
+		end
+		redis.call('HDEL', KEYS[1], ARGV[1])
+		redis.call('ZREM', KEYS[2], ARGV[1])
+		record_event({ type = 'NOTE_DELETED', ticketId = tonumber(ARGV[2]), noteIndex = tonumber(ARGV[1]) })
+		return value
+		""");
+	
+	/**
+	 * <p>
+	 * Converts the notes list KEYS[1] to a notes hash indexed in KEYS[2] preserving list indexes and sets the sequence KEYS[3] to the last index, returns the number of notes or -1 if the key is
+	 * not a list.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_MIGRATE_NOTES = new RedisScript("""
+		if redis.call('TYPE', KEYS[1]).ok ~= 'list' then
+			return -1
+		end
+		local values = redis.call('LRANGE', KEYS[1], 0, -1)
+		redis.call('DEL', KEYS[1], KEYS[2])
+		for i, value in ipairs(values) do
+			redis.call('HSET', KEYS[1], i - 1, value)
+			redis.call('ZADD', KEYS[2], i - 1, i - 1)
+		end
+		if #values > 0 then
+			redis.call('SET', KEYS[3], #values - 1)
+		end
+		return #values
+		""");
+	
+	private static final int UPDATE_MAX_RETRIES = 3;
+	
 	private final RedisTransactionalClient<String, String> redisClient;
-	private final ObjectMapper mapper;
+	private final ValueCodec codec;
+	private final SearchService searchService;
 	
-	public NoteService(RedisTransactionalClient<String, String> redisClient, ObjectMapper mapper) {
+	public NoteService(RedisTransactionalClient<String, String> redisClient, ValueCodec codec, SearchService searchService) {
 		this.redisClient = redisClient;
-		this.mapper = mapper;
+		this.codec = codec;
+		this.searchService = searchService;
 	}
 	
 	public Mono<Note> saveTicketNote(Note note) {
 		if(note.getIndex() != null) {
-			try {
-				return this.redisClient
-					.lset(String.format(REDIS_KEY_TICKET_NOTES, note.getTicketId()), note.getIndex(), this.mapper.writeValueAsString(note))
-					.onErrorResume(t -> Mono.empty())
-					.map(reply -> note);
-			}
-			catch (JsonProcessingException ex) {
-				throw new UncheckedIOException(ex);
-			}
+			// Try to update, the note version if specified is the expected version
+			Long expectedVersion = note.getVersion();
+			String ticketNotesKey = String.format(REDIS_KEY_TICKET_NOTES, note.getTicketId());
+			return this.redisClient
+				.hget(ticketNotesKey, note.getIndex().toString())
+				.flatMap(result -> {
+					Note oldNote = this.codec.decode(result, Note.class);
+					long version = oldNote.getVersion() != null ? oldNote.getVersion() : 0;
+					if(expectedVersion != null && expectedVersion != version) {
+						throw new VersionMismatchException(expectedVersion);
+					}
+					note.setVersion(version + 1);
+					String value = this.codec.encode(note);
+					return SCRIPT_UPDATE_NOTE
+						.<Long>eval(
+							this.redisClient, 
+							RedisScriptingReactiveOperations.ScriptOutput.INTEGER, 
+							keys -> keys.key(ticketNotesKey),
+							args -> {
+								args.value(note.getIndex().toString());
+								args.value(result);
+								args.value(value);
+								args.value(note.getTicketId().toString());
+								args.value(note.getVersion().toString());
+							}
+						)
+						.next()
+						.map(swapped -> {
+							if(swapped == 0) {
+								throw new ConcurrentModificationException();
+							}
+							return note;
+						});
+				})
+				// the note was modified in between, retry
+				.retryWhen(Retry.max(UPDATE_MAX_RETRIES).filter(ConcurrentModificationException.class::isInstance))
+				.flatMap(savedNote -> this.searchService.indexNote(savedNote).thenReturn(savedNote));
 		}
 		else {
-			return Mono.from(this.redisClient.connection(operations ->
-				operations
-					.exists(String.format(TicketService.REDIS_KEY_TICKET, note.getTicketId()))
-					.filter(count -> count > 0)
-					.flatMap(ign -> {
-						try {
-							return operations.rpush(String.format(REDIS_KEY_TICKET_NOTES, note.getTicketId()), this.mapper.writeValueAsString(note))
-								.map(length -> {
-									note.setIndex(length.intValue() - 1);
-									return note;
-								});
-						}
-						catch (JsonProcessingException ex) {
-							throw new UncheckedIOException(ex);
-						}
-					})
-			));
+			note.setVersion(1l);
+			return SCRIPT_ADD_NOTES
+				.<Long>eval(
+					this.redisClient, 
+					RedisScriptingReactiveOperations.ScriptOutput.INTEGER, 
+					keys -> noteKeys(keys, note.getTicketId()),
+					args -> {
+						args.value(note.getTicketId().toString());
+						args.value(this.codec.encode(note));
+					}
+				)
+				.next()
+				.filter(index -> index > 0)
+				.map(index -> {
+					note.setIndex(index.intValue());
+					return note;
+				})
+				.flatMap(savedNote -> this.searchService.indexNote(savedNote).thenReturn(savedNote));
 		}
 	}
 	
 	public Flux<Note> listTicketNotes(long ticketId) {
-		return this.redisClient
-			.lrange(String.format(REDIS_KEY_TICKET_NOTES, ticketId), 0, -1)
-			.index()
-			.map(tuple -> {
-				try {
-					Note note = this.mapper.readValue(tuple.getT2(), Note.class);
-					note.setIndex(tuple.getT1().intValue());
-					return note;
-				} 
-				catch (JsonProcessingException ex) {
-					throw new UncheckedIOException(ex);
+		return this.rangeTicketNotes(this.redisClient, ticketId, 0, -1).flatMapIterable(Tuple2::getT2);
+	}
+	
+	public Mono<Tuple2<Long, List<Note>>> listTicketNotes(long ticketId, long offset, int limit) {
+		// A negative offset is relative to the end of the list so that the latest notes can be read without knowing the total number of notes
+		if(limit == 0) {
+			// empty range, only the total number of notes is returned
+			return this.rangeTicketNotes(this.redisClient, ticketId, 1, 0);
+		}
+		long stop = limit > 0 ? offset + limit - 1 : -1;
+		if(offset < 0 && stop >= 0) {
+			stop = -1;
+		}
+		return this.rangeTicketNotes(this.redisClient, ticketId, offset, stop);
+	}
+	
+	public Flux<Tuple2<Long, List<Note>>> listTicketsNotes(List<Long> ticketIds) {
+		// Notes of multiple tickets are read over a single connection, commands are pipelined and results are returned in order
+		return Flux.from(this.redisClient.connection(operations -> Flux.fromIterable(ticketIds)
+			.flatMapSequential(ticketId -> this.rangeTicketNotes(operations, ticketId, 0, -1)
+				.map(page -> Tuples.of(ticketId, page.getT2()))
+			)
+		));
+	}
+	
+	private Mono<Tuple2<Long, List<Note>>> rangeTicketNotes(RedisScriptingReactiveOperations<String, String> operations, long ticketId, long start, long stop) {
+		return SCRIPT_RANGE_NOTES
+			.<List<String>>eval(
+				operations, 
+				RedisScriptingReactiveOperations.ScriptOutput.MULTI, 
+				keys -> {
+					keys.key(String.format(REDIS_KEY_TICKET_NOTES, ticketId));
+					keys.key(String.format(REDIS_KEY_TICKET_NOTES_INDEX, ticketId));
+				},
+				args -> {
+					args.value(Long.toString(start));
+					args.value(Long.toString(stop));
 				}
+			)
+			.next()
+			.map(result -> {
+				List<Note> notes = new ArrayList<>(result.size() / 2);
+				for(int i = 1; i < result.size(); i += 2) {
+					Note note = this.codec.decode(result.get(i + 1), Note.class);
+					note.setIndex(Integer.parseInt(result.get(i)));
+					notes.add(note);
+				}
+				return Tuples.of(Long.parseLong(result.get(0)), notes);
 			});
 	}
 	
 	public Mono<Note> getTicketNote(long ticketId, int noteIndex) {
 		return this.redisClient
-			.lindex(String.format(REDIS_KEY_TICKET_NOTES, ticketId), noteIndex)
+			.hget(String.format(REDIS_KEY_TICKET_NOTES, ticketId), Integer.toString(noteIndex))
 			.map(result -> {
-				try {
-					Note note = this.mapper.readValue(result, Note.class);
-					note.setIndex(noteIndex);
-					return note;
-				} 
-				catch (JsonProcessingException ex) {
-					throw new UncheckedIOException(ex);
-				}
+				Note note = this.codec.decode(result, Note.class);
+				note.setIndex(noteIndex);
+				return note;
 			});
 	}
 	
 	public Mono<Note> removeTicketNote(long ticketId, int noteIndex) {
-		String ticketNotesKey = String.format(REDIS_KEY_TICKET_NOTES, ticketId);
-		return Mono.from(this.redisClient.connection(operations -> {
-			return operations.lindex(ticketNotesKey, noteIndex)
-				.flatMap(result -> {
-					try {
-						Note note = this.mapper.readValue(result, Note.class);
-						return operations.lrem(ticketNotesKey, 0, result).thenReturn(note);
-					} 
-					catch (JsonProcessingException ex) {
-						throw new UncheckedIOException(ex);
-					}
-				});
-		}));
+		return SCRIPT_REMOVE_NOTE
+			.<String>eval(
+				this.redisClient, 
+				RedisScriptingReactiveOperations.ScriptOutput.VALUE, 
+				keys -> {
+					keys.key(String.format(REDIS_KEY_TICKET_NOTES, ticketId));
+					keys.key(String.format(REDIS_KEY_TICKET_NOTES_INDEX, ticketId));
+				},
+				args -> {
+					args.value(Integer.toString(noteIndex));
+					args.value(Long.toString(ticketId));
+				}
+			)
+			.next()
+			.filter(result -> !result.isEmpty())
+			.map(result -> {
+				Note note = this.codec.decode(result, Note.class);
+				note.setIndex(noteIndex);
+				return note;
+			})
+			.flatMap(removedNote -> this.searchService.unindexNote(ticketId, noteIndex).thenReturn(removedNote));
+	}
+	
+	public Mono<Long> migrateTicketNotesToHash() {
+		// Notes lists are converted in place chunk by chunk, tickets whose notes were already converted are skipped
+		return this.redisClient
+			.get(TicketService.REDIS_KEY_TICKET_SEQ)
+			.map(lastTicketId -> Long.parseLong(lastTicketId))
+			.flatMapMany(lastTicketId -> Flux.fromStream(LongStream.iterate(1, chunkStart -> chunkStart <= lastTicketId, chunkStart -> chunkStart + MIGRATE_NOTES_CHUNK_SIZE).boxed())
+				.concatMap(chunkStart -> this.redisClient
+					.<Long>batch(operations -> Flux.fromStream(LongStream.rangeClosed(chunkStart, Math.min(chunkStart + MIGRATE_NOTES_CHUNK_SIZE - 1, lastTicketId)).boxed())
+						.map(ticketId -> SCRIPT_MIGRATE_NOTES.<Long>eval(
+							operations, 
+							RedisScriptingReactiveOperations.ScriptOutput.INTEGER, 
+							keys -> {
+								keys.key(String.format(REDIS_KEY_TICKET_NOTES, ticketId));
+								keys.key(String.format(REDIS_KEY_TICKET_NOTES_INDEX, ticketId));
+								keys.key(String.format(REDIS_KEY_TICKET_NOTES_SEQ, ticketId));
+							}
+						))
+					)
+				)
+			)
+			.filter(count -> count >= 0)
+			.count();
+	}
+	
+	static void noteKeys(Keys<String> keys, long ticketId) {
+		keys.key(String.format(TicketService.REDIS_KEY_TICKET, ticketId));
+		keys.key(String.format(REDIS_KEY_TICKET_NOTES, ticketId));
+		keys.key(String.format(REDIS_KEY_TICKET_NOTES_INDEX, ticketId));
+		keys.key(String.format(REDIS_KEY_TICKET_NOTES_SEQ, ticketId));
 	}
 }
@@ -15,23 +15,38 @@
  */
 package io.inverno.app.ticket.internal.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.inverno.app.ticket.TicketApp;
+import io.inverno.app.ticket.internal.RedisReadConnection;
+import io.inverno.app.ticket.internal.codec.ValueCodec;
 import io.inverno.app.ticket.internal.exception.PlanAlreadyExistsException;
-import io.inverno.app.ticket.internal.exception.TicketException;
 import io.inverno.app.ticket.internal.exception.TicketNotFoundInPlanException;
+import io.inverno.app.ticket.internal.exception.VersionMismatchException;
+import io.inverno.app.ticket.internal.model.BulkResult;
 import io.inverno.app.ticket.internal.model.Plan;
 import io.inverno.app.ticket.internal.model.Ticket;
 import io.inverno.core.annotation.Bean;
 import io.inverno.mod.redis.RedisTransactionalClient;
-import java.io.IOException;
-import java.io.UncheckedIOException;
+import io.inverno.mod.redis.operations.RedisScriptingReactiveOperations;
+import io.lettuce.core.KeyValue;
+import io.lettuce.core.api.reactive.RedisReactiveCommands;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+import reactor.util.retry.Retry;
 
 /**
  * <p>
@@ -49,223 +64,873 @@ public class PlanService {
 
 	public static final String REDIS_KEY_PLAN = TicketApp.REDIS_KEY + ":Plan:%d";
 	public static final String REDIS_KEY_PLAN_SEQ = TicketApp.REDIS_KEY + ":Plan:SEQ";
+	public static final String REDIS_KEY_PLAN_INDEX = TicketApp.REDIS_KEY + ":Plan:INDEX";
 
 	public static final String REDIS_KEY_PLAN_TICKETS = TicketApp.REDIS_KEY + ":Plan:%d:Tickets";
+	public static final String REDIS_KEY_PLAN_STATUS_COUNTS = TicketApp.REDIS_KEY + ":Plan:%d:Counts";
+	
+	public static final String REDIS_KEY_TICKET_PLANS = TicketService.REDIS_KEY_TICKET + ":Plans";
 
 	private static final String REDIS_KEY_PLAN_PATTERN = TicketApp.REDIS_KEY + ":Plan:*";
 	private static final String REDIS_KEY_PLAN_REGEX = TicketApp.REDIS_KEY + ":Plan:[0-9]*";
+	private static final String REDIS_KEY_TICKET_PLANS_PATTERN = TicketApp.REDIS_KEY + ":Ticket:*:Plans";
+	private static final String REDIS_KEY_TICKET_PLANS_REGEX = TicketApp.REDIS_KEY + ":Ticket:[0-9]*:Plans";
+
+	/**
+	 * <p>
+	 * Lua functions used to rank tickets in a plan sorted set: tickets are appended with a score greater than the last ticket by {@code STEP} and inserted before a reference ticket with the
+	 * median of the scores of the reference ticket and of its predecessor. Scores are rebalanced when there is no room left between two tickets.
+	 * </p>
+	 */
+	private static final String LUA_RANK_FUNCTIONS = """
+		local STEP = 1024
+		local function rebalance(key)
+			for i, id in ipairs(redis.call('ZRANGE', key, 0, -1)) do
+				redis.call('ZADD', key, i * STEP, id)
+			end
+		end
+		local function place(key, id, ref)
+			if ref == '' then
+				local last = redis.call('ZRANGE', key, -1, -1, 'WITHSCORES')
+				local score = STEP
+				if last[2] then
+					score = tonumber(last[2]) + STEP
+				end
+				redis.call('ZADD', key, string.format('%.17g', score), id)
+				return true
+			end
+			for attempt = 1, 2 do
+				local refScore = redis.call('ZSCORE', key, ref)
+				if not refScore then
+					return false
+				end
+				local upper = tonumber(refScore)
+				local previous = redis.call('ZREVRANGEBYSCORE', key, '(' .. refScore, '-inf', 'WITHSCORES', 'LIMIT', 0, 1)
+				if not previous[2] then
+					redis.call('ZADD', key, string.format('%.17g', upper - STEP), id)
+					return true
+				end
+				local lower = tonumber(previous[2])
+				local score = (lower + upper) / 2
+				if score > lower and score < upper then
+					redis.call('ZADD', key, string.format('%.17g', score), id)
+					return true
+				end
+				rebalance(key)
+			end
+			return false
+		end
+		""";
+	
+	/**
+	 * <p>
+	 * Lua functions used to maintain the status counters of plans and the set of plans of each ticket: {@code join} and {@code leave} are invoked when a ticket is added to or removed from a plan
+	 * sorted set, {@code count_status} moves a ticket from a status to another in the counters of its plans.
+	 * </p>
+	 * 
+	 * <p>
+	 * The ticket, ticket plans and plan counters keys are derived from ids in the script, some of them from ids only known by Redis (the plans of a ticket), they are therefore not declared in
+	 * KEYS. Scripts using these functions require a standalone Redis server which is checked on startup.
+	 * </p>
+	 */
+	static final String LUA_COUNT_FUNCTIONS = 
+		"local TICKET_KEY = '" + TicketService.REDIS_KEY_TICKET + "'\n" + 
+		"local TICKET_PLANS_KEY = '" + REDIS_KEY_TICKET_PLANS + "'\n" + 
+		"local PLAN_TICKETS_KEY = '" + REDIS_KEY_PLAN_TICKETS + "'\n" + 
+		"local PLAN_COUNTS_KEY = '" + REDIS_KEY_PLAN_STATUS_COUNTS + "'\n" + """
+		local function key(format, id)
+			return (string.gsub(format, '%%d', id))
+		end
+		local function join(planId, id)
+			redis.call('SADD', key(TICKET_PLANS_KEY, id), planId)
+			local status = redis.call('HGET', key(TICKET_KEY, id), 'status')
+			if status then
+				redis.call('HINCRBY', key(PLAN_COUNTS_KEY, planId), status, 1)
+			end
+		end
+		local function leave(planId, id)
+			redis.call('SREM', key(TICKET_PLANS_KEY, id), planId)
+			local status = redis.call('HGET', key(TICKET_KEY, id), 'status')
+			if status then
+				redis.call('HINCRBY', key(PLAN_COUNTS_KEY, planId), status, -1)
+			end
+		end
+		local function count_status(id, from, to)
+			if from == to then
+				return
+			end
+			for _, planId in ipairs(redis.call('SMEMBERS', key(TICKET_PLANS_KEY, id))) do
+				local countsKey = key(PLAN_COUNTS_KEY, planId)
+				if from then
+					redis.call('HINCRBY', countsKey, from, -1)
+				end
+				if to then
+					redis.call('HINCRBY', countsKey, to, 1)
+				end
+			end
+		end
+		""";
+	
+	/**
+	 * <p>
+	 * Moves ticket ARGV[1] in the plan sorted set KEYS[1] of plan ARGV[3] before ticket ARGV[2] or at the end of the plan if ARGV[2] is empty and records a {@code PLAN_TICKET_MOVED} event, returns
+	 * 0 if the reference ticket is not in the plan.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_MOVE_PLAN_TICKET = new RedisScript(EventService.LUA_EVENT_FUNCTIONS + LUA_RANK_FUNCTIONS + LUA_COUNT_FUNCTIONS + """
+		if ARGV[2] ~= '' and not redis.call('ZSCORE', KEYS[1], ARGV[2]) then
+			return 0
+		end
+		if ARGV[1] == ARGV[2] then
+			return 1
+		end
+		if redis.call('ZREM', KEYS[1], ARGV[1]) == 0 then
+			join(ARGV[3], ARGV[1])
+		end
+		place(KEYS[1], ARGV[1], ARGV[2])
+		record_event({ type = 'PLAN_TICKET_MOVED', planId = tonumber(ARGV[3]), ticketId = tonumber(ARGV[1]) })
+		return 1
+		""");
+	
+	/**
+	 * <p>
+	 * Removes ticket ARGV[1] from the plan sorted set KEYS[1] of plan ARGV[2] and records a {@code PLAN_TICKET_REMOVED} event, returns 0 if the ticket is not in the plan.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_REMOVE_PLAN_TICKET = new RedisScript(EventService.LUA_EVENT_FUNCTIONS + LUA_COUNT_FUNCTIONS + """
+		if redis.call('ZREM', KEYS[1], ARGV[1]) == 0 then
+			return 0
+		end
+		leave(ARGV[2], ARGV[1])
+		record_event({ type = 'PLAN_TICKET_REMOVED', planId = tonumber(ARGV[2]), ticketId = tonumber(ARGV[1]) })
+		return 1
+		""");
+	
+	/**
+	 * <p>
+	 * Removes the plan KEYS[1], its sorted set KEYS[2] and its status counters KEYS[4], removes plan ARGV[1] from the plan index KEYS[3] and from the plans of its tickets and records a
+	 * {@code PLAN_DELETED} event, returns the removed plan or an empty string if the plan does not exist.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_REMOVE_PLAN = new RedisScript(EventService.LUA_EVENT_FUNCTIONS + LUA_COUNT_FUNCTIONS + """
+		local plan = redis.call('GET', KEYS[1])
+		if not plan then
+			return ''
+		end
+		for _, id in ipairs(redis.call('ZRANGE', KEYS[2], 0, -1)) do
+			redis.call('SREM', key(TICKET_PLANS_KEY, id), ARGV[1])
+		end
+		redis.call('DEL', KEYS[1], KEYS[2], KEYS[4])
+		redis.call('ZREM', KEYS[3], ARGV[1])
+		record_event({ type = 'PLAN_DELETED', planId = tonumber(ARGV[1]) })
+		return plan
+		""");
+	
+	/**
+	 * <p>
+	 * Returns the status counters of the plans in the plan index KEYS[1] as {plan id, {status, count, ...}, ...}.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_COUNT_PLAN_TICKETS = new RedisScript(LUA_COUNT_FUNCTIONS + """
+		local result = {}
+		for _, planId in ipairs(redis.call('ZRANGE', KEYS[1], 0, -1)) do
+			result[#result + 1] = planId
+			result[#result + 1] = redis.call('HGETALL', key(PLAN_COUNTS_KEY, planId))
+		end
+		return result
+		""");
+	
+	/**
+	 * <p>
+	 * Rebuilds the status counters KEYS[2] of plan ARGV[1] from its sorted set KEYS[1] and the statuses of its tickets and adds the plan to the plans of its tickets, returns the number of
+	 * tickets in the plan.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_RECONCILE_PLAN_COUNTS = new RedisScript(LUA_COUNT_FUNCTIONS + """
+		local counts = {}
+		local ids = redis.call('ZRANGE', KEYS[1], 0, -1)
+		for _, id in ipairs(ids) do
+			redis.call('SADD', key(TICKET_PLANS_KEY, id), ARGV[1])
+			local status = redis.call('HGET', key(TICKET_KEY, id), 'status')
+			if status then
+				counts[status] = (counts[status] or 0) + 1
+			end
+		end
+		redis.call('DEL', KEYS[2])
+		for status, count in pairs(counts) do
+			redis.call('HSET', KEYS[2], status, count)
+		end
+		return #ids
+		""");
+	
+	/**
+	 * <p>
+	 * Looks for tickets which do not exist anymore in the ARGV[3] tickets of plan ARGV[1] sorted set KEYS[1] starting at rank ARGV[2], orphan tickets are removed when ARGV[4] is '1'. Returns
+	 * {next rank, number of orphan tickets} where next rank is -1 when the end of the sorted set was reached.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_COMPACT_PLAN_TICKETS = new RedisScript(LUA_COUNT_FUNCTIONS + """
+		local start = tonumber(ARGV[2])
+		local count = tonumber(ARGV[3])
+		local repair = ARGV[4] == '1'
+		local ids = redis.call('ZRANGE', KEYS[1], start, start + count - 1)
+		local orphans = 0
+		for _, id in ipairs(ids) do
+			if redis.call('EXISTS', key(TICKET_KEY, id)) == 0 then
+				orphans = orphans + 1
+				if repair then
+					redis.call('ZREM', KEYS[1], id)
+					redis.call('SREM', key(TICKET_PLANS_KEY, id), ARGV[1])
+				end
+			end
+		end
+		if #ids < count then
+			return {-1, orphans}
+		end
+		if repair then
+			return {start + #ids - orphans, orphans}
+		end
+		return {start + #ids, orphans}
+		""");
+	
+	/**
+	 * <p>
+	 * Removes from the plans sets KEYS[1..n] of tickets ARGV[1..n] the plans which do not contain the ticket, including plans which do not exist anymore. Returns the number of removed plans.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_RECONCILE_TICKET_PLANS = new RedisScript(LUA_COUNT_FUNCTIONS + """
+		local removed = 0
+		for i, ticketPlansKey in ipairs(KEYS) do
+			local id = ARGV[i]
+			for _, planId in ipairs(redis.call('SMEMBERS', ticketPlansKey)) do
+				if not redis.call('ZSCORE', key(PLAN_TICKETS_KEY, planId), id) then
+					redis.call('SREM', ticketPlansKey, planId)
+					removed = removed + 1
+				end
+			end
+		end
+		return removed
+		""");
+	
+	/**
+	 * <p>
+	 * Returns the ids of the tickets in the plan sorted set (KEYS[1]) that belong to any of the status sorted sets (KEYS[2..n]) preserving the order of the plan, skipping the first ARGV[1]
+	 * matching tickets and limited to ARGV[2] tickets (all if negative).
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_FILTER_PLAN_TICKETS = new RedisScript("""
+		local offset = tonumber(ARGV[1])
+		local limit = tonumber(ARGV[2])
+		local result = {}
+		local skipped = 0
+		local start = 0
+		while limit < 0 or #result < limit do
+			local ids = redis.call('ZRANGE', KEYS[1], start, start + 99)
+			if #ids == 0 then
+				break
+			end
+			for _, id in ipairs(ids) do
+				for i = 2, #KEYS do
+					if redis.call('ZSCORE', KEYS[i], id) then
+						if skipped < offset then
+							skipped = skipped + 1
+						else
+							result[#result + 1] = id
+						end
+						break
+					end
+				end
+				if limit >= 0 and #result >= limit then
+					break
+				end
+			end
+			start = start + 100
+		end
+		return result
+		""");
+	
+	/**
+	 * <p>
+	 * Converts the plan list KEYS[1] to a sorted set ranking tickets in list order, returns the number of tickets or -1 if the key is not a list.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_MIGRATE_PLAN_TICKETS = new RedisScript(LUA_RANK_FUNCTIONS + """
+		if redis.call('TYPE', KEYS[1]).ok ~= 'list' then
+			return -1
+		end
+		local ids = redis.call('LRANGE', KEYS[1], 0, -1)
+		redis.call('DEL', KEYS[1])
+		for i, id in ipairs(ids) do
+			redis.call('ZADD', KEYS[1], 'NX', i * STEP, id)
+		end
+		return #ids
+		""");
+
+	/**
+	 * <p>
+	 * Allocates a new plan id from sequence KEYS[1], creates the plan with value ARGV[1], adds the plan to the plan index KEYS[2] with score ARGV[2] and records a {@code PLAN_CREATED} event.
+	 * Returns {1, plan id} or {0, plan id} if a plan already exists with the allocated id.
+	 * </p>
+	 * 
+	 * <p>
+	 * The value is encoded without id, the id of a plan is the one in its key.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_CREATE_PLAN = new RedisScript(EventService.LUA_EVENT_FUNCTIONS + "local PLAN_KEY = '" + REDIS_KEY_PLAN + "'\n" + """
+		local id = redis.call('INCR', KEYS[1])
+		local planKey = (string.gsub(PLAN_KEY, '%%d', id))
+		if redis.call('EXISTS', planKey) == 1 then
+			return {0, id}
+		end
+		redis.call('SET', planKey, ARGV[1])
+		redis.call('ZADD', KEYS[2], ARGV[2], id)
+		record_event({ type = 'PLAN_CREATED', planId = id, version = 1 })
+		return {1, id}
+		""");
 
+	/**
+	 * <p>
+	 * Sets the plan KEYS[1] to ARGV[2] if it still holds the value ARGV[1] and records a {@code PLAN_UPDATED} event for plan ARGV[3] with version ARGV[4], returns 0 otherwise.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_UPDATE_PLAN = new RedisScript(EventService.LUA_EVENT_FUNCTIONS + """
+		if redis.call('GET', KEYS[1]) ~= ARGV[1] then
+			return 0
+		end
+		redis.call('SET', KEYS[1], ARGV[2])
+		record_event({ type = 'PLAN_UPDATED', planId = tonumber(ARGV[3]), version = tonumber(ARGV[4]) })
+		return 1
+		""");
+	
+	/**
+	 * <p>
+	 * Moves tickets in the plan sorted set KEYS[1] of plan ARGV[1], ARGV[2..n] are (ticket id, reference ticket id) pairs applied and recorded in order as in {@link #SCRIPT_MOVE_PLAN_TICKET}. The outcome of
+	 * each move is returned in order: 'UPDATED', 'UNCHANGED' or 'REFERENCE_NOT_FOUND' if the reference ticket is not in the plan.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_MOVE_PLAN_TICKETS = new RedisScript(EventService.LUA_EVENT_FUNCTIONS + LUA_RANK_FUNCTIONS + LUA_COUNT_FUNCTIONS + """
+		local result = {}
+		for i = 2, #ARGV, 2 do
+			local id, ref = ARGV[i], ARGV[i + 1]
+			if ref ~= '' and not redis.call('ZSCORE', KEYS[1], ref) then
+				result[#result + 1] = 'REFERENCE_NOT_FOUND'
+			elseif ref == id then
+				result[#result + 1] = 'UNCHANGED'
+			else
+				if redis.call('ZREM', KEYS[1], id) == 0 then
+					join(ARGV[1], id)
+				end
+				place(KEYS[1], id, ref)
+				record_event({ type = 'PLAN_TICKET_MOVED', planId = tonumber(ARGV[1]), ticketId = tonumber(id) })
+				result[#result + 1] = 'UPDATED'
+			end
+		end
+		return result
+		""");
+	
+	private static final int UPDATE_MAX_RETRIES = 3;
+	private static final int RECONCILE_CHUNK_SIZE = 100;
+	private static final int COMPACT_CHUNK_SIZE = 100;
+	
 	private final RedisTransactionalClient<String, String> redisClient;
-	private final ObjectMapper mapper;
+	private final ValueCodec codec;
 	private final TicketService ticketService;
+	private final SingleFlight<Long, Plan> planFlights;
+	
+	private RedisReadConnection readConnection;
 
-	public PlanService(RedisTransactionalClient<String, String> redisClient, ObjectMapper mapper, TicketService ticketService) {
+	public PlanService(RedisTransactionalClient<String, String> redisClient, ValueCodec codec, TicketService ticketService) {
 		this.redisClient = redisClient;
-		this.mapper = mapper;
+		this.codec = codec;
 		this.ticketService = ticketService;
+		this.planFlights = new SingleFlight<>();
+	}
+	
+	public void setReadConnection(RedisReadConnection readConnection) {
+		this.readConnection = readConnection;
 	}
 	
 	public Mono<Plan> savePlan(Plan plan) {
 		if(plan.getId() != null) {
-			try {
-				// Try to update
-				return this.redisClient
-					.set()
-					.xx()
-					.build(String.format(REDIS_KEY_PLAN, plan.getId()), this.mapper.writeValueAsString(plan))
-					.map(result -> {
-						if(!result.equals("OK")) {
-							// should always be OK
-							throw new IllegalStateException("Received unexpected result: " + result);
-						}
-						return plan;
-					});
-			} 
-			catch (JsonProcessingException ex) {
-				throw new UncheckedIOException(ex);
-			}
+			// Try to update, the plan version if specified is the expected version
+			Long expectedVersion = plan.getVersion();
+			String planKey = String.format(REDIS_KEY_PLAN, plan.getId());
+			return this.redisClient
+				.get(planKey)
+				.flatMap(result -> {
+					Plan oldPlan = this.codec.decode(result, Plan.class);
+					long version = oldPlan.getVersion() != null ? oldPlan.getVersion() : 0;
+					if(expectedVersion != null && expectedVersion != version) {
+						throw new VersionMismatchException(expectedVersion);
+					}
+					plan.setVersion(version + 1);
+					String value = this.codec.encode(plan);
+					return SCRIPT_UPDATE_PLAN
+						.<Long>eval(
+							this.redisClient, 
+							RedisScriptingReactiveOperations.ScriptOutput.INTEGER, 
+							keys -> keys.key(planKey),
+							args -> {
+								args.value(result);
+								args.value(value);
+								args.value(plan.getId().toString());
+								args.value(plan.getVersion().toString());
+							}
+						)
+						.next()
+						.map(swapped -> {
+							if(swapped == 0) {
+								throw new ConcurrentModificationException();
+							}
+							return plan;
+						});
+				})
+				// the plan was modified in between, retry
+				.retryWhen(Retry.max(UPDATE_MAX_RETRIES).filter(ConcurrentModificationException.class::isInstance))
+				.doFinally(ign -> this.planFlights.forget(plan.getId()));
 		}
 		else {
-			// Get a new sequence then save
-			return Mono.from(this.redisClient.connection(operations -> {
-				return operations
-					.incr(REDIS_KEY_PLAN_SEQ)
-					.flatMap(planId -> {
-						plan.setId(planId);
-						plan.setCreationDateTime(ZonedDateTime.now(ZoneOffset.UTC));
-						try {
-							return operations
-								.set()
-								.nx()
-								.build(String.format(REDIS_KEY_PLAN, planId), this.mapper.writeValueAsString(plan))
-								.map(result -> {
-									if(!result.equals("OK")) {
-										// should always be OK
-										throw new IllegalStateException("Received unexpected result: " + result);
-									}
-									return plan;
-								})
-								.switchIfEmpty(Mono.error(() -> new PlanAlreadyExistsException(planId)));
-						} 
-						catch (JsonProcessingException ex) {
-							throw new UncheckedIOException(ex);
-						}
-					});
-			}));
+			// Get a new sequence, save and index in a single script call, the plan is encoded before its id is allocated
+			plan.setCreationDateTime(ZonedDateTime.now(ZoneOffset.UTC));
+			plan.setVersion(1l);
+			String value = this.codec.encode(plan);
+			return SCRIPT_CREATE_PLAN
+				.<List<Long>>eval(
+					this.redisClient, 
+					RedisScriptingReactiveOperations.ScriptOutput.MULTI, 
+					keys -> {
+						keys.key(REDIS_KEY_PLAN_SEQ);
+						keys.key(REDIS_KEY_PLAN_INDEX);
+					},
+					args -> {
+						args.value(value);
+						args.value(Long.toString(plan.getCreationDateTime().toInstant().toEpochMilli()));
+					}
+				)
+				.next()
+				.map(result -> {
+					if(result.get(0) == 0) {
+						throw new PlanAlreadyExistsException(result.get(1));
+					}
+					plan.setId(result.get(1));
+					return plan;
+				});
 		}
 	}
 	
 	public Mono<Void> addTicket(long planId, long ticketId) {
-		String sTicketId = Long.toString(ticketId);
-		return this.redisClient.multi(operations -> Flux.just(
-			operations.lrem(String.format(REDIS_KEY_PLAN_TICKETS, planId), 0, sTicketId),
-			operations.rpush(String.format(REDIS_KEY_PLAN_TICKETS, planId), sTicketId)
-		))
-		.flatMap(transactionResult -> {
-			if(transactionResult.wasDiscarded()) {
-				throw new TicketException("Error while removing plan: transaction was discarded");
-			}
-			return Mono.empty();
-		});
+		return this.moveTicket(planId, ticketId, "")
+			.then();
 	}
 
 	public Mono<Void> insertTicketBefore(long planId, long ticketId, long referenceTicketId) {
-		String sTicketId = Long.toString(ticketId);
-		String sReferenceTicketId = Long.toString(referenceTicketId);
-		return this.redisClient.multi(operations -> Flux.just(
-			operations.lrem(String.format(REDIS_KEY_PLAN_TICKETS, planId), 0, sTicketId),
-			operations.linsert(String.format(REDIS_KEY_PLAN_TICKETS, planId), true, sReferenceTicketId, sTicketId)
-				.doOnNext(result -> {
-					if(result == -1) {
-						throw new TicketNotFoundInPlanException(planId, referenceTicketId);
-					}
-				})
-		))
-		.flatMap(transactionResult -> {
-			if(transactionResult.wasDiscarded()) {
-				throw new TicketException("Error while inserting ticket " + ticketId + "into plan " + planId + ": transaction was discarded");
-			}
-			return Mono.empty();
-		});
+		return this.moveTicket(planId, ticketId, Long.toString(referenceTicketId))
+			.flatMap(moved -> {
+				if(moved == 0) {
+					throw new TicketNotFoundInPlanException(planId, referenceTicketId);
+				}
+				return Mono.empty();
+			});
 	}
 	
-	public Mono<Long> removeTicket(long planId, long ticketId) {
-		String sTicketId = Long.toString(ticketId);
-		return this.redisClient
-			.lrem(String.format(REDIS_KEY_PLAN_TICKETS, planId), 0, sTicketId)
-			.flatMap(count -> {
-				if(count == 0) {
-					return Mono.empty();
+	private Mono<Long> moveTicket(long planId, long ticketId, String referenceTicketId) {
+		// Tickets are ranked by score in the plan sorted set, a move is a ZREM and a ZADD after looking up the neighbours of the reference ticket
+		return SCRIPT_MOVE_PLAN_TICKET
+			.<Long>eval(
+				this.redisClient, 
+				RedisScriptingReactiveOperations.ScriptOutput.INTEGER, 
+				keys -> keys.key(String.format(REDIS_KEY_PLAN_TICKETS, planId)),
+				args -> {
+					args.value(Long.toString(ticketId));
+					args.value(referenceTicketId);
+					args.value(Long.toString(planId));
+				}
+			)
+			.next();
+	}
+	
+	public Flux<BulkResult> moveTickets(long planId, List<Tuple2<Long, Optional<Long>>> moves) {
+		// Moves are applied in order in a single script call, a ticket without reference ticket is moved to the end of the plan
+		if(moves == null || moves.isEmpty()) {
+			return Flux.empty();
+		}
+		return SCRIPT_MOVE_PLAN_TICKETS
+			.<List<String>>eval(
+				this.redisClient, 
+				RedisScriptingReactiveOperations.ScriptOutput.MULTI, 
+				keys -> keys.key(String.format(REDIS_KEY_PLAN_TICKETS, planId)),
+				args -> {
+					args.value(Long.toString(planId));
+					moves.forEach(move -> {
+						args.value(move.getT1().toString());
+						args.value(move.getT2().map(Object::toString).orElse(""));
+					});
 				}
-				else {
-					return Mono.just(ticketId);
+			)
+			.next()
+			.flatMapIterable(outcomes -> {
+				List<BulkResult> results = new ArrayList<>(outcomes.size());
+				for(int i = 0; i < outcomes.size(); i++) {
+					results.add(new BulkResult(moves.get(i).getT1(), BulkResult.Outcome.valueOf(outcomes.get(i)), null));
 				}
+				return results;
 			});
 	}
 	
+	public Mono<Long> removeTicket(long planId, long ticketId) {
+		return SCRIPT_REMOVE_PLAN_TICKET
+			.<Long>eval(
+				this.redisClient, 
+				RedisScriptingReactiveOperations.ScriptOutput.INTEGER, 
+				keys -> keys.key(String.format(REDIS_KEY_PLAN_TICKETS, planId)),
+				args -> {
+					args.value(Long.toString(ticketId));
+					args.value(Long.toString(planId));
+				}
+			)
+			.next()
+			.filter(count -> count > 0)
+			.map(count -> ticketId);
+	}
+	
 	public Flux<Plan> listPlans() {
+		if(this.readConnection != null && this.readConnection.isEnabled()) {
+			RedisReactiveCommands<String, String> commands = this.readConnection.reactive();
+			return this.readConnection.read(commands.zrange(REDIS_KEY_PLAN_INDEX, 0, -1))
+				.map(planId -> String.format(REDIS_KEY_PLAN, Long.parseLong(planId)))
+				.collectList()
+				.flatMapMany(planKeys -> {
+					if(planKeys.isEmpty()) {
+						return Flux.empty();
+					}
+					return this.readConnection.read(commands.mget(planKeys.toArray(String[]::new)));
+				})
+				.filter(KeyValue::hasValue)
+				.map(result -> this.decodePlan(result.getKey(), result.getValue()));
+		}
 		return Flux.from(this.redisClient.connection(operations -> operations
-			.scan()
-			.pattern(REDIS_KEY_PLAN_PATTERN)
-			.build("0")
-			.expand(result -> {
-				if(result.isFinished()) {
-					return Mono.empty();
-				}
-				return operations.scan()
-					.pattern(REDIS_KEY_PLAN_PATTERN)
-					.build(result.getCursor());
-			})
-			.flatMapIterable(result -> result.getKeys())
-			.filter(key -> key.matches(REDIS_KEY_PLAN_REGEX))
+			.zrange(REDIS_KEY_PLAN_INDEX, 0, -1)
 			.collectList()
 			.flatMapMany(planIds -> {
 				if(planIds.isEmpty()) {
 					return Flux.empty();
 				}
-				return operations.mget(keys -> planIds.forEach(keys::key));
+				return Flux.zip(Flux.fromIterable(planIds), operations.mget(keys -> planIds.forEach(planId -> keys.key(String.format(REDIS_KEY_PLAN, Long.parseLong(planId))))));
 			})
-			.mapNotNull(opt -> opt
+			.mapNotNull(result -> result.getT2()
 				.getValue()
-				.map(result -> {
-					try {
-						Plan plan = this.mapper.readValue(result, Plan.class);
-						plan.setTickets(this.redisClient
-							.lrange(String.format(REDIS_KEY_PLAN_TICKETS, plan.getId()), 0, -1)
-							.map(id -> Long.parseLong(id))
-							.collectList()
-							.flatMapMany(this.ticketService::getTickets)
-						);
-						return plan;
-					} 
-					catch (JsonProcessingException ex) {
-						throw new UncheckedIOException(ex);
-					}
-				})
+				.map(value -> this.decodePlan(Long.parseLong(result.getT1()), value))
 				.orElse(null)
 			)
 		));
 	}
 	
+	public Flux<Plan> listPlansWithTickets() {
+		return this.listPlansWithTickets(false);
+	}
+	
+	public Flux<Plan> listPlansWithTickets(boolean summary) {
+		// Plan ticket lists are fetched in a single pipelined batch and referenced tickets in a single scripted HMGET
+		return this.listPlans()
+			.collectList()
+			.filter(plans -> !plans.isEmpty())
+			.flatMapMany(plans -> this.redisClient
+				.<Tuple2<Long, List<Long>>>batch(operations -> Flux.fromIterable(plans)
+					.map(plan -> operations.zrange(String.format(REDIS_KEY_PLAN_TICKETS, plan.getId()), 0, -1)
+						.map(id -> Long.parseLong(id))
+						.collectList()
+						.map(ticketIds -> Tuples.of(plan.getId(), ticketIds))
+					)
+				)
+				.collectMap(Tuple2::getT1, Tuple2::getT2)
+				.flatMapMany(ticketIdsByPlan -> {
+					Set<Long> ticketIds = new LinkedHashSet<>();
+					ticketIdsByPlan.values().forEach(ticketIds::addAll);
+					return (summary ? this.ticketService.getTicketSummaries(new ArrayList<>(ticketIds)) : this.ticketService.getTickets(new ArrayList<>(ticketIds)))
+						.collectMap(Ticket::getId)
+						.flatMapIterable(ticketsById -> {
+							for(Plan plan : plans) {
+								plan.setTickets(Flux.fromIterable(ticketIdsByPlan.getOrDefault(plan.getId(), List.of()).stream()
+									.map(ticketsById::get)
+									.filter(Objects::nonNull)
+									.collect(Collectors.toList())
+								));
+							}
+							return plans;
+						});
+				})
+			);
+	}
+	
 	public Mono<Plan> getPlan(long planId) {
 		return this.getPlan(planId, List.of(Ticket.Status.OPEN, Ticket.Status.STUDIED, Ticket.Status.IN_PROGRESS, Ticket.Status.DONE, Ticket.Status.REJECTED));
 	}
 	
 	public Mono<Plan> getPlan(long planId, List<Ticket.Status> statuses) {
-		return this.redisClient.get(String.format(REDIS_KEY_PLAN, planId))
-			.map(result -> {
-				try {
-					Plan plan = this.mapper.readValue(result, Plan.class);
-					plan.setTickets(this.getPlanTickets(planId, statuses));
-					return plan;
-				} 
-				catch (JsonProcessingException ex) {
-					throw new UncheckedIOException(ex);
-				}
+		return this.getPlan(planId, statuses, false);
+	}
+	
+	public Mono<Plan> getPlan(long planId, List<Ticket.Status> statuses, boolean summary) {
+		// concurrent reads of the same plan share one round trip and one decode, tickets are resolved for each caller
+		return this.planFlights.execute(planId, () -> this.readValue(String.format(REDIS_KEY_PLAN, planId)).map(result -> this.decodePlan(planId, result)))
+			.map(sharedPlan -> {
+				Plan plan = new Plan(sharedPlan.getId(), sharedPlan.getTitle(), sharedPlan.getSummary(), sharedPlan.getDescription(), sharedPlan.getCreationDateTime(), this.getPlanTickets(planId, statuses, summary));
+				plan.setVersion(sharedPlan.getVersion());
+				return plan;
 			});
 	}
 	
-	private Flux<Ticket> getPlanTickets(long planId, List<Ticket.Status> statuses) {
-		if(statuses == null || statuses.isEmpty()) {
+	public Flux<Ticket> listPlanTickets(long planId, List<Ticket.Status> statuses, long offset, int limit, boolean summary) {
+		if(statuses == null || statuses.isEmpty() || limit == 0) {
 			return Flux.empty();
 		}
-		return Flux.from(this.redisClient.connection(operations -> operations
-			.sunion(keys -> statuses.forEach(status -> keys.key(String.format(TicketService.REDIS_KEY_TICKET_STATUS, status))))
-			.collectList()
-			.filter(ticketIds -> !ticketIds.isEmpty())
-			.flatMapMany(ticketIds -> operations.lrange(String.format(REDIS_KEY_PLAN_TICKETS, planId), 0, -1)
-				.filter(id -> ticketIds.contains(id))
+		Set<Ticket.Status> statusSet = EnumSet.copyOf(statuses);
+		if(statusSet.size() == Ticket.Status.values().length) {
+			// No need to filter, the page is read directly from the plan sorted set
+			return this.readRange(String.format(REDIS_KEY_PLAN_TICKETS, planId), offset, limit > 0 ? offset + limit - 1 : -1)
 				.map(id -> Long.parseLong(id))
 				.collectList()
-				.flatMapMany(this.ticketService::getTickets)
+				.flatMapMany(ticketIds -> summary ? this.ticketService.getTicketSummaries(ticketIds) : this.ticketService.getTickets(ticketIds));
+		}
+		// Only the tickets in the plan are checked against the status sets
+		return SCRIPT_FILTER_PLAN_TICKETS
+			.<List<String>>eval(
+				this.redisClient, 
+				RedisScriptingReactiveOperations.ScriptOutput.MULTI, 
+				keys -> {
+					keys.key(String.format(REDIS_KEY_PLAN_TICKETS, planId));
+					statusSet.forEach(status -> keys.key(String.format(TicketService.REDIS_KEY_TICKET_STATUS, status)));
+				},
+				args -> {
+					args.value(Long.toString(offset));
+					args.value(Integer.toString(limit));
+				}
 			)
-		));
+			.flatMapIterable(ticketIds -> ticketIds)
+			.map(id -> Long.parseLong(id))
+			.collectList()
+			.flatMapMany(ticketIds -> summary ? this.ticketService.getTicketSummaries(ticketIds) : this.ticketService.getTickets(ticketIds));
+	}
+	
+	public Flux<Long> listPlanTicketIds(long planId) {
+		return this.readRange(String.format(REDIS_KEY_PLAN_TICKETS, planId), 0, -1).map(Long::valueOf);
+	}
+	
+	private Flux<Ticket> getPlanTickets(long planId, List<Ticket.Status> statuses, boolean summary) {
+		return this.listPlanTickets(planId, statuses, 0, -1, summary);
 	}
 	
 	public Mono<Plan> removePlan(long planId) {
-		String planKey = String.format(REDIS_KEY_PLAN, planId);
-		return this.redisClient
-			.exists(planKey)
-			.flatMap(count -> {
-				if(count == 0) {
-					return Mono.empty();
+		// The plan is removed from the plans of its tickets in the same script
+		return SCRIPT_REMOVE_PLAN
+			.<String>eval(
+				this.redisClient, 
+				RedisScriptingReactiveOperations.ScriptOutput.VALUE, 
+				keys -> {
+					keys.key(String.format(REDIS_KEY_PLAN, planId));
+					keys.key(String.format(REDIS_KEY_PLAN_TICKETS, planId));
+					keys.key(REDIS_KEY_PLAN_INDEX);
+					keys.key(String.format(REDIS_KEY_PLAN_STATUS_COUNTS, planId));
+				},
+				args -> args.value(Long.toString(planId))
+			)
+			.next()
+			.filter(result -> !result.isEmpty())
+			.map(result -> this.decodePlan(planId, result))
+			.doFinally(ign -> this.planFlights.forget(planId));
+	}
+	
+	public Flux<Tuple2<Long, Map<Ticket.Status, Long>>> countPlanTickets() {
+		// Status counters are maintained on each status or plan membership change, counting is O(plans)
+		return SCRIPT_COUNT_PLAN_TICKETS
+			.<List<Object>>eval(
+				this.redisClient, 
+				RedisScriptingReactiveOperations.ScriptOutput.MULTI, 
+				keys -> keys.key(REDIS_KEY_PLAN_INDEX)
+			)
+			.next()
+			.flatMapIterable(result -> {
+				List<Tuple2<Long, Map<Ticket.Status, Long>>> counts = new ArrayList<>(result.size() / 2);
+				for(int i = 0; i < result.size(); i += 2) {
+					counts.add(Tuples.of(Long.parseLong((String)result.get(i)), statusCounts((List<?>)result.get(i + 1))));
 				}
-				return this.redisClient
-					.multi(operations -> Flux.just(
-						operations.del(String.format(REDIS_KEY_PLAN_TICKETS, planId)),
-						operations.getdel(String.format(REDIS_KEY_PLAN, planId))
-					))
-					.map(transactionResult -> {
-						if(transactionResult.wasDiscarded()) {
-							throw new TicketException("Error while removing plan: transaction was discarded");
-						}
-						try {
-							return this.mapper.readValue(transactionResult.<String>get(1), Plan.class);
+				return counts;
+			});
+	}
+	
+	public Mono<Long> reconcilePlanTicketCounts() {
+		// Plan counters are rebuilt from plan sorted sets which also adds each plan to its tickets plans, existing tickets plans are then scanned to remove plans which do not contain the ticket
+		return this.redisClient
+			.zrange(REDIS_KEY_PLAN_INDEX, 0, -1)
+			.concatMap(planId -> SCRIPT_RECONCILE_PLAN_COUNTS
+				.<Long>eval(
+					this.redisClient, 
+					RedisScriptingReactiveOperations.ScriptOutput.INTEGER, 
+					keys -> {
+						keys.key(String.format(REDIS_KEY_PLAN_TICKETS, Long.parseLong(planId)));
+						keys.key(String.format(REDIS_KEY_PLAN_STATUS_COUNTS, Long.parseLong(planId)));
+					},
+					args -> args.value(planId)
+				)
+			)
+			.count()
+			.flatMap(count -> Flux.from(this.redisClient.connection(operations -> operations
+					.scan()
+					.pattern(REDIS_KEY_TICKET_PLANS_PATTERN)
+					.build("0")
+					.expand(result -> {
+						if(result.isFinished()) {
+							return Mono.empty();
 						}
-						catch (IOException ex) {
-							throw new UncheckedIOException(ex);
+						return operations.scan()
+							.pattern(REDIS_KEY_TICKET_PLANS_PATTERN)
+							.build(result.getCursor());
+					})
+					.flatMapIterable(result -> result.getKeys())
+					.filter(key -> key.matches(REDIS_KEY_TICKET_PLANS_REGEX))
+					.buffer(RECONCILE_CHUNK_SIZE)
+					.concatMap(ticketPlansKeys -> SCRIPT_RECONCILE_TICKET_PLANS
+						.<Long>eval(
+							operations, 
+							RedisScriptingReactiveOperations.ScriptOutput.INTEGER, 
+							keys -> ticketPlansKeys.forEach(keys::key),
+							args -> ticketPlansKeys.forEach(ticketPlansKey -> {
+								int idEnd = ticketPlansKey.lastIndexOf(':');
+								args.value(ticketPlansKey.substring(ticketPlansKey.lastIndexOf(':', idEnd - 1) + 1, idEnd));
+							})
+						)
+					)
+				))
+				.then(Mono.just(count))
+			);
+	}
+	
+	public Mono<Long> compactPlanTickets() {
+		return this.checkPlanTickets(true);
+	}
+	
+	public Mono<Long> checkPlanTickets(boolean repair) {
+		// Tickets removed before plans were purged on ticket removal may still be referenced in plans, plans are checked chunk by chunk to avoid blocking Redis
+		String sRepair = repair ? "1" : "0";
+		return this.redisClient.zrange(REDIS_KEY_PLAN_INDEX, 0, -1)
+			.concatMap(planId -> {
+				String planTicketsKey = String.format(REDIS_KEY_PLAN_TICKETS, Long.parseLong(planId));
+				return Mono.just(List.<Object>of(0l, 0l))
+					.expand(result -> {
+						long start = (Long)result.get(0);
+						if(start < 0) {
+							return Mono.empty();
 						}
-					});
-			});
+						return SCRIPT_COMPACT_PLAN_TICKETS
+							.<List<Object>>eval(
+								this.redisClient, 
+								RedisScriptingReactiveOperations.ScriptOutput.MULTI, 
+								keys -> keys.key(planTicketsKey),
+								args -> {
+									args.value(planId);
+									args.value(Long.toString(start));
+									args.value(Integer.toString(COMPACT_CHUNK_SIZE));
+									args.value(sRepair);
+								}
+							)
+							.next();
+					})
+					.map(result -> (Long)result.get(1));
+			})
+			.reduce(0l, Long::sum);
+	}
+	
+	static Map<Ticket.Status, Long> statusCounts(List<?> fieldsAndValues) {
+		Map<Ticket.Status, Long> counts = new EnumMap<>(Ticket.Status.class);
+		for(Ticket.Status status : Ticket.Status.values()) {
+			counts.put(status, 0l);
+		}
+		for(int i = 0; i < fieldsAndValues.size(); i += 2) {
+			counts.put(Ticket.Status.valueOf((String)fieldsAndValues.get(i)), Long.parseLong((String)fieldsAndValues.get(i + 1)));
+		}
+		return counts;
+	}
+	
+	public Mono<Long> migratePlanTicketsToSortedSet() {
+		// Plan ticket lists are converted in place using the plan index, plans already converted are skipped
+		return this.redisClient
+			.zrange(REDIS_KEY_PLAN_INDEX, 0, -1)
+			.collectList()
+			.filter(planIds -> !planIds.isEmpty())
+			.flatMapMany(planIds -> this.redisClient
+				.<Long>batch(operations -> Flux.fromIterable(planIds)
+					.map(planId -> SCRIPT_MIGRATE_PLAN_TICKETS.<Long>eval(
+						operations, 
+						RedisScriptingReactiveOperations.ScriptOutput.INTEGER, 
+						keys -> keys.key(String.format(REDIS_KEY_PLAN_TICKETS, Long.parseLong(planId)))
+					))
+				)
+			)
+			.filter(count -> count >= 0)
+			.count();
+	}
+	
+	public Mono<Long> indexPlans() {
+		// One-shot backfill of the plan index from existing plan keys, this scans the whole keyspace and should only be used to migrate existing data
+		return Flux.from(this.redisClient.connection(operations -> operations
+			.scan()
+			.pattern(REDIS_KEY_PLAN_PATTERN)
+			.build("0")
+			.expand(result -> {
+				if(result.isFinished()) {
+					return Mono.empty();
+				}
+				return operations.scan()
+					.pattern(REDIS_KEY_PLAN_PATTERN)
+					.build(result.getCursor());
+			})
+			.flatMapIterable(result -> result.getKeys())
+			.filter(key -> key.matches(REDIS_KEY_PLAN_REGEX))
+			.collectList()
+			.flatMapMany(planKeys -> {
+				if(planKeys.isEmpty()) {
+					return Flux.empty();
+				}
+				return Flux.zip(Flux.fromIterable(planKeys), operations.mget(keys -> planKeys.forEach(keys::key)));
+			})
+			.mapNotNull(result -> result.getT2()
+				.getValue()
+				.map(value -> this.decodePlan(result.getT1(), value))
+				.orElse(null)
+			)
+		))
+		.collectList()
+		.flatMap(plans -> this.redisClient
+			.<Long>batch(operations -> Flux.fromIterable(plans)
+				.map(plan -> operations.zadd(REDIS_KEY_PLAN_INDEX, plan.getCreationDateTime() != null ? plan.getCreationDateTime().toInstant().toEpochMilli() : 0, Long.toString(plan.getId())))
+			)
+			.then(Mono.just((long)plans.size()))
+		);
+	}
+	
+	private Plan decodePlan(String planKey, String value) {
+		return this.decodePlan(Long.parseLong(planKey.substring(planKey.lastIndexOf(':') + 1)), value);
+	}
+	
+	private Plan decodePlan(long planId, String value) {
+		// Plans created by script are stored without id, the id of a plan is the one in its key
+		Plan plan = this.codec.decode(value, Plan.class);
+		plan.setId(planId);
+		return plan;
+	}
+	
+	private Mono<String> readValue(String key) {
+		// Simple reads are executed on the read connection when available instead of borrowing a connection from the pool
+		if(this.readConnection != null && this.readConnection.isEnabled()) {
+			return this.readConnection.read(this.readConnection.reactive().get(key));
+		}
+		return this.redisClient.get(key);
+	}
+	
+	private Flux<String> readRange(String key, long start, long stop) {
+		if(this.readConnection != null && this.readConnection.isEnabled()) {
+			return this.readConnection.read(this.readConnection.reactive().zrange(key, start, stop));
+		}
+		return this.redisClient.zrange(key, start, stop);
 	}
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal.service;
+
+import io.inverno.app.ticket.internal.RedisPoolWaitTimes;
+import io.inverno.mod.redis.RedisTransactionalClient;
+import io.inverno.mod.redis.operations.Keys;
+import io.inverno.mod.redis.operations.RedisScriptingReactiveOperations;
+import io.inverno.mod.redis.operations.Values;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import reactor.core.publisher.Flux;
+
+/**
+ * <p>
+ * A Lua script executed with {@code EVALSHA}.
+ * </p>
+ * 
+ * <p>
+ * The SHA1 digest of the script is computed once, the script is executed with {@code EVAL}, which loads it in the Redis script cache, when Redis replies with a {@code NOSCRIPT} error (eg. after a
+ * restart or a {@code SCRIPT FLUSH}).
+ * </p>
+ * 
+ * <p>
+ * A script executed on the pooled Redis client explicitly borrows a connection so that the time spent waiting for it is recorded in {@link RedisPoolWaitTimes#SCRIPTS}.
+ * </p>
+ * 
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+final class RedisScript {
+
+	private final String script;
+	private final String sha1;
+
+	public RedisScript(String script) {
+		this.script = script;
+		try {
+			StringBuilder sha1Builder = new StringBuilder();
+			for(byte b : MessageDigest.getInstance("SHA-1").digest(script.getBytes(StandardCharsets.UTF_8))) {
+				sha1Builder.append(String.format("%02x", b));
+			}
+			this.sha1 = sha1Builder.toString();
+		}
+		catch(NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	public <T> Flux<T> eval(RedisScriptingReactiveOperations<String, String> operations, RedisScriptingReactiveOperations.ScriptOutput output, Consumer<Keys<String>> keys) {
+		return execute(operations, connectionOperations -> connectionOperations.<T>evalsha(this.sha1, output, keys)
+			.onErrorResume(RedisScript::isNoScript, e -> connectionOperations.<T>eval(this.script, output, keys))
+		);
+	}
+	
+	public <T> Flux<T> eval(RedisScriptingReactiveOperations<String, String> operations, RedisScriptingReactiveOperations.ScriptOutput output, Consumer<Keys<String>> keys, Consumer<Values<String>> args) {
+		return execute(operations, connectionOperations -> connectionOperations.<T>evalsha(this.sha1, output, keys, args)
+			.onErrorResume(RedisScript::isNoScript, e -> connectionOperations.<T>eval(this.script, output, keys, args))
+		);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static <T> Flux<T> execute(RedisScriptingReactiveOperations<String, String> operations, Function<RedisScriptingReactiveOperations<String, String>, Flux<T>> script) {
+		if(operations instanceof RedisTransactionalClient) {
+			// A connection is explicitly borrowed from the pool in order to measure the time spent waiting for it, the script is then executed on that connection
+			return Flux.defer(() -> {
+				long start = System.nanoTime();
+				return Flux.from(((RedisTransactionalClient<String, String>)operations).connection(connectionOperations -> {
+					RedisPoolWaitTimes.SCRIPTS.record(System.nanoTime() - start);
+					return script.apply(connectionOperations);
+				}));
+			});
+		}
+		return script.apply(operations);
+	}
+	
+	private static boolean isNoScript(Throwable error) {
+		return error.getMessage() != null && error.getMessage().contains("NOSCRIPT");
+	}
+}
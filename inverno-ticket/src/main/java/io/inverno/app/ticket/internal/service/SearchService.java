@@ -0,0 +1,275 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal.service;
+
+import io.inverno.app.ticket.TicketApp;
+import io.inverno.app.ticket.internal.model.Note;
+import io.inverno.app.ticket.internal.model.Ticket;
+import io.inverno.core.annotation.Bean;
+import io.inverno.mod.redis.RedisTransactionalClient;
+import io.inverno.mod.redis.operations.RedisScriptingReactiveOperations;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+/**
+ * <p>
+ * Search service is used to index and search {@link Ticket} by the terms of their title, summary, description and notes.
+ * </p>
+ * 
+ * <p>
+ * The index is an inverted index stored in Redis: each term is a sorted set of ticket ids scored by the number of sources (the ticket itself or one of its notes) containing the term, the terms
+ * of each source are stored in a set so that a source can be re-indexed incrementally.
+ * </p>
+ * 
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+@Bean
+public class SearchService {
+
+	public static final String REDIS_KEY_SEARCH_TERM_PREFIX = TicketApp.REDIS_KEY + ":Search:Term:";
+	public static final String REDIS_KEY_SEARCH_TERM = REDIS_KEY_SEARCH_TERM_PREFIX + "%s";
+	public static final String REDIS_KEY_SEARCH_TICKET = TicketApp.REDIS_KEY + ":Search:Ticket:%d";
+	public static final String REDIS_KEY_SEARCH_NOTE = REDIS_KEY_SEARCH_TICKET + ":Note:%d";
+	public static final String REDIS_KEY_SEARCH_RESULT = TicketApp.REDIS_KEY + ":Search:Result:%s";
+	
+	/**
+	 * The time in milliseconds during which the result of a query is kept to serve the next pages.
+	 */
+	private static final long SEARCH_RESULT_TTL = 10000;
+	
+	private static final Pattern TERM_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+	private static final int MIN_TERM_LENGTH = 2;
+	private static final int MAX_TERM_LENGTH = 64;
+	
+	/**
+	 * <p>
+	 * Lua function replacing the terms of a source set by the specified terms: the ticket score is decremented in the term sorted sets (the prefix followed by the term) of the removed terms and
+	 * incremented in the ones of the added terms, a ticket is removed from a term sorted set when no source contains the term anymore. Returns the number of terms of the source.
+	 * </p>
+	 */
+	private static final String LUA_INDEX_FUNCTIONS = """
+		local function index(source, prefix, id, terms)
+			local added = {}
+			for _, term in ipairs(terms) do
+				added[term] = true
+			end
+			for _, term in ipairs(redis.call('SMEMBERS', source)) do
+				if added[term] then
+					added[term] = nil
+				else
+					if tonumber(redis.call('ZINCRBY', prefix .. term, -1, id)) <= 0 then
+						redis.call('ZREM', prefix .. term, id)
+					end
+					redis.call('SREM', source, term)
+				end
+			end
+			for term in pairs(added) do
+				redis.call('ZINCRBY', prefix .. term, 1, id)
+				redis.call('SADD', source, term)
+			end
+			return redis.call('SCARD', source)
+		end
+		""";
+	
+	/**
+	 * <p>
+	 * Replaces the terms of the source set KEYS[1] of ticket ARGV[2] by the terms in ARGV[3..n], ARGV[1] is the term sorted sets prefix.
+	 * </p>
+	 * 
+	 * <p>
+	 * Terms are copied one by one since a long document can have more terms than {@code unpack()} can return.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_INDEX = new RedisScript(LUA_INDEX_FUNCTIONS + """
+		local terms = {}
+		for i = 3, #ARGV do
+			terms[#terms + 1] = ARGV[i]
+		end
+		return index(KEYS[1], ARGV[1], ARGV[2], terms)
+		""");
+	
+	/**
+	 * <p>
+	 * Removes ticket ARGV[2] from the index: the ticket source set KEYS[1] and the note source sets (KEYS[1] followed by ':Note:' and the note index) of the notes in the notes index KEYS[2].
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_UNINDEX_TICKET = new RedisScript(LUA_INDEX_FUNCTIONS + """
+		index(KEYS[1], ARGV[1], ARGV[2], {})
+		for _, noteIndex in ipairs(redis.call('ZRANGE', KEYS[2], 0, -1)) do
+			index(KEYS[1] .. ':Note:' .. noteIndex, ARGV[1], ARGV[2], {})
+		end
+		return 1
+		""");
+	
+	/**
+	 * <p>
+	 * Returns the ids of the tickets in all the term sorted sets KEYS[2..n], ordered by relevance then by id descending (in lexicographical order), skipping ARGV[1] tickets and limited to ARGV[2]
+	 * tickets.
+	 * </p>
+	 * 
+	 * <p>
+	 * The intersection of the term sorted sets is stored in the result sorted set KEYS[1] which expires after ARGV[3] milliseconds, it is only computed when the result sorted set does not exist so
+	 * that the next pages of a query are read from the same result. Terms are intersected by chunks to stay within the limits of {@code unpack()}.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_SEARCH = new RedisScript("""
+		local CHUNK_SIZE = 1000
+		local offset = tonumber(ARGV[1])
+		local stop = offset + tonumber(ARGV[2]) - 1
+		if #KEYS == 2 then
+			return redis.call('ZREVRANGE', KEYS[2], offset, stop)
+		end
+		if redis.call('EXISTS', KEYS[1]) == 0 then
+			local i = 2
+			while i <= #KEYS do
+				local args = { 'ZINTERSTORE', KEYS[1], 0 }
+				if i > 2 then
+					args[#args + 1] = KEYS[1]
+				end
+				while i <= #KEYS and #args < CHUNK_SIZE do
+					args[#args + 1] = KEYS[i]
+					i = i + 1
+				end
+				args[3] = #args - 3
+				if redis.call(unpack(args)) == 0 then
+					break
+				end
+			end
+			redis.call('PEXPIRE', KEYS[1], ARGV[3])
+		end
+		return redis.call('ZREVRANGE', KEYS[1], offset, stop)
+		""");
+	
+	private final RedisTransactionalClient<String, String> redisClient;
+
+	public SearchService(RedisTransactionalClient<String, String> redisClient) {
+		this.redisClient = redisClient;
+	}
+	
+	public Mono<Void> indexTicket(Ticket ticket) {
+		return Flux.from(this.indexTicket(this.redisClient, ticket)).then();
+	}
+	
+	public Mono<Void> indexNote(Note note) {
+		return Flux.from(this.indexNote(this.redisClient, note)).then();
+	}
+	
+	public Mono<Long> indexTickets(List<Tuple2<Ticket, List<Note>>> tickets) {
+		// Tickets and notes are indexed in a single pipelined batch
+		if(tickets.isEmpty()) {
+			return Mono.just(0l);
+		}
+		return this.redisClient
+			.<Long>batch(operations -> Flux.fromIterable(tickets)
+				.concatMap(entry -> Flux.concat(
+					Mono.just(this.indexTicket(operations, entry.getT1())),
+					Flux.fromIterable(entry.getT2()).map(note -> this.indexNote(operations, note))
+				))
+			)
+			.then(Mono.just((long)tickets.size()));
+	}
+	
+	private Publisher<Long> indexTicket(RedisScriptingReactiveOperations<String, String> operations, Ticket ticket) {
+		return this.index(operations, String.format(REDIS_KEY_SEARCH_TICKET, ticket.getId()), ticket.getId(), terms(ticket.getTitle(), ticket.getSummary(), ticket.getDescription()));
+	}
+	
+	private Publisher<Long> indexNote(RedisScriptingReactiveOperations<String, String> operations, Note note) {
+		return this.index(operations, String.format(REDIS_KEY_SEARCH_NOTE, note.getTicketId(), note.getIndex()), note.getTicketId(), terms(note.getTitle(), note.getContent()));
+	}
+	
+	public Mono<Void> unindexNote(long ticketId, int noteIndex) {
+		return Flux.from(this.index(this.redisClient, String.format(REDIS_KEY_SEARCH_NOTE, ticketId, noteIndex), ticketId, Set.of())).then();
+	}
+	
+	public Mono<Void> unindexTicket(long ticketId) {
+		return SCRIPT_UNINDEX_TICKET
+			.<Long>eval(
+				this.redisClient, 
+				RedisScriptingReactiveOperations.ScriptOutput.INTEGER, 
+				keys -> {
+					keys.key(String.format(REDIS_KEY_SEARCH_TICKET, ticketId));
+					keys.key(String.format(NoteService.REDIS_KEY_TICKET_NOTES_INDEX, ticketId));
+				},
+				args -> {
+					args.value(REDIS_KEY_SEARCH_TERM_PREFIX);
+					args.value(Long.toString(ticketId));
+				}
+			)
+			.then();
+	}
+	
+	private Flux<Long> index(RedisScriptingReactiveOperations<String, String> operations, String sourceKey, long ticketId, Set<String> terms) {
+		// Term keys are derived from the prefix in the script since the terms previously indexed for the source are only known by Redis
+		return SCRIPT_INDEX
+			.<Long>eval(
+				operations, 
+				RedisScriptingReactiveOperations.ScriptOutput.INTEGER, 
+				keys -> keys.key(sourceKey),
+				args -> {
+					args.value(REDIS_KEY_SEARCH_TERM_PREFIX);
+					args.value(Long.toString(ticketId));
+					terms.forEach(args::value);
+				}
+			);
+	}
+	
+	public Flux<Long> search(String query, long offset, int limit) {
+		Set<String> terms = new TreeSet<>(terms(query));
+		if(terms.isEmpty() || limit == 0) {
+			return Flux.empty();
+		}
+		// The result key is derived from the sorted terms so that equivalent queries share the same result
+		return SCRIPT_SEARCH
+			.<List<String>>eval(
+				this.redisClient, 
+				RedisScriptingReactiveOperations.ScriptOutput.MULTI, 
+				keys -> {
+					keys.key(String.format(REDIS_KEY_SEARCH_RESULT, String.join(" ", terms)));
+					terms.forEach(term -> keys.key(String.format(REDIS_KEY_SEARCH_TERM, term)));
+				},
+				args -> {
+					args.value(Long.toString(offset));
+					args.value(Integer.toString(limit));
+					args.value(Long.toString(SEARCH_RESULT_TTL));
+				}
+			)
+			.flatMapIterable(ticketIds -> ticketIds)
+			.map(id -> Long.parseLong(id));
+	}
+	
+	static Set<String> terms(String... texts) {
+		Set<String> terms = new LinkedHashSet<>();
+		for(String text : texts) {
+			if(text == null) {
+				continue;
+			}
+			for(String term : TERM_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+				if(term.length() >= MIN_TERM_LENGTH && term.length() <= MAX_TERM_LENGTH) {
+					terms.add(term);
+				}
+			}
+		}
+		return terms;
+	}
+}
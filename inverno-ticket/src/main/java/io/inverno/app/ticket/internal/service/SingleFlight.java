@@ -0,0 +1,71 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import reactor.core.publisher.Mono;
+
+/**
+ * <p>
+ * Coalesces concurrent executions of identical operations.
+ * </p>
+ * 
+ * <p>
+ * Subscribers requesting the same key while an operation is in flight share its result instead of executing the operation again, the key is released as soon as the operation terminates so that
+ * subsequent subscribers always get a fresh result. A key must be forgotten when the underlying data is modified so that subscribers arriving after the modification do not join an
+ * operation started before it.
+ * </p>
+ * 
+ * <p>
+ * The result is shared among subscribers, mutable values must then be copied by callers.
+ * </p>
+ * 
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ * 
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+final class SingleFlight<K, V> {
+
+	private final Map<K, Mono<V>> flights;
+
+	public SingleFlight() {
+		this.flights = new ConcurrentHashMap<>();
+	}
+	
+	public Mono<V> execute(K key, Supplier<Mono<V>> operation) {
+		return Mono.defer(() -> {
+			Mono<V> flight = this.flights.get(key);
+			if(flight != null) {
+				return flight;
+			}
+			AtomicReference<Mono<V>> flightRef = new AtomicReference<>();
+			Mono<V> newFlight = Mono.defer(operation)
+				.doFinally(ign -> this.flights.remove(key, flightRef.get()))
+				.cache();
+			flightRef.set(newFlight);
+			flight = this.flights.putIfAbsent(key, newFlight);
+			return flight != null ? flight : newFlight;
+		});
+	}
+	
+	public void forget(K key) {
+		this.flights.remove(key);
+	}
+}
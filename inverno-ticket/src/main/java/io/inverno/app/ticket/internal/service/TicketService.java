@@ -15,26 +15,52 @@
  */
 package io.inverno.app.ticket.internal.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.inverno.app.ticket.TicketApp;
+import io.inverno.app.ticket.internal.RedisReadConnection;
+import io.inverno.app.ticket.internal.cache.TicketCache;
+import io.inverno.app.ticket.internal.codec.TicketHashCodec;
+import io.inverno.app.ticket.internal.codec.ValueCodec;
 import io.inverno.app.ticket.internal.exception.TicketException;
+import io.inverno.app.ticket.internal.exception.VersionMismatchException;
+import io.inverno.app.ticket.internal.model.BulkResult;
+import io.inverno.app.ticket.internal.model.Note;
 import io.inverno.app.ticket.internal.model.Ticket;
 import io.inverno.core.annotation.Bean;
 import io.inverno.mod.redis.RedisTransactionalClient;
-import java.io.IOException;
-import java.io.UncheckedIOException;
+import io.inverno.mod.redis.operations.Keys;
+import io.inverno.mod.redis.operations.RedisScriptingReactiveOperations;
+import io.lettuce.core.api.reactive.RedisReactiveCommands;
+import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuple3;
+import reactor.util.function.Tuples;
 
 /**
  * <p>
  * Ticket service is used to create/read/update/delete {@link Ticket} in Redis data store.
  * </p>
  * 
+ * <p>
+ * Tickets are stored in Redis hashes (see {@link TicketHashCodec}) so that a single property can be updated or read without transferring the whole ticket.
+ * </p>
+ * 
  * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
  */
 @Bean
@@ -50,96 +76,679 @@ public class TicketService {
 	public static final String REDIS_KEY_TICKET_DONE = String.format(REDIS_KEY_TICKET_STATUS, Ticket.Status.DONE);
 	public static final String REDIS_KEY_TICKET_REJECTED = String.format(REDIS_KEY_TICKET_STATUS, Ticket.Status.REJECTED);
 	
+	private static final String REDIS_KEY_TICKET_STATUS_IDS_SUFFIX = ":IDS";
+	public static final String REDIS_KEY_TICKET_STATUS_IDS = REDIS_KEY_TICKET_STATUS + REDIS_KEY_TICKET_STATUS_IDS_SUFFIX;
+	
+	private static final String REDIS_KEY_TICKET_STATUS_REINDEX = REDIS_KEY_TICKET_STATUS + ":REINDEX";
+	private static final String REDIS_KEY_TICKET_STATUS_IDS_REINDEX = REDIS_KEY_TICKET_STATUS_IDS + ":REINDEX";
+	
+	private static final String REDIS_KEY_TICKET_PATTERN = TicketApp.REDIS_KEY + ":Ticket:*";
+	private static final String REDIS_KEY_TICKET_REGEX = TicketApp.REDIS_KEY + ":Ticket:[0-9]+";
+	
+	private static final int LIST_TICKETS_CHUNK_SIZE = 100;
+	private static final int IMPORT_TICKETS_CHUNK_SIZE = 500;
+	private static final int CHECK_CHUNK_SIZE = 100;
+	
+	/**
+	 * <p>
+	 * Lua functions returning the status sorted set of a status and the list of statuses, {@code index_status} and {@code unindex_status} add or remove a ticket to or from a status sorted set
+	 * scored by creation date time and from the corresponding sorted set scored by id used to page tickets by status.
+	 * </p>
+	 */
+	private static final String LUA_STATUS_FUNCTIONS = 
+		"local STATUS_KEY = '" + REDIS_KEY_TICKET_STATUS + "'\n" + 
+		"local STATUS_IDS_SUFFIX = '" + REDIS_KEY_TICKET_STATUS_IDS_SUFFIX + "'\n" + 
+		"local STATUSES = {" + Arrays.stream(Ticket.Status.values()).map(status -> "'" + status + "'").collect(Collectors.joining(", ")) + "}\n" + """
+		local function status_key(status)
+			return (string.gsub(STATUS_KEY, '%%s', status))
+		end
+		local function index_status(statusKey, id, score)
+			redis.call('ZADD', statusKey, score, id)
+			redis.call('ZADD', statusKey .. STATUS_IDS_SUFFIX, id, id)
+		end
+		local function unindex_status(statusKey, id)
+			redis.call('ZREM', statusKey .. STATUS_IDS_SUFFIX, id)
+			return redis.call('ZREM', statusKey, id)
+		end
+		""";
+	
+	/**
+	 * <p>
+	 * Returns the ids of the tickets in the status sorted sets (KEYS) whose creation date time is within ARGV[1] and ARGV[2], ordered by creation date time and id (descending if ARGV[4] is '1')
+	 * and limited to ARGV[3] tickets. Tickets are returned after the ticket whose creation date time and id are ARGV[5] and ARGV[6] if ARGV[5] is not empty. Returns {id, creation date time, ...}.
+	 * </p>
+	 * 
+	 * <p>
+	 * Tickets created at the same time are ordered by id whereas sorted sets order them lexicographically, tickets created at the time of the last ticket of a status sorted set are then all
+	 * considered.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_RANGE_TICKETS_BY_CREATION = new RedisScript("""
+		local count = tonumber(ARGV[3])
+		local reverse = ARGV[4] == '1'
+		local min, max = ARGV[1], ARGV[2]
+		local cursorScore, cursorId
+		if ARGV[5] ~= '' then
+			cursorScore, cursorId = tonumber(ARGV[5]), tonumber(ARGV[6])
+			if reverse then
+				max = ARGV[5]
+			else
+				min = ARGV[5]
+			end
+		end
+		local function after_cursor(id, score)
+			if not cursorScore or score ~= cursorScore then
+				return true
+			end
+			if reverse then
+				return id < cursorId
+			end
+			return id > cursorId
+		end
+		local entries = {}
+		for _, key in ipairs(KEYS) do
+			local keyEntries = {}
+			local offset = 0
+			while #keyEntries < count do
+				local range
+				if reverse then
+					range = redis.call('ZREVRANGEBYSCORE', key, max, min, 'WITHSCORES', 'LIMIT', offset, count)
+				else
+					range = redis.call('ZRANGEBYSCORE', key, min, max, 'WITHSCORES', 'LIMIT', offset, count)
+				end
+				for i = 1, #range, 2 do
+					local id, score = tonumber(range[i]), tonumber(range[i + 1])
+					if after_cursor(id, score) then
+						keyEntries[#keyEntries + 1] = { id, score }
+					end
+				end
+				if #range < 2 * count then
+					break
+				end
+				offset = offset + count
+			end
+			if #keyEntries >= count then
+				local lastScore = keyEntries[#keyEntries][2]
+				for _, entry in ipairs(keyEntries) do
+					if entry[2] ~= lastScore then
+						entries[#entries + 1] = entry
+					end
+				end
+				local lastScoreValue = string.format('%.17g', lastScore)
+				for _, id in ipairs(redis.call('ZRANGEBYSCORE', key, lastScoreValue, lastScoreValue)) do
+					if after_cursor(tonumber(id), lastScore) then
+						entries[#entries + 1] = { tonumber(id), lastScore }
+					end
+				end
+			else
+				for _, entry in ipairs(keyEntries) do
+					entries[#entries + 1] = entry
+				end
+			end
+		end
+		table.sort(entries, function(a, b)
+			if a[2] ~= b[2] then
+				if reverse then
+					return a[2] > b[2]
+				end
+				return a[2] < b[2]
+			end
+			if reverse then
+				return a[1] > b[1]
+			end
+			return a[1] < b[1]
+		end)
+		local result = {}
+		for i = 1, math.min(count, #entries) do
+			result[#result + 1] = tostring(entries[i][1])
+			result[#result + 1] = string.format('%.17g', entries[i][2])
+		end
+		return result
+		""");
+	
+	/**
+	 * <p>
+	 * Returns the ids of the tickets in the status sorted sets scored by id (KEYS) whose id is greater than ARGV[1], ordered by id and limited to ARGV[2] tickets.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_PAGE_TICKETS_BY_ID = new RedisScript("""
+		local count = tonumber(ARGV[2])
+		local ids = {}
+		for _, key in ipairs(KEYS) do
+			for _, id in ipairs(redis.call('ZRANGEBYSCORE', key, '(' .. ARGV[1], '+inf', 'LIMIT', 0, count)) do
+				ids[#ids + 1] = tonumber(id)
+			end
+		end
+		table.sort(ids)
+		local result = {}
+		for i = 1, math.min(count, #ids) do
+			result[i] = tostring(ids[i])
+		end
+		return result
+		""");
+	
+	/**
+	 * <p>
+	 * Replaces the status sorted sets (KEYS[1..n/2]) by the reindexed sorted sets (KEYS[n/2+1..n]).
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_SWAP_STATUS_INDEXES = new RedisScript("""
+		local n = #KEYS / 2
+		for i = 1, n do
+			if redis.call('EXISTS', KEYS[n + i]) == 1 then
+				redis.call('RENAME', KEYS[n + i], KEYS[i])
+			else
+				redis.call('DEL', KEYS[i])
+			end
+		end
+		return n
+		""");
+	
+	/**
+	 * <p>
+	 * Returns the values of the hash fields specified in ARGV for each ticket key in KEYS.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_GET_TICKETS = new RedisScript("""
+		local result = {}
+		for i, key in ipairs(KEYS) do
+			result[i] = redis.call('HMGET', key, unpack(ARGV))
+		end
+		return result
+		""");
+	
+	/**
+	 * <p>
+	 * Creates the ticket hash KEYS[1] with version 1 from the field/value pairs in ARGV[3..n], adds ticket ARGV[2] to the status sorted set KEYS[2] with score ARGV[1] and records a
+	 * {@code TICKET_CREATED} event, returns 0 if the ticket already exists.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_CREATE_TICKET = new RedisScript(EventService.LUA_EVENT_FUNCTIONS + LUA_STATUS_FUNCTIONS + """
+		if redis.call('EXISTS', KEYS[1]) == 1 then
+			return 0
+		end
+		redis.call('HSET', KEYS[1], 'version', 1, unpack(ARGV, 3))
+		index_status(KEYS[2], ARGV[2], ARGV[1])
+		record_event({ type = 'TICKET_CREATED', ticketId = tonumber(ARGV[2]), status = redis.call('HGET', KEYS[1], 'status'), version = 1 })
+		return 1
+		""");
+	
+	/**
+	 * <p>
+	 * Allocates a new ticket id from sequence KEYS[1] and creates the ticket hash with version 1, the current time as creation date time and the field/value pairs in ARGV, the ticket is added to
+	 * the status sorted set KEYS[2] scored by its creation date time and a {@code TICKET_CREATED} event is recorded. Returns {ticket id, creation date time} or {0, ticket id} if a ticket
+	 * already exists with the allocated id.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_CREATE_NEW_TICKET = new RedisScript(EventService.LUA_EVENT_FUNCTIONS + PlanService.LUA_COUNT_FUNCTIONS + LUA_STATUS_FUNCTIONS + """
+		local id = redis.call('INCR', KEYS[1])
+		local ticketKey = key(TICKET_KEY, id)
+		if redis.call('EXISTS', ticketKey) == 1 then
+			return {0, id}
+		end
+		local time = redis.call('TIME')
+		local creationDateTime = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+		redis.call('HSET', ticketKey, 'id', id, 'creationDateTime', string.format('%d', creationDateTime), 'version', 1, unpack(ARGV))
+		index_status(KEYS[2], id, creationDateTime)
+		record_event({ type = 'TICKET_CREATED', ticketId = id, status = redis.call('HGET', ticketKey, 'status'), version = 1 })
+		return {id, creationDateTime}
+		""");
+	
+	/**
+	 * <p>
+	 * Replaces the fields of the ticket hash KEYS[1] by the field/value pairs in ARGV[3..n], the creation date time is preserved if not specified, and moves ticket ARGV[1] from the status sorted
+	 * sets KEYS[3..n] to the status sorted set KEYS[2] updating the status counters of its plans and records a {@code TICKET_UPDATED} event. The update is rejected if ARGV[2] is not empty and
+	 * does not match the current version. Returns the new version or 0 if the ticket does not exist.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_UPDATE_TICKET = new RedisScript(EventService.LUA_EVENT_FUNCTIONS + PlanService.LUA_COUNT_FUNCTIONS + LUA_STATUS_FUNCTIONS + """
+		if redis.call('EXISTS', KEYS[1]) == 0 then
+			return 0
+		end
+		local previous = redis.call('HMGET', KEYS[1], 'creationDateTime', 'version', 'status')
+		local version = tonumber(previous[2] or '0')
+		if ARGV[2] ~= '' and tonumber(ARGV[2]) ~= version then
+			return redis.error_reply('VERSION_MISMATCH')
+		end
+		redis.call('DEL', KEYS[1])
+		redis.call('HSET', KEYS[1], 'version', version + 1, unpack(ARGV, 3))
+		if previous[1] then
+			redis.call('HSETNX', KEYS[1], 'creationDateTime', previous[1])
+		end
+		for i = 3, #KEYS do
+			unindex_status(KEYS[i], ARGV[1])
+		end
+		index_status(KEYS[2], ARGV[1], redis.call('HGET', KEYS[1], 'creationDateTime') or 0)
+		local status = redis.call('HGET', KEYS[1], 'status')
+		count_status(ARGV[1], previous[3], status)
+		record_event({ type = 'TICKET_UPDATED', ticketId = tonumber(ARGV[1]), status = status, version = version + 1 })
+		return version + 1
+		""");
+	
+	/**
+	 * <p>
+	 * Sets the status of the ticket hash KEYS[1] to ARGV[1], increments its version, moves ticket ARGV[2] from the status sorted sets KEYS[3..n] to the status sorted set KEYS[2], updates the
+	 * status counters of its plans, records a {@code TICKET_STATUS_CHANGED} event and returns the values of the hash fields specified in ARGV[4..n]. The update is rejected if ARGV[3] is not empty
+	 * and does not match the current version. Returns an empty list if the ticket does not exist or if it already has the specified status.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_UPDATE_TICKET_STATUS = new RedisScript(EventService.LUA_EVENT_FUNCTIONS + PlanService.LUA_COUNT_FUNCTIONS + LUA_STATUS_FUNCTIONS + """
+		local previous = redis.call('HMGET', KEYS[1], 'status', 'version')
+		if not previous[1] then
+			return {}
+		end
+		if ARGV[3] ~= '' and tonumber(ARGV[3]) ~= tonumber(previous[2] or '0') then
+			return redis.error_reply('VERSION_MISMATCH')
+		end
+		if previous[1] == ARGV[1] then
+			return {}
+		end
+		redis.call('HSET', KEYS[1], 'status', ARGV[1])
+		local version = redis.call('HINCRBY', KEYS[1], 'version', 1)
+		for i = 3, #KEYS do
+			unindex_status(KEYS[i], ARGV[2])
+		end
+		index_status(KEYS[2], ARGV[2], redis.call('HGET', KEYS[1], 'creationDateTime') or 0)
+		count_status(ARGV[2], previous[1], ARGV[1])
+		record_event({ type = 'TICKET_STATUS_CHANGED', ticketId = tonumber(ARGV[2]), status = ARGV[1], version = version })
+		return redis.call('HMGET', KEYS[1], unpack(ARGV, 4))
+		""");
+	
+	/**
+	 * <p>
+	 * Sets the status of multiple tickets, KEYS[1..n] are the status sorted sets of the n statuses in ARGV[2..n+1] where n is ARGV[1], KEYS[n+1..m] are the ticket hashes and ARGV[n+2..] are
+	 * the corresponding (id, status, expected version) triplets. Each ticket is updated and its event recorded as in {@link #SCRIPT_UPDATE_TICKET_STATUS}, the outcome of each update is returned in order: the new
+	 * version, 'UNCHANGED', 'NOT_FOUND' or 'VERSION_MISMATCH'.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_UPDATE_TICKET_STATUSES = new RedisScript(EventService.LUA_EVENT_FUNCTIONS + PlanService.LUA_COUNT_FUNCTIONS + LUA_STATUS_FUNCTIONS + """
+		local n = tonumber(ARGV[1])
+		local statusKeys = {}
+		for i = 1, n do
+			statusKeys[ARGV[i + 1]] = KEYS[i]
+		end
+		local result = {}
+		for i = n + 1, #KEYS do
+			local a = n + 2 + (i - n - 1) * 3
+			local id, status, expected = ARGV[a], ARGV[a + 1], ARGV[a + 2]
+			local previous = redis.call('HMGET', KEYS[i], 'status', 'version', 'creationDateTime')
+			if not previous[1] then
+				result[#result + 1] = 'NOT_FOUND'
+			elseif expected ~= '' and tonumber(expected) ~= tonumber(previous[2] or '0') then
+				result[#result + 1] = 'VERSION_MISMATCH'
+			elseif previous[1] == status then
+				result[#result + 1] = 'UNCHANGED'
+			else
+				redis.call('HSET', KEYS[i], 'status', status)
+				local version = redis.call('HINCRBY', KEYS[i], 'version', 1)
+				for otherStatus, key in pairs(statusKeys) do
+					if otherStatus ~= status then
+						unindex_status(key, id)
+					end
+				end
+				index_status(statusKeys[status], id, previous[3] or 0)
+				count_status(id, previous[1], status)
+				record_event({ type = 'TICKET_STATUS_CHANGED', ticketId = tonumber(id), status = status, version = version })
+				result[#result + 1] = tostring(version)
+			end
+		end
+		return result
+		""");
+	
+	/**
+	 * <p>
+	 * Removes ticket ARGV[1]: the ticket hash KEYS[1], its notes KEYS[2..4] and its plans KEYS[5] are deleted, the ticket is removed from the sorted set of its status, from the sorted sets of its
+	 * plans and from their status counters. A {@code PLAN_TICKET_REMOVED} event is recorded for each plan the ticket was removed from followed by a {@code TICKET_DELETED} event. Returns 1 or 0 if
+	 * the ticket does not exist.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_REMOVE_TICKET = new RedisScript(EventService.LUA_EVENT_FUNCTIONS + PlanService.LUA_COUNT_FUNCTIONS + LUA_STATUS_FUNCTIONS + """
+		local status = redis.call('HGET', KEYS[1], 'status')
+		if not status then
+			return 0
+		end
+		local planIds = {}
+		for _, planId in ipairs(redis.call('SMEMBERS', KEYS[5])) do
+			if redis.call('ZREM', key(PLAN_TICKETS_KEY, planId), ARGV[1]) == 1 then
+				redis.call('HINCRBY', key(PLAN_COUNTS_KEY, planId), status, -1)
+				planIds[#planIds + 1] = planId
+			end
+		end
+		unindex_status(status_key(status), ARGV[1])
+		redis.call('DEL', KEYS[1], KEYS[2], KEYS[3], KEYS[4], KEYS[5])
+		for _, planId in ipairs(planIds) do
+			record_event({ type = 'PLAN_TICKET_REMOVED', planId = tonumber(planId), ticketId = tonumber(ARGV[1]) })
+		end
+		record_event({ type = 'TICKET_DELETED', ticketId = tonumber(ARGV[1]), status = status })
+		return 1
+		""");
+	
+	/**
+	 * <p>
+	 * Checks that tickets ARGV[2..n], whose hashes are KEYS[m+1..n+m-1], are only indexed in the sorted sets of their status, the m status sorted sets KEYS[1..m] are given in the order of
+	 * statuses. Returns the number of mis-indexed tickets which are re-indexed when ARGV[1] is '1'.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_CHECK_TICKETS = new RedisScript(LUA_STATUS_FUNCTIONS + """
+		local repair = ARGV[1] == '1'
+		local misindexed = 0
+		for i = 2, #ARGV do
+			local id = ARGV[i]
+			local ticketKey = KEYS[#STATUSES + i - 1]
+			if redis.call('TYPE', ticketKey).ok == 'hash' then
+				local ticket = redis.call('HMGET', ticketKey, 'status', 'creationDateTime')
+				local valid = true
+				for s, status in ipairs(STATUSES) do
+					local statusKey = KEYS[s]
+					local indexed = redis.call('ZSCORE', statusKey, id)
+					local idIndexed = redis.call('ZSCORE', statusKey .. STATUS_IDS_SUFFIX, id)
+					if status == ticket[1] and not (indexed and idIndexed) then
+						valid = false
+						if repair then
+							index_status(statusKey, id, ticket[2] or 0)
+						end
+					elseif status ~= ticket[1] and (indexed or idIndexed) then
+						valid = false
+						if repair then
+							unindex_status(statusKey, id)
+						end
+					end
+				end
+				if not valid then
+					misindexed = misindexed + 1
+				end
+			end
+		end
+		return misindexed
+		""");
+	
+	/**
+	 * <p>
+	 * Looks for tickets which do not exist anymore in the ARGV[3] tickets of status sorted set KEYS[1] starting at rank ARGV[2], orphan tickets are removed when ARGV[1] is '1'. Returns {next
+	 * rank, number of orphan tickets} where next rank is -1 when the end of the sorted set was reached.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_CHECK_STATUS_INDEX = new RedisScript(PlanService.LUA_COUNT_FUNCTIONS + LUA_STATUS_FUNCTIONS + """
+		local repair = ARGV[1] == '1'
+		local start = tonumber(ARGV[2])
+		local count = tonumber(ARGV[3])
+		local ids = redis.call('ZRANGE', KEYS[1], start, start + count - 1)
+		local orphans = 0
+		for _, id in ipairs(ids) do
+			if redis.call('EXISTS', key(TICKET_KEY, id)) == 0 then
+				orphans = orphans + 1
+				if repair then
+					unindex_status(KEYS[1], id)
+				end
+			end
+		end
+		if #ids < count then
+			return {-1, orphans}
+		end
+		if repair then
+			return {start + #ids - orphans, orphans}
+		end
+		return {start + #ids, orphans}
+		""");
+	
+	/**
+	 * <p>
+	 * Returns the number of tickets in each status sorted set KEYS.
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_COUNT_TICKETS = new RedisScript("""
+		local result = {}
+		for i, key in ipairs(KEYS) do
+			result[i] = redis.call('ZCARD', key)
+		end
+		return result
+		""");
+	
+	/**
+	 * <p>
+	 * Converts the ticket string KEYS[1] to a hash made of the field/value pairs in ARGV[2..n] if it still holds the value ARGV[1].
+	 * </p>
+	 */
+	private static final RedisScript SCRIPT_MIGRATE_TICKET = new RedisScript("""
+		if redis.call('TYPE', KEYS[1]).ok ~= 'string' or redis.call('GET', KEYS[1]) ~= ARGV[1] then
+			return 0
+		end
+		redis.call('DEL', KEYS[1])
+		redis.call('HSET', KEYS[1], unpack(ARGV, 2))
+		return 1
+		""");
+	
 	private final RedisTransactionalClient<String, String> redisClient;
-	private final ObjectMapper mapper;
+	private final ValueCodec codec;
+	private final SearchService searchService;
+	private final SingleFlight<Long, Ticket> ticketFlights;
 	
-	public TicketService(RedisTransactionalClient<String, String> redisClient, ObjectMapper mapper) {
+	private TicketCache ticketCache;
+	private RedisReadConnection readConnection;
+	
+	public TicketService(RedisTransactionalClient<String, String> redisClient, ValueCodec codec, SearchService searchService) {
 		this.redisClient = redisClient;
-		this.mapper = mapper;
+		this.codec = codec;
+		this.searchService = searchService;
+		this.ticketFlights = new SingleFlight<>();
+	}
+	
+	public void setTicketCache(TicketCache ticketCache) {
+		this.ticketCache = ticketCache;
+	}
+	
+	public void setReadConnection(RedisReadConnection readConnection) {
+		this.readConnection = readConnection;
 	}
 	
 	public Mono<Ticket> saveTicket(Ticket ticket) {
 		if(ticket.getId() != null) {
-			// Try to update
-			return Mono.from(this.redisClient.connection(operations -> {
-				try {
-					return operations
-						.setGet()
-						.xx()
-						.build(String.format(REDIS_KEY_TICKET, ticket.getId()), this.mapper.writeValueAsString(ticket))
-						.flatMap(result -> {
-							try {
-								Ticket oldTicket = this.mapper.readValue(result, Ticket.class);
-								if(!oldTicket.getStatus().equals(ticket.getStatus())) {
-									return operations.smove(String.format(REDIS_KEY_TICKET_STATUS, oldTicket.getStatus()), String.format(REDIS_KEY_TICKET_STATUS, ticket.getStatus()), Long.toString(ticket.getId())).thenReturn(ticket);
-								}
-								else {
-									return Mono.just(ticket);
-								}
-							}
-							catch (JsonProcessingException ex) {
-								throw new UncheckedIOException(ex);
-							}
+			// Try to update, the ticket and its status index are updated atomically, the ticket version if specified is the expected version
+			Long expectedVersion = ticket.getVersion();
+			return SCRIPT_UPDATE_TICKET
+				.<Long>eval(
+					this.redisClient, 
+					RedisScriptingReactiveOperations.ScriptOutput.INTEGER, 
+					keys -> {
+						keys.key(String.format(REDIS_KEY_TICKET, ticket.getId()));
+						statusKeys(keys, ticket.getStatus());
+					},
+					args -> {
+						args.value(Long.toString(ticket.getId()));
+						args.value(expectedVersion != null ? expectedVersion.toString() : "");
+						TicketHashCodec.encode(ticket).forEach((field, value) -> {
+							args.value(field);
+							args.value(value);
 						});
-				} 
-				catch (JsonProcessingException ex) {
-					throw new UncheckedIOException(ex);
-				}
-			}));
+					}
+				)
+				.onErrorMap(TicketService::isVersionMismatch, e -> new VersionMismatchException(expectedVersion, e))
+				.next()
+				.doFinally(ign -> this.invalidate(ticket.getId()))
+				.filter(version -> version > 0)
+				.map(version -> {
+					ticket.setVersion(version);
+					return ticket;
+				})
+				.flatMap(savedTicket -> this.searchService.indexTicket(savedTicket).thenReturn(savedTicket));
 		}
 		else {
-			return this.redisClient
-				.incr(REDIS_KEY_TICKET_SEQ)
-				.flatMap(ticketId -> {
-					ticket.setCreationDateTime(ZonedDateTime.now(ZoneOffset.UTC));
-					ticket.setStatus(Ticket.Status.OPEN);
-					ticket.setId(ticketId);
-					return this.redisClient.multi(operations -> {
-						try {
-							return Flux.just(
-									operations
-										.set()
-										.nx()
-										.build(String.format(REDIS_KEY_TICKET, ticketId), this.mapper.writeValueAsString(ticket)),
-									operations
-										.sadd(REDIS_KEY_TICKET_OPEN, Long.toString(ticketId))
-							);
-						}
-						catch (JsonProcessingException ex) {
-							throw new UncheckedIOException(ex);
-						}
-					});
-				})
-				.map(transactionResult -> {
-					if(transactionResult.wasDiscarded()) {
-						throw new TicketException("Error while creating ticket: transaction was discarded");
+			// The id is allocated, the creation date time set and the ticket written and indexed by status in a single script call
+			ticket.setCreationDateTime(null);
+			ticket.setStatus(Ticket.Status.OPEN);
+			return SCRIPT_CREATE_NEW_TICKET
+				.<List<Long>>eval(
+					this.redisClient, 
+					RedisScriptingReactiveOperations.ScriptOutput.MULTI, 
+					keys -> {
+						keys.key(REDIS_KEY_TICKET_SEQ);
+						keys.key(REDIS_KEY_TICKET_OPEN);
+					},
+					args -> TicketHashCodec.encode(ticket).forEach((field, value) -> {
+						args.value(field);
+						args.value(value);
+					})
+				)
+				.next()
+				.map(result -> {
+					if(result.get(0) == 0) {
+						throw new TicketException("Error while creating ticket: ticket " + result.get(1) + " already exists");
 					}
+					ticket.setId(result.get(0));
+					ticket.setCreationDateTime(ZonedDateTime.ofInstant(Instant.ofEpochMilli(result.get(1)), ZoneOffset.UTC));
+					ticket.setVersion(1l);
 					return ticket;
-				});
+				})
+				.flatMap(savedTicket -> this.searchService.indexTicket(savedTicket).thenReturn(savedTicket));
 		}
 	}
 	
+	public Flux<Ticket> importTickets(Flux<Tuple2<Ticket, List<Note>>> tickets) {
+		// Ids are reserved for a whole chunk with a single INCRBY, tickets, status indexes and notes are then written in one pipelined batch
+		return tickets
+			.buffer(IMPORT_TICKETS_CHUNK_SIZE)
+			.concatMap(chunk -> this.redisClient
+				.incrby(REDIS_KEY_TICKET_SEQ, chunk.size())
+				.flatMapMany(lastTicketId -> {
+					ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+					long ticketId = lastTicketId - chunk.size();
+					for(Tuple2<Ticket, List<Note>> entry : chunk) {
+						Ticket ticket = entry.getT1();
+						ticket.setId(++ticketId);
+						if(ticket.getCreationDateTime() == null) {
+							ticket.setCreationDateTime(now);
+						}
+						if(ticket.getStatus() == null) {
+							ticket.setStatus(Ticket.Status.OPEN);
+						}
+						ticket.setVersion(1l);
+					}
+					return this.redisClient
+						.<Long>batch(operations -> Flux.fromIterable(chunk)
+							.concatMap(entry -> {
+								Ticket ticket = entry.getT1();
+								String ticketKey = String.format(REDIS_KEY_TICKET, ticket.getId());
+								Flux<Publisher<Long>> commands = Flux.just(SCRIPT_CREATE_TICKET.<Long>eval(
+									operations, 
+									RedisScriptingReactiveOperations.ScriptOutput.INTEGER, 
+									keys -> {
+										keys.key(ticketKey);
+										keys.key(String.format(REDIS_KEY_TICKET_STATUS, ticket.getStatus()));
+									},
+									args -> {
+										args.value(Long.toString((long)creationScore(ticket)));
+										args.value(Long.toString(ticket.getId()));
+										TicketHashCodec.encode(ticket).forEach((field, value) -> {
+											args.value(field);
+											args.value(value);
+										});
+									}
+								));
+								if(!entry.getT2().isEmpty()) {
+									commands = commands.concatWith(Mono.just(NoteService.SCRIPT_ADD_NOTES.<Long>eval(
+										operations, 
+										RedisScriptingReactiveOperations.ScriptOutput.INTEGER, 
+										keys -> NoteService.noteKeys(keys, ticket.getId()),
+										args -> {
+											args.value(Long.toString(ticket.getId()));
+											entry.getT2().forEach(note -> {
+												note.setTicketId(ticket.getId());
+												note.setIndex(null);
+												note.setVersion(1l);
+												args.value(this.codec.encode(note));
+											});
+										}
+									)));
+								}
+								return commands;
+							})
+						)
+						.then(Mono.defer(() -> {
+							// Notes of a new ticket are indexed from 1 in order
+							for(Tuple2<Ticket, List<Note>> entry : chunk) {
+								int noteIndex = 1;
+								for(Note note : entry.getT2()) {
+									note.setIndex(noteIndex++);
+								}
+							}
+							return this.searchService.indexTickets(chunk);
+						}))
+						.thenMany(Flux.fromIterable(chunk).map(Tuple2::getT1));
+				})
+			);
+	}
+	
 	public Mono<Ticket> updateTicketStatus(long ticketId, Ticket.Status status) {
-		return Mono.from(this.redisClient.connection(operations -> operations
-			.get(String.format(REDIS_KEY_TICKET, ticketId))
-			.flatMap(result -> {
-				try {
-					Ticket ticket = this.mapper.readValue(result, Ticket.class);
-					Ticket.Status oldStatus = ticket.getStatus();
-					if(status.equals(oldStatus)) {
-						return Mono.empty();
+		return this.updateTicketStatus(ticketId, status, null);
+	}
+	
+	public Mono<Ticket> updateTicketStatus(long ticketId, Ticket.Status status, Long expectedVersion) {
+		// Status is compared and moved atomically in a single round trip, only the status field is written
+		return SCRIPT_UPDATE_TICKET_STATUS
+			.<List<String>>eval(
+				this.redisClient, 
+				RedisScriptingReactiveOperations.ScriptOutput.MULTI, 
+				keys -> {
+					keys.key(String.format(REDIS_KEY_TICKET, ticketId));
+					statusKeys(keys, status);
+				},
+				args -> {
+					args.value(status.name());
+					args.value(Long.toString(ticketId));
+					args.value(expectedVersion != null ? expectedVersion.toString() : "");
+					TicketHashCodec.FIELDS.forEach(args::value);
+				}
+			)
+			.onErrorMap(TicketService::isVersionMismatch, e -> new VersionMismatchException(expectedVersion, e))
+			.next()
+			.doFinally(ign -> this.invalidate(ticketId))
+			.mapNotNull(result -> TicketHashCodec.decode(TicketHashCodec.FIELDS, result));
+	}
+	
+	public Flux<BulkResult> updateTicketStatuses(List<Ticket> tickets) {
+		// Tickets only need id and status, the ticket version if specified is the expected version, all updates are applied in a single script call
+		if(tickets == null || tickets.isEmpty()) {
+			return Flux.empty();
+		}
+		return SCRIPT_UPDATE_TICKET_STATUSES
+			.<List<String>>eval(
+				this.redisClient, 
+				RedisScriptingReactiveOperations.ScriptOutput.MULTI, 
+				keys -> {
+					for(Ticket.Status status : Ticket.Status.values()) {
+						keys.key(String.format(REDIS_KEY_TICKET_STATUS, status));
+					}
+					tickets.forEach(ticket -> keys.key(String.format(REDIS_KEY_TICKET, ticket.getId())));
+				},
+				args -> {
+					args.value(Integer.toString(Ticket.Status.values().length));
+					for(Ticket.Status status : Ticket.Status.values()) {
+						args.value(status.name());
+					}
+					tickets.forEach(ticket -> {
+						args.value(Long.toString(ticket.getId()));
+						args.value(ticket.getStatus().name());
+						args.value(ticket.getVersion() != null ? ticket.getVersion().toString() : "");
+					});
+				}
+			)
+			.next()
+			.doFinally(ign -> tickets.forEach(ticket -> this.invalidate(ticket.getId())))
+			.flatMapIterable(outcomes -> {
+				List<BulkResult> results = new ArrayList<>(outcomes.size());
+				for(int i = 0; i < outcomes.size(); i++) {
+					long ticketId = tickets.get(i).getId();
+					String outcome = outcomes.get(i);
+					switch(outcome) {
+						case "UNCHANGED": 
+						case "NOT_FOUND": 
+						case "VERSION_MISMATCH": results.add(new BulkResult(ticketId, BulkResult.Outcome.valueOf(outcome), null));
+							break;
+						default: results.add(new BulkResult(ticketId, BulkResult.Outcome.UPDATED, Long.parseLong(outcome)));
 					}
-					ticket.setStatus(status);
-					return Mono.when(
-						operations.set().xx().build(String.format(REDIS_KEY_TICKET, ticket.getId()), this.mapper.writeValueAsString(ticket)),
-						operations.smove(String.format(REDIS_KEY_TICKET_STATUS, oldStatus), String.format(REDIS_KEY_TICKET_STATUS, status), Long.toString(ticket.getId()))
-					).thenReturn(ticket);
-				} 
-				catch (JsonProcessingException ex) {
-					throw new UncheckedIOException(ex);
 				}
-			})
-		));
+				return results;
+			});
 	}
 	
 	public Flux<Ticket> listTickets() {
@@ -147,93 +756,380 @@ public class TicketService {
 	}
 	
 	public Flux<Ticket> listTickets(List<Ticket.Status> statuses) {
-		if(statuses == null || statuses.isEmpty()) {
+		return this.listTickets(statuses, 0, -1);
+	}
+	
+	public Flux<Ticket> listTickets(List<Ticket.Status> statuses, long afterTicketId, int limit) {
+		return this.listTickets(statuses, afterTicketId, limit, false);
+	}
+	
+	public Flux<Ticket> listTickets(List<Ticket.Status> statuses, long afterTicketId, int limit, boolean summary) {
+		if(statuses == null || statuses.isEmpty() || limit == 0) {
 			return Flux.empty();
 		}
-		return Flux.from(this.redisClient.connection(operations -> operations
-			.sunion(keys -> statuses.forEach(status -> keys.key(String.format(REDIS_KEY_TICKET_STATUS, status))))
-			.collectList()
-			.filter(ticketIds -> !ticketIds.isEmpty())
-			.flatMapMany(ticketIds -> operations.mget(keys -> ticketIds.forEach(ticketId -> keys.key(String.format(REDIS_KEY_TICKET, Long.parseLong(ticketId))))))
-			.mapNotNull(opt -> opt
-				.getValue()
-				.map(result -> {
-					try {
-						return this.mapper.readValue(result, Ticket.class);
-					} 
-					catch (JsonProcessingException ex) {
-						throw new UncheckedIOException(ex);
-					}
-				})
-				.orElse(null)
+		// Tickets are streamed in id order in fixed size chunks whatever the limit
+		Set<Ticket.Status> statusSet = EnumSet.copyOf(statuses);
+		List<String> fields = summary ? TicketHashCodec.SUMMARY_FIELDS : TicketHashCodec.FIELDS;
+		Flux<Ticket> tickets;
+		if(statusSet.size() == Ticket.Status.values().length) {
+			// All tickets are listed by walking the id sequence
+			tickets = this.redisClient
+				.get(REDIS_KEY_TICKET_SEQ)
+				.map(lastTicketId -> Long.parseLong(lastTicketId))
+				.flatMapMany(lastTicketId -> Flux.fromStream(LongStream.iterate(afterTicketId + 1, chunkStart -> chunkStart <= lastTicketId, chunkStart -> chunkStart + LIST_TICKETS_CHUNK_SIZE).boxed())
+					.concatMap(chunkStart -> this.getTickets(LongStream.rangeClosed(chunkStart, Math.min(chunkStart + LIST_TICKETS_CHUNK_SIZE - 1, lastTicketId)).boxed().collect(Collectors.toList()), fields))
+				);
+		}
+		else {
+			// Tickets with specific statuses are paged from the status sorted sets scored by id, the last id of a page is the cursor of the next page
+			int pageSize = limit > 0 ? Math.min(limit, LIST_TICKETS_CHUNK_SIZE) : LIST_TICKETS_CHUNK_SIZE;
+			tickets = this.pageTicketIds(statusSet, afterTicketId, pageSize)
+				.expand(ticketIds -> ticketIds.size() < pageSize ? Mono.empty() : this.pageTicketIds(statusSet, ticketIds.get(ticketIds.size() - 1), pageSize))
+				.concatMap(ticketIds -> this.getTickets(ticketIds, fields));
+		}
+		// The status of a ticket might have changed since it was paged
+		tickets = tickets.filter(ticket -> statusSet.contains(ticket.getStatus()));
+		
+		return limit > 0 ? tickets.take(limit) : tickets;
+	}
+	
+	private Mono<List<Long>> pageTicketIds(Set<Ticket.Status> statuses, long afterTicketId, int count) {
+		return SCRIPT_PAGE_TICKETS_BY_ID
+			.<List<String>>eval(
+				this.redisClient, 
+				RedisScriptingReactiveOperations.ScriptOutput.MULTI, 
+				keys -> statuses.forEach(status -> keys.key(String.format(REDIS_KEY_TICKET_STATUS_IDS, status))),
+				args -> {
+					args.value(Long.toString(afterTicketId));
+					args.value(Integer.toString(count));
+				}
 			)
-		));
+			.next()
+			.map(ticketIds -> ticketIds.stream().map(Long::parseLong).collect(Collectors.toList()));
 	}
 	
-	public Mono<Ticket> getTicket(long ticketId) {
-		return this.redisClient
-			.get(String.format(REDIS_KEY_TICKET, ticketId))
+	public Flux<Ticket> listTicketsByCreationDateTime(List<Ticket.Status> statuses, ZonedDateTime from, ZonedDateTime to, int limit, boolean reverse) {
+		return this.listTicketsByCreationDateTime(statuses, from, to, limit, reverse, false);
+	}
+	
+	public Flux<Ticket> listTicketsByCreationDateTime(List<Ticket.Status> statuses, ZonedDateTime from, ZonedDateTime to, int limit, boolean reverse, boolean summary) {
+		if(statuses == null || statuses.isEmpty() || limit == 0) {
+			return Flux.empty();
+		}
+		// Ticket ids are ranged in fixed size chunks whatever the limit, the creation date time and id of the last ticket of a chunk is the cursor of the next chunk
+		Set<Ticket.Status> statusSet = EnumSet.copyOf(statuses);
+		List<String> fields = summary ? TicketHashCodec.SUMMARY_FIELDS : TicketHashCodec.FIELDS;
+		String min = from != null ? Long.toString(from.toInstant().toEpochMilli()) : "-inf";
+		String max = to != null ? Long.toString(to.toInstant().toEpochMilli()) : "+inf";
+		int chunkSize = limit > 0 ? Math.min(limit, LIST_TICKETS_CHUNK_SIZE) : LIST_TICKETS_CHUNK_SIZE;
+		Flux<Ticket> tickets = this.rangeTicketIds(statusSet, min, max, chunkSize, reverse, null)
+			.expand(entries -> entries.size() < 2 * chunkSize ? Mono.empty() : this.rangeTicketIds(statusSet, min, max, chunkSize, reverse, entries.subList(entries.size() - 2, entries.size())))
+			.concatMap(entries -> this.getTickets(IntStream.range(0, entries.size() / 2).mapToObj(i -> Long.parseLong(entries.get(2 * i))).collect(Collectors.toList()), fields));
+		
+		return limit > 0 ? tickets.take(limit) : tickets;
+	}
+	
+	private Mono<List<String>> rangeTicketIds(Set<Ticket.Status> statuses, String min, String max, int count, boolean reverse, List<String> cursor) {
+		return SCRIPT_RANGE_TICKETS_BY_CREATION
+			.<List<String>>eval(
+				this.redisClient, 
+				RedisScriptingReactiveOperations.ScriptOutput.MULTI, 
+				keys -> statuses.forEach(status -> keys.key(String.format(REDIS_KEY_TICKET_STATUS, status))),
+				args -> {
+					args.value(min);
+					args.value(max);
+					args.value(Integer.toString(count));
+					args.value(reverse ? "1" : "0");
+					args.value(cursor != null ? cursor.get(1) : "");
+					args.value(cursor != null ? cursor.get(0) : "");
+				}
+			)
+			.next();
+	}
+	
+	public Mono<Map<Ticket.Status, Long>> countTickets() {
+		return SCRIPT_COUNT_TICKETS
+			.<List<Long>>eval(
+				this.redisClient, 
+				RedisScriptingReactiveOperations.ScriptOutput.MULTI, 
+				keys -> {
+					for(Ticket.Status status : Ticket.Status.values()) {
+						keys.key(String.format(REDIS_KEY_TICKET_STATUS, status));
+					}
+				}
+			)
+			.next()
 			.map(result -> {
-				try {
-					return this.mapper.readValue(result, Ticket.class);
-				} 
-				catch (JsonProcessingException ex) {
-					throw new UncheckedIOException(ex);
+				Map<Ticket.Status, Long> counts = new EnumMap<>(Ticket.Status.class);
+				for(Ticket.Status status : Ticket.Status.values()) {
+					counts.put(status, result.get(status.ordinal()));
 				}
+				return counts;
 			});
 	}
 	
+	public Mono<Ticket> getTicket(long ticketId) {
+		// concurrent reads of the same ticket share one round trip, the shared ticket is copied for each caller
+		return this.ticketFlights.execute(ticketId, () -> this.getTickets(List.of(ticketId)).next())
+			.map(TicketCache::copy);
+	}
+	
 	public Flux<Ticket> getTickets(List<Long> ticketIds) {
+		return this.getTickets(ticketIds, TicketHashCodec.FIELDS);
+	}
+	
+	public Flux<Ticket> getTicketSummaries(List<Long> ticketIds) {
+		return this.getTickets(ticketIds, TicketHashCodec.SUMMARY_FIELDS);
+	}
+	
+	private Flux<Ticket> getTickets(List<Long> ticketIds, List<String> fields) {
 		if(ticketIds == null || ticketIds.isEmpty()) {
 			return Flux.empty();
 		}
-		return this.redisClient
-			.mget(keys -> ticketIds.forEach(ticketId -> keys.key(String.format(REDIS_KEY_TICKET, ticketId))))
-			.mapNotNull(opt -> opt
-				.getValue()
-				.map(result -> {
-					try {
-						return this.mapper.readValue(result, Ticket.class);
-					} 
-					catch (JsonProcessingException ex) {
-						throw new UncheckedIOException(ex);
+		if(this.ticketCache == null || !this.ticketCache.isEnabled()) {
+			return this.fetchTickets(ticketIds, fields);
+		}
+		return Flux.defer(() -> {
+			// Cached tickets are complete, only missing tickets are fetched and only complete tickets are cached
+			boolean summary = !fields.contains(TicketHashCodec.FIELD_DESCRIPTION);
+			Map<Long, Ticket> tickets = new HashMap<>();
+			List<Long> missingTicketIds = new ArrayList<>();
+			for(Long ticketId : ticketIds) {
+				Ticket ticket = this.ticketCache.get(ticketId);
+				if(ticket != null) {
+					if(summary) {
+						ticket.setDescription(null);
+					}
+					tickets.put(ticketId, ticket);
+				}
+				else {
+					missingTicketIds.add(ticketId);
+				}
+			}
+			if(missingTicketIds.isEmpty()) {
+				return Flux.fromIterable(ticketIds).mapNotNull(tickets::get);
+			}
+			Map<Long, Long> cacheMarks = new HashMap<>();
+			for(Long ticketId : missingTicketIds) {
+				cacheMarks.put(ticketId, this.ticketCache.mark(ticketId));
+			}
+			return this.fetchTickets(missingTicketIds, fields)
+				.doOnNext(ticket -> {
+					if(!summary) {
+						this.ticketCache.put(ticket, cacheMarks.get(ticket.getId()));
 					}
 				})
-				.orElse(null)
-			);
+				.collectMap(Ticket::getId)
+				.flatMapIterable(fetchedTickets -> {
+					tickets.putAll(fetchedTickets);
+					return ticketIds.stream().map(tickets::get).filter(Objects::nonNull).collect(Collectors.toList());
+				});
+		});
+	}
+	
+	private Flux<Ticket> fetchTickets(List<Long> ticketIds, List<String> fields) {
+		if(this.readConnection != null && this.readConnection.isEnabled()) {
+			// Tickets are read with one HMGET per ticket pipelined on the read connection
+			RedisReactiveCommands<String, String> commands = this.readConnection.reactive();
+			String[] fieldsArray = fields.toArray(String[]::new);
+			return Flux.fromIterable(ticketIds)
+				.flatMapSequential(ticketId -> this.readConnection.read(commands.hmget(String.format(REDIS_KEY_TICKET, ticketId), fieldsArray)).collectList())
+				.mapNotNull(values -> TicketHashCodec.decode(fields, values.stream().map(value -> value.getValueOrElse(null)).collect(Collectors.toList())));
+		}
+		return SCRIPT_GET_TICKETS
+			.<List<List<String>>>eval(
+				this.redisClient, 
+				RedisScriptingReactiveOperations.ScriptOutput.MULTI, 
+				keys -> ticketIds.forEach(ticketId -> keys.key(String.format(REDIS_KEY_TICKET, ticketId))),
+				args -> fields.forEach(args::value)
+			)
+			.flatMapIterable(tickets -> tickets)
+			.mapNotNull(values -> TicketHashCodec.decode(fields, values));
 	}
 	
 	public Mono<Ticket> removeTicket(long ticketId) {
-		// TODO tickets are not removed from plan's ticket set
-		String ticketKey = String.format(REDIS_KEY_TICKET, ticketId);
+		return this.getTicket(ticketId)
+			.flatMap(ticket -> {
+				// The ticket is unindexed first since notes indexes are required to unindex notes
+				// The ticket is removed from its plans using the plans of the ticket in the same script
+				return this.searchService.unindexTicket(ticketId)
+					.then(SCRIPT_REMOVE_TICKET
+						.<Long>eval(
+							this.redisClient, 
+							RedisScriptingReactiveOperations.ScriptOutput.INTEGER, 
+							keys -> {
+								keys.key(String.format(REDIS_KEY_TICKET, ticketId));
+								keys.key(String.format(NoteService.REDIS_KEY_TICKET_NOTES, ticketId));
+								keys.key(String.format(NoteService.REDIS_KEY_TICKET_NOTES_INDEX, ticketId));
+								keys.key(String.format(NoteService.REDIS_KEY_TICKET_NOTES_SEQ, ticketId));
+								keys.key(String.format(PlanService.REDIS_KEY_TICKET_PLANS, ticketId));
+							},
+							args -> args.value(Long.toString(ticketId))
+						)
+						.next()
+					)
+					.doFinally(ign -> this.invalidate(ticketId))
+					.filter(removed -> removed == 1)
+					.map(removed -> ticket);
+			});
+	}
+	
+	public Mono<Long> migrateTicketsToHash() {
+		// Tickets stored as strings are converted chunk by chunk, MGET returns nil for tickets already stored in hashes
 		return this.redisClient
-			.exists(ticketKey)
-			.flatMap(count -> {
-				if(count == 0) {
-					return Mono.empty();
-				}
-				String sTicketId = Long.toString(ticketId);
-				return this.redisClient
-					.multi(operations -> Flux.just(
-						operations.srem(String.format(REDIS_KEY_TICKET_OPEN, ticketId), sTicketId),
-						operations.srem(String.format(REDIS_KEY_TICKET_STUDIED, ticketId), sTicketId),
-						operations.srem(String.format(REDIS_KEY_TICKET_IN_PROGRESS, ticketId), sTicketId),
-						operations.srem(String.format(REDIS_KEY_TICKET_DONE, ticketId), sTicketId),
-						operations.srem(String.format(REDIS_KEY_TICKET_REJECTED, ticketId), sTicketId),
-						operations.del(String.format(NoteService.REDIS_KEY_TICKET_NOTES, ticketId)),
-						operations.getdel(String.format(REDIS_KEY_TICKET, ticketId))
+			.get(REDIS_KEY_TICKET_SEQ)
+			.map(lastTicketId -> Long.parseLong(lastTicketId))
+			.flatMapMany(lastTicketId -> Flux.fromStream(LongStream.iterate(1, chunkStart -> chunkStart <= lastTicketId, chunkStart -> chunkStart + LIST_TICKETS_CHUNK_SIZE).boxed())
+				.concatMap(chunkStart -> this.redisClient
+					.mget(keys -> LongStream.rangeClosed(chunkStart, Math.min(chunkStart + LIST_TICKETS_CHUNK_SIZE - 1, lastTicketId)).forEach(ticketId -> keys.key(String.format(REDIS_KEY_TICKET, ticketId))))
+					.mapNotNull(opt -> opt.getValue().orElse(null))
+					.collectList()
+					.filter(values -> !values.isEmpty())
+					.flatMapMany(values -> this.redisClient
+						.<Long>batch(operations -> Flux.fromIterable(values)
+							.map(value -> {
+								Ticket ticket = this.codec.decode(value, Ticket.class);
+								return SCRIPT_MIGRATE_TICKET.<Long>eval(
+									operations, 
+									RedisScriptingReactiveOperations.ScriptOutput.INTEGER, 
+									keys -> keys.key(String.format(REDIS_KEY_TICKET, ticket.getId())),
+									args -> {
+										args.value(value);
+										TicketHashCodec.encode(ticket).forEach((field, fieldValue) -> {
+											args.value(field);
+											args.value(fieldValue);
+										});
+									}
+								);
+							})
+						)
+					)
+				)
+			)
+			.reduce(0l, Long::sum);
+	}
+	
+	public Mono<Long> indexTicketStatuses() {
+		// Status indexes are rebuilt from the tickets themselves then swapped atomically, this should only be used to migrate existing data
+		return this.listTickets()
+			.buffer(LIST_TICKETS_CHUNK_SIZE)
+			.concatMap(tickets -> this.redisClient
+				.<Long>batch(operations -> Flux.fromIterable(tickets)
+					.concatMap(ticket -> Flux.just(
+						operations.zadd(String.format(REDIS_KEY_TICKET_STATUS_REINDEX, ticket.getStatus()), creationScore(ticket), Long.toString(ticket.getId())),
+						operations.zadd(String.format(REDIS_KEY_TICKET_STATUS_IDS_REINDEX, ticket.getStatus()), ticket.getId(), Long.toString(ticket.getId()))
 					))
-					.map(transactionResult -> {
-						if(transactionResult.wasDiscarded()) {
-							throw new TicketException("Error while removing ticket: transaction was discarded");
+				)
+				.then(Mono.just((long)tickets.size()))
+			)
+			.reduce(0l, Long::sum)
+			.flatMap(count -> SCRIPT_SWAP_STATUS_INDEXES
+				.<Long>eval(
+					this.redisClient, 
+					RedisScriptingReactiveOperations.ScriptOutput.INTEGER, 
+					keys -> {
+						for(Ticket.Status status : Ticket.Status.values()) {
+							keys.key(String.format(REDIS_KEY_TICKET_STATUS, status));
+							keys.key(String.format(REDIS_KEY_TICKET_STATUS_IDS, status));
 						}
-						try {
-							return this.mapper.readValue(transactionResult.<String>get(6), Ticket.class);
+						for(Ticket.Status status : Ticket.Status.values()) {
+							keys.key(String.format(REDIS_KEY_TICKET_STATUS_REINDEX, status));
+							keys.key(String.format(REDIS_KEY_TICKET_STATUS_IDS_REINDEX, status));
 						}
-						catch (IOException ex) {
-							throw new UncheckedIOException(ex);
+					}
+				)
+				.then(Mono.just(count))
+			);
+	}
+	
+	public Mono<Tuple3<Long, Long, Long>> checkTicketIndexes(boolean repair) {
+		// Tickets are scanned and checked against status indexes chunk by chunk, status indexes are then walked to find tickets which do not exist anymore
+		String sRepair = repair ? "1" : "0";
+		Mono<Tuple2<Long, Long>> checkTickets = Flux.from(this.redisClient.connection(operations -> operations
+				.scan()
+				.pattern(REDIS_KEY_TICKET_PATTERN)
+				.build("0")
+				.expand(result -> {
+					if(result.isFinished()) {
+						return Mono.empty();
+					}
+					return operations.scan()
+						.pattern(REDIS_KEY_TICKET_PATTERN)
+						.build(result.getCursor());
+				})
+				.flatMapIterable(result -> result.getKeys())
+				.filter(key -> key.matches(REDIS_KEY_TICKET_REGEX))
+				.buffer(CHECK_CHUNK_SIZE)
+				.concatMap(ticketKeys -> SCRIPT_CHECK_TICKETS
+					.<Long>eval(
+						operations, 
+						RedisScriptingReactiveOperations.ScriptOutput.INTEGER, 
+						keys -> {
+							for(Ticket.Status status : Ticket.Status.values()) {
+								keys.key(String.format(REDIS_KEY_TICKET_STATUS, status));
+							}
+							ticketKeys.forEach(keys::key);
+						},
+						args -> {
+							args.value(sRepair);
+							ticketKeys.forEach(ticketKey -> args.value(ticketKey.substring(ticketKey.lastIndexOf(':') + 1)));
 						}
-					});
-			});
+					)
+					.map(misindexed -> Tuples.of((long)ticketKeys.size(), misindexed))
+				)
+			))
+			.reduce(Tuples.of(0l, 0l), (total, chunk) -> Tuples.of(total.getT1() + chunk.getT1(), total.getT2() + chunk.getT2()));
+		
+		Mono<Long> checkStatusIndexes = Flux.fromArray(Ticket.Status.values())
+			.concatMap(status -> Mono.just(List.<Object>of(0l, 0l))
+				.expand(result -> {
+					long start = (Long)result.get(0);
+					if(start < 0) {
+						return Mono.empty();
+					}
+					return SCRIPT_CHECK_STATUS_INDEX
+						.<List<Object>>eval(
+							this.redisClient, 
+							RedisScriptingReactiveOperations.ScriptOutput.MULTI, 
+							keys -> keys.key(String.format(REDIS_KEY_TICKET_STATUS, status)),
+							args -> {
+								args.value(sRepair);
+								args.value(Long.toString(start));
+								args.value(Integer.toString(CHECK_CHUNK_SIZE));
+							}
+						)
+						.next();
+				})
+				.map(result -> (Long)result.get(1))
+			)
+			.reduce(0l, Long::sum);
+		
+		return checkTickets.flatMap(tickets -> checkStatusIndexes.map(orphans -> Tuples.of(tickets.getT1(), tickets.getT2(), orphans)));
+	}
+	
+	private static void statusKeys(Keys<String> keys, Ticket.Status status) {
+		// The target status sorted set comes first followed by the ones the ticket must be removed from
+		keys.key(String.format(REDIS_KEY_TICKET_STATUS, status));
+		for(Ticket.Status otherStatus : Ticket.Status.values()) {
+			if(otherStatus != status) {
+				keys.key(String.format(REDIS_KEY_TICKET_STATUS, otherStatus));
+			}
+		}
+	}
+	
+	private void invalidate(long ticketId) {
+		this.ticketFlights.forget(ticketId);
+		// Other instances are notified through keyspace notifications
+		if(this.ticketCache != null) {
+			this.ticketCache.invalidate(ticketId);
+		}
+	}
+	
+	private static boolean isVersionMismatch(Throwable error) {
+		return error.getMessage() != null && error.getMessage().contains("VERSION_MISMATCH");
+	}
+	
+	private static double creationScore(Ticket ticket) {
+		return ticket.getCreationDateTime() != null ? ticket.getCreationDateTime().toInstant().toEpochMilli() : 0;
 	}
 }
@@ -19,6 +19,8 @@ import SplitPanel from './split-panel.js'
 const API_BASE_URL = '/api/v1';
 const API_PLAN_URL = API_BASE_URL + '/plan';
 const API_TICKET_URL = API_BASE_URL + '/ticket';
+const API_EVENT_URL = API_BASE_URL + '/event';
+const NOTES_PAGE_SIZE = 50;
 
 const TicketApp = {
 	setup() {
@@ -76,6 +78,7 @@ const TicketApp = {
 		const ticketListSize = Vue.ref(20);
 		
 		const filteredTicketStatuses = Vue.ref(new Set([]));
+		const planStatusCounts = Vue.ref({});
 		
 		const createPlan = (plan) => {
 			fetch(API_PLAN_URL, {
@@ -111,10 +114,11 @@ const TicketApp = {
 		};
 		
 		const selectPlan = (id, statuses) => {
-			let path = API_PLAN_URL + '/' + id;
+			// Plan tickets are listed without descriptions, the full ticket is fetched when selected
+			let path = API_PLAN_URL + '/' + id + '?view=summary';
 			if(statuses && statuses.length > 0) {
 				filteredTicketStatuses.value = new Set(statuses);
-				path += '?statuses=' + statuses.join(",");
+				path += '&statuses=' + statuses.join(",");
 			}
 			else {
 				filteredTicketStatuses.value = new Set(["OPEN", "STUDIED", "IN_PROGRESS", "DONE", "REJECTED"]);
@@ -135,6 +139,8 @@ const TicketApp = {
 			})
 			.then(json => {
 				selectedPlan.value = json;
+				watchPlanEvents(json.id);
+				refreshPlanStatusCounts();
 				if(json.tickets.length > 0) {
 					selectTicket(json.tickets[0]);
 				}
@@ -154,6 +160,88 @@ const TicketApp = {
 			});
 		};
 		
+		let planEvents = null;
+		let refreshPlanTimeout = null;
+		
+		const watchPlanEvents = (id) => {
+			// Changes made to the selected plan and its tickets, by this or any other client, are received as server-sent events
+			if(planEvents) {
+				if(planEvents.planId === id) {
+					return;
+				}
+				planEvents.close();
+			}
+			planEvents = new EventSource(API_EVENT_URL + '?planId=' + id);
+			planEvents.planId = id;
+			for(let type of ["PLAN_UPDATED", "PLAN_DELETED", "PLAN_TICKET_MOVED", "PLAN_TICKET_REMOVED", "TICKET_UPDATED", "TICKET_STATUS_CHANGED", "TICKET_DELETED"]) {
+				planEvents.addEventListener(type, evt => onPlanEvent(JSON.parse(evt.data)));
+			}
+		};
+		
+		const onPlanEvent = (event) => {
+			if(event.ticketId && selectedTicket.value && selectedTicket.value.id === event.ticketId && event.version && event.version > selectedTicket.value.version) {
+				refreshSelectedTicket();
+			}
+			// Events usually come in bursts, the plan is refreshed once
+			clearTimeout(refreshPlanTimeout);
+			refreshPlanTimeout = setTimeout(refreshPlan, 200);
+		};
+		
+		const refreshPlan = () => {
+			if(!selectedPlan.value) {
+				return;
+			}
+			let path = API_PLAN_URL + '/' + selectedPlan.value.id + '?view=summary&statuses=' + Array.from(filteredTicketStatuses.value).join(",");
+			fetch(path, {
+				method: 'get',
+				headers: {
+					'accept':'application/json'
+				}
+			})
+			.then(res => res.ok ? res.json() : null)
+			.then(json => {
+				if(json && selectedPlan.value && selectedPlan.value.id === json.id) {
+					Object.assign(selectedPlan.value, json);
+				}
+			});
+			refreshPlanStatusCounts();
+		};
+		
+		const refreshPlanStatusCounts = () => {
+			// Status counters are maintained server side, tickets don't need to be listed
+			fetch(API_PLAN_URL + '/_count', {
+				method: 'get',
+				headers: {
+					'accept':'application/json'
+				}
+			})
+			.then(res => res.ok ? res.json() : [])
+			.then(json => {
+				const counts = {};
+				for(let planCounts of json) {
+					counts[planCounts.planId] = planCounts.counts;
+				}
+				planStatusCounts.value = counts;
+			});
+		};
+		
+		const refreshSelectedTicket = () => {
+			const ticket = selectedTicket.value;
+			fetch(API_TICKET_URL + '/' + ticket.id, {
+				method: 'get',
+				headers: {
+					'accept':'application/json'
+				}
+			})
+			.then(res => res.ok ? res.json() : null)
+			.then(json => {
+				if(json && selectedTicket.value === ticket) {
+					delete json.notes;
+					Object.assign(ticket, json);
+				}
+			});
+		};
+		
 		const updatePlan = (plan) => {
 			fetch(API_PLAN_URL + '/' + plan.id, {
 				method: 'put',
@@ -352,7 +440,7 @@ const TicketApp = {
 		const selectTicket = (ticket) => {
 			selectedTicket.value = ticket;
 			selectedTicketNote.value = null;
-			fetch(API_TICKET_URL + '/' + ticket.id + '/note', {
+			fetch(API_TICKET_URL + '/' + ticket.id, {
 				method: 'get',
 				headers: {
 					'accept':'application/json'
@@ -366,6 +454,37 @@ const TicketApp = {
 				}
 				return res.json();
 			})
+			.then(json => {
+				if(selectedTicket.value !== null && selectedTicket.value.id === json.id) {
+					Object.assign(selectedTicket.value, json);
+				}
+			})
+			.catch(err => {
+				if (err.json) {
+					return err.json.then(json => {
+						alert(json.error + '(' + json.status + '): ' + json.message);
+					});
+				} 
+				else {
+					alert(err.message);
+				}
+			});
+			// Only the latest notes are loaded, earlier notes are loaded on demand
+			fetch(API_TICKET_URL + '/' + ticket.id + '/note?offset=-' + NOTES_PAGE_SIZE, {
+				method: 'get',
+				headers: {
+					'accept':'application/json'
+				}
+			})
+			.then(res => {
+				if (!res.ok) {
+					const error = new Error(res.statusText);
+					error.json = res.json();
+					throw error;
+				}
+				selectedTicket.value.notesCount = Number(res.headers.get('x-total-count'));
+				return res.json();
+			})
 			.then(json => {
 				selectedTicket.value.notes = json;
 				if(json.length > 0) {
@@ -384,6 +503,37 @@ const TicketApp = {
 			});
 		};
 		
+		const loadEarlierTicketNotes = (ticket) => {
+			fetch(API_TICKET_URL + '/' + ticket.id + '/note?offset=-' + (ticket.notes.length + NOTES_PAGE_SIZE) + '&limit=' + NOTES_PAGE_SIZE, {
+				method: 'get',
+				headers: {
+					'accept':'application/json'
+				}
+			})
+			.then(res => {
+				if (!res.ok) {
+					const error = new Error(res.statusText);
+					error.json = res.json();
+					throw error;
+				}
+				ticket.notesCount = Number(res.headers.get('x-total-count'));
+				return res.json();
+			})
+			.then(json => {
+				ticket.notes.unshift(...json.filter(note => !ticket.notes.some(n => n.index === note.index)));
+			})
+			.catch(err => {
+				if (err.json) {
+					return err.json.then(json => {
+						alert(json.error + '(' + json.status + '): ' + json.message);
+					});
+				} 
+				else {
+					alert(err.message);
+				}
+			});
+		};
+		
 		const updateTicket = (ticket) => {
 			fetch(API_TICKET_URL + '/' + ticket.id, {
 				method: 'put',
@@ -472,6 +622,7 @@ const TicketApp = {
 			})
 			.then(json => {
 				selectedTicket.value.notes.push(json);
+				selectedTicket.value.notesCount++;
 				selectTicketNote(json);
 			})
 			.catch(err => {
@@ -539,12 +690,18 @@ const TicketApp = {
 					return res.json();
 				})
 				.then(json => {
-					selectedTicket.value.notes.splice(note.index, 1);
+					// Note indexes are stable ids, the note position in the list must be resolved
+					const position = selectedTicket.value.notes.findIndex(n => n.index === note.index);
+					if(position === -1) {
+						return;
+					}
+					selectedTicket.value.notes.splice(position, 1);
+					selectedTicket.value.notesCount--;
 					if(selectedTicket.value.notes.length === 0) {
 						selectedTicketNote.value = null;
 					}
 					else if(selectedTicketNote.value.index === note.index) {
-						selectTicketNote(selectedTicket.value.notes[Math.min(note.index, selectedTicket.value.notes.length - 1)]);
+						selectTicketNote(selectedTicket.value.notes[Math.min(position, selectedTicket.value.notes.length - 1)]);
 					}
 				})
 				.catch(err => {
@@ -647,6 +804,7 @@ const TicketApp = {
 			createPlanDescription,
 			ticketListSize,
 			filteredTicketStatuses,
+			planStatusCounts,
 			createPlan,
 			selectPlan,
 			updatePlan,
@@ -675,6 +833,7 @@ const TicketApp = {
 			updateTicketNote,
 			selectTicketNote,
 			deleteTicketNote,
+			loadEarlierTicketNotes,
 			onCreatePlan,
 			onSubmitCreatePlan,
 			onAddTicketToPlan,
@@ -697,7 +856,7 @@ const TicketApp = {
 			return '';
 		},
 		renderedDescriptionTicket() {
-			if(this.selectedPlan !== null && this.selectedTicket.description !== null) {
+			if(this.selectedTicket !== null && this.selectedTicket.description != null) {
 				let renderedNode = document.createElement('DIV');
 				renderedNode.innerHTML = marked.parse(this.selectedTicket.description);
 				renderedNode.querySelectorAll('pre code').forEach((block) => {
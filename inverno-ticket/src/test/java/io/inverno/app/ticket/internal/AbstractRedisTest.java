@@ -0,0 +1,89 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.inverno.app.ticket.internal.codec.JsonValueCodec;
+import io.inverno.app.ticket.internal.codec.ValueCodec;
+import io.inverno.mod.redis.lettuce.PoolRedisClient;
+import io.lettuce.core.RedisConnectionException;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.support.AsyncConnectionPoolSupport;
+import io.lettuce.core.support.BoundedAsyncPool;
+import io.lettuce.core.support.BoundedPoolConfig;
+
+/**
+ * <p>
+ * Base class for service tests running against the test Redis database, tests must flush the database once done.
+ * </p>
+ *
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+public abstract class AbstractRedisTest {
+	
+	static {
+		System.setProperty("org.apache.logging.log4j.simplelog.level", "INFO");
+		System.setProperty("org.apache.logging.log4j.simplelog.logFile", "system.out");
+	}
+
+	protected static final ObjectMapper MAPPER;
+	
+	static {
+		MAPPER = new ObjectMapper();
+		MAPPER.registerModule(new JavaTimeModule());
+		MAPPER.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+	}
+	
+	protected static final ValueCodec CODEC = new JsonValueCodec(MAPPER);
+	
+	protected static final io.lettuce.core.RedisClient REDIS_CLIENT = io.lettuce.core.RedisClient.create();
+	
+	protected static PoolRedisClient<String, String, StatefulRedisConnection<String, String>> createClient() {
+		
+		BoundedAsyncPool<StatefulRedisConnection<String, String>> pool = AsyncConnectionPoolSupport.createBoundedObjectPool(
+			() -> REDIS_CLIENT.connectAsync(StringCodec.UTF8, RedisURI.create("redis://localhost:6379")), 
+			BoundedPoolConfig.create()
+		);
+		return new PoolRedisClient<>(pool, String.class, String.class);
+	}
+	
+	protected static void flushAll() {
+		REDIS_CLIENT.connect(RedisURI.create("redis://localhost:6379")).reactive().flushall().block();
+	}
+	
+	protected static long commandCalls(StatefulRedisConnection<String, String> connection, String command) {
+		// cmdstat_<command>:calls=<calls>,usec=<usec>,...
+		String prefix = "cmdstat_" + command + ":calls=";
+		return connection.sync().info("commandstats").lines()
+			.filter(line -> line.startsWith(prefix))
+			.mapToLong(line -> Long.parseLong(line.substring(prefix.length(), line.indexOf(','))))
+			.findFirst()
+			.orElse(0l);
+	}
+	
+	public static boolean isEnabled() {
+		try (StatefulRedisConnection<String, String> connection = REDIS_CLIENT.connect(RedisURI.create("redis://localhost:6379"))) {
+			return true;
+		}
+		catch (RedisConnectionException e) {
+			return false;
+		}	
+	}
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal;
+
+import io.inverno.app.ticket.internal.exception.EventGroupNotFoundException;
+import io.inverno.app.ticket.internal.model.ChangeEvent;
+import io.inverno.app.ticket.internal.model.Note;
+import io.inverno.app.ticket.internal.model.Plan;
+import io.inverno.app.ticket.internal.model.Ticket;
+import io.inverno.app.ticket.internal.service.EventService;
+import io.inverno.app.ticket.internal.service.NoteService;
+import io.inverno.app.ticket.internal.service.PlanService;
+import io.inverno.app.ticket.internal.service.SearchService;
+import io.inverno.app.ticket.internal.service.TicketService;
+import io.inverno.mod.redis.RedisTransactionalClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+
+/**
+ *
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+@EnabledIf( value = "isEnabled", disabledReason = "Failed to connect to test Redis database" )
+public class EventServiceTest extends AbstractRedisTest {
+	
+	/**
+	 * Test of listTicketHistory method, of class EventService.
+	 */
+	@Test
+	public void testTicketHistory() throws InterruptedException {
+		RedisTransactionalClient<String, String> client = createClient();
+		EventService eventService = new EventService(client, MAPPER);
+		SearchService searchService = new SearchService(client);
+		TicketService ticketService = new TicketService(client, CODEC, searchService);
+		NoteService noteService = new NoteService(client, CODEC, searchService);
+		PlanService planService = new PlanService(client, CODEC, ticketService);
+		try (StatefulRedisPubSubConnection<String, String> connection = REDIS_CLIENT.connectPubSub(RedisURI.create("redis://localhost:6379"))) {
+			BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+			connection.addListener(new RedisPubSubAdapter<>() {
+				
+				@Override
+				public void message(String channel, String message) {
+					messages.add(message);
+				}
+			});
+			connection.sync().subscribe(EventService.REDIS_CHANNEL_EVENTS);
+			
+			ticketService.saveTicket(new Ticket(null, Ticket.Type.FEATURE, Ticket.Status.OPEN, "ticket 1", "Summary 1", "Description 1", null)).block();
+			ticketService.saveTicket(new Ticket(null, Ticket.Type.FEATURE, Ticket.Status.OPEN, "ticket 2", "Summary 2", "Description 2", null)).block();
+			ticketService.updateTicketStatus(1l, Ticket.Status.IN_PROGRESS).block();
+			noteService.saveTicketNote(new Note(1l, null, "Note 1", "Content 1")).block();
+			
+			List<ChangeEvent> history = eventService.listTicketHistory(1l, null, 10).collectList().block();
+			
+			Assertions.assertEquals(List.of(ChangeEvent.Type.TICKET_CREATED, ChangeEvent.Type.TICKET_STATUS_CHANGED, ChangeEvent.Type.NOTE_CREATED), history.stream().map(ChangeEvent::getType).collect(Collectors.toList()));
+			Assertions.assertEquals(Ticket.Status.IN_PROGRESS, history.get(1).getStatus());
+			Assertions.assertEquals(2l, history.get(1).getVersion());
+			Assertions.assertEquals(1, history.get(2).getNoteIndex());
+			
+			// History is paged by event id
+			List<ChangeEvent> historyPage = eventService.listTicketHistory(1l, history.get(0).getId(), 1).collectList().block();
+			
+			Assertions.assertEquals(1, historyPage.size());
+			Assertions.assertEquals(history.get(1).getId(), historyPage.get(0).getId());
+			Assertions.assertEquals(List.of(), eventService.listTicketHistory(1l, history.get(2).getId(), 10).collectList().block());
+			
+			Assertions.assertEquals(List.of(ChangeEvent.Type.TICKET_CREATED), eventService.listTicketHistory(2l, null, 10).map(ChangeEvent::getType).collectList().block());
+			
+			// Published messages carry the event log entry id
+			ChangeEvent publishedEvent = eventService.decodeMessage(messages.poll(5, TimeUnit.SECONDS));
+			
+			Assertions.assertEquals(ChangeEvent.Type.TICKET_CREATED, publishedEvent.getType());
+			Assertions.assertEquals(1l, publishedEvent.getTicketId());
+			Assertions.assertEquals(history.get(0).getId(), publishedEvent.getId());
+			Assertions.assertEquals(history.get(0).getDateTime().toInstant(), publishedEvent.getDateTime().toInstant());
+			
+			// Plan membership and removal events are recorded by the scripts making the changes
+			planService.savePlan(new Plan(null, "Plan 1", "Summary 1", "Description 1", null, null)).block();
+			planService.addTicket(1l, 2l).block();
+			ticketService.removeTicket(2l).block();
+			
+			List<ChangeEvent> removedHistory = eventService.listTicketHistory(2l, null, 10).collectList().block();
+			
+			Assertions.assertEquals(List.of(ChangeEvent.Type.TICKET_CREATED, ChangeEvent.Type.PLAN_TICKET_MOVED, ChangeEvent.Type.PLAN_TICKET_REMOVED, ChangeEvent.Type.TICKET_DELETED), removedHistory.stream().map(ChangeEvent::getType).collect(Collectors.toList()));
+			Assertions.assertEquals(1l, removedHistory.get(2).getPlanId());
+			Assertions.assertEquals(Ticket.Status.OPEN, removedHistory.get(3).getStatus());
+			Assertions.assertEquals(removedHistory.get(2).getDateTime(), removedHistory.get(3).getDateTime());
+		}
+		finally {
+			client.close().block();
+			flushAll();
+		}
+	}
+	
+	/**
+	 * Test of readEventGroup method, of class EventService.
+	 */
+	@Test
+	public void testEventGroups() {
+		RedisTransactionalClient<String, String> client = createClient();
+		EventService eventService = new EventService(client, MAPPER);
+		TicketService ticketService = new TicketService(client, CODEC, new SearchService(client));
+		try {
+			ticketService.saveTicket(new Ticket(null, Ticket.Type.FEATURE, Ticket.Status.OPEN, "ticket 1", "Summary 1", "Description 1", null)).block();
+			
+			Assertions.assertTrue(eventService.createEventGroup("reporting", true).block());
+			Assertions.assertFalse(eventService.createEventGroup("reporting", true).block());
+			// A group which does not start from the beginning of the log only receives new events
+			Assertions.assertTrue(eventService.createEventGroup("audit", false).block());
+			
+			ticketService.saveTicket(new Ticket(null, Ticket.Type.FEATURE, Ticket.Status.OPEN, "ticket 2", "Summary 2", "Description 2", null)).block();
+			ticketService.updateTicketStatus(1l, Ticket.Status.DONE).block();
+			
+			List<ChangeEvent> events = eventService.readEventGroup("reporting", "worker-1", 2, false).collectList().block();
+			
+			Assertions.assertEquals(2, events.size());
+			Assertions.assertEquals(ChangeEvent.Type.TICKET_CREATED, events.get(0).getType());
+			Assertions.assertEquals(1l, events.get(0).getTicketId());
+			Assertions.assertEquals(ChangeEvent.Type.TICKET_CREATED, events.get(1).getType());
+			Assertions.assertEquals(2l, events.get(1).getTicketId());
+			
+			Assertions.assertEquals(List.of(2l, 1l), eventService.readEventGroup("audit", "worker-1", 10, false).map(ChangeEvent::getTicketId).collectList().block());
+			
+			// Events read but not acknowledged are pending
+			List<ChangeEvent> pendingEvents = eventService.readEventGroup("reporting", "worker-1", 10, true).collectList().block();
+			
+			Assertions.assertEquals(events.stream().map(ChangeEvent::getId).collect(Collectors.toList()), pendingEvents.stream().map(ChangeEvent::getId).collect(Collectors.toList()));
+			
+			Assertions.assertEquals(1l, eventService.acknowledgeEvents("reporting", List.of(events.get(0).getId())).block());
+			Assertions.assertEquals(0l, eventService.acknowledgeEvents("reporting", List.of(events.get(0).getId())).block());
+			
+			pendingEvents = eventService.readEventGroup("reporting", "worker-1", 10, true).collectList().block();
+			
+			Assertions.assertEquals(1, pendingEvents.size());
+			Assertions.assertEquals(events.get(1).getId(), pendingEvents.get(0).getId());
+			
+			// Other consumers of the group only read events not delivered yet
+			List<ChangeEvent> nextEvents = eventService.readEventGroup("reporting", "worker-2", 10, false).collectList().block();
+			
+			Assertions.assertEquals(1, nextEvents.size());
+			Assertions.assertEquals(ChangeEvent.Type.TICKET_STATUS_CHANGED, nextEvents.get(0).getType());
+			Assertions.assertEquals(Ticket.Status.DONE, nextEvents.get(0).getStatus());
+			Assertions.assertEquals(List.of(), eventService.readEventGroup("reporting", "worker-2", 10, false).collectList().block());
+			
+			Assertions.assertEquals(2l, eventService.acknowledgeEvents("reporting", List.of(events.get(1).getId(), nextEvents.get(0).getId())).block());
+			Assertions.assertEquals(List.of(), eventService.readEventGroup("reporting", "worker-1", 10, true).collectList().block());
+			
+			Assertions.assertTrue(eventService.removeEventGroup("reporting").block());
+			Assertions.assertFalse(eventService.removeEventGroup("reporting").block());
+			Assertions.assertThrows(EventGroupNotFoundException.class, () -> eventService.readEventGroup("reporting", "worker-1", 10, false).collectList().block());
+		}
+		finally {
+			client.close().block();
+			flushAll();
+		}
+	}
+}
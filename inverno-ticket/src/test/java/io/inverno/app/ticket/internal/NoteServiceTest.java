@@ -0,0 +1,186 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal;
+
+import io.inverno.app.ticket.internal.model.Note;
+import io.inverno.app.ticket.internal.model.Ticket;
+import io.inverno.app.ticket.internal.service.NoteService;
+import io.inverno.app.ticket.internal.service.SearchService;
+import io.inverno.app.ticket.internal.service.TicketService;
+import io.inverno.mod.redis.RedisTransactionalClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.api.StatefulRedisConnection;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import reactor.util.function.Tuple2;
+
+/**
+ *
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+@EnabledIf( value = "isEnabled", disabledReason = "Failed to connect to test Redis database" )
+public class NoteServiceTest extends AbstractRedisTest {
+	
+	/**
+	 * Test of migrateTicketNotesToHash method, of class NoteService.
+	 */
+	@Test
+	public void testTicketNoteIndexes() {
+		RedisTransactionalClient<String, String> client = createClient();
+		SearchService searchService = new SearchService(client);
+		TicketService ticketService = new TicketService(client, CODEC, searchService);
+		NoteService noteService = new NoteService(client, CODEC, searchService);
+		try (StatefulRedisConnection<String, String> connection = REDIS_CLIENT.connect(RedisURI.create("redis://localhost:6379"))) {
+			ticketService.saveTicket(new Ticket(null, Ticket.Type.FEATURE, Ticket.Status.OPEN, "ticket 1", "Summary 1", "Description 1", null)).block();
+			ticketService.saveTicket(new Ticket(null, Ticket.Type.FEATURE, Ticket.Status.OPEN, "ticket 2", "Summary 2", "Description 2", null)).block();
+			
+			// Notes used to be stored in a list addressed by list index, identical notes are allowed
+			String notesKey = String.format(NoteService.REDIS_KEY_TICKET_NOTES, 1l);
+			connection.sync().rpush(notesKey, 
+				CODEC.encode(new Note(1l, null, "Note 1", "Content 1")), 
+				CODEC.encode(new Note(1l, null, "Note 2", "Content 2")), 
+				CODEC.encode(new Note(1l, null, "Note 2", "Content 2"))
+			);
+			
+			Assertions.assertEquals(1l, noteService.migrateTicketNotesToHash().block());
+			Assertions.assertEquals(0l, noteService.migrateTicketNotesToHash().block());
+			
+			// List indexes are preserved
+			List<Note> notes = noteService.listTicketNotes(1l).collectList().block();
+			
+			Assertions.assertEquals(3, notes.size());
+			Assertions.assertEquals(0, notes.get(0).getIndex());
+			Assertions.assertEquals("Note 1", notes.get(0).getTitle());
+			Assertions.assertEquals(1, notes.get(1).getIndex());
+			Assertions.assertEquals("Note 2", notes.get(1).getTitle());
+			Assertions.assertEquals(2, notes.get(2).getIndex());
+			Assertions.assertEquals("Note 2", notes.get(2).getTitle());
+			
+			// Removing a note neither removes identical notes nor shifts the following notes
+			Assertions.assertEquals("Note 2", noteService.removeTicketNote(1l, 1).block().getTitle());
+			Assertions.assertNull(noteService.removeTicketNote(1l, 1).block());
+			Assertions.assertNull(noteService.getTicketNote(1l, 1).block());
+			Assertions.assertEquals("Note 2", noteService.getTicketNote(1l, 2).block().getTitle());
+			
+			// New notes are indexed after the migrated notes
+			Note savedNote = noteService.saveTicketNote(new Note(1l, null, "Note 4", "Content 4")).block();
+			
+			Assertions.assertEquals(3, savedNote.getIndex());
+			Assertions.assertEquals(1l, savedNote.getVersion());
+			
+			Note updatedNote = noteService.saveTicketNote(new Note(1l, 2, "Note 3", "Content 3")).block();
+			
+			// Migrated notes have no version
+			Assertions.assertEquals(2, updatedNote.getIndex());
+			Assertions.assertEquals(1l, updatedNote.getVersion());
+			
+			notes = noteService.listTicketNotes(1l).collectList().block();
+			
+			Assertions.assertEquals(3, notes.size());
+			Assertions.assertEquals(0, notes.get(0).getIndex());
+			Assertions.assertEquals("Note 1", notes.get(0).getTitle());
+			Assertions.assertEquals(2, notes.get(1).getIndex());
+			Assertions.assertEquals("Note 3", notes.get(1).getTitle());
+			Assertions.assertEquals(3, notes.get(2).getIndex());
+			Assertions.assertEquals("Note 4", notes.get(2).getTitle());
+			
+			// Notes of a new ticket are indexed from 1, notes can't be added to a ticket which does not exist
+			Assertions.assertEquals(1, noteService.saveTicketNote(new Note(2l, null, "Note 1", "Content 1")).block().getIndex());
+			Assertions.assertNull(noteService.saveTicketNote(new Note(3l, null, "Note 1", "Content 1")).block());
+		}
+		finally {
+			client.close().block();
+			flushAll();
+		}
+	}
+	
+	/**
+	 * Test of listTicketNotes method, of class NoteService.
+	 */
+	@Test
+	public void testListTicketNotesPages() {
+		RedisTransactionalClient<String, String> client = createClient();
+		SearchService searchService = new SearchService(client);
+		TicketService ticketService = new TicketService(client, CODEC, searchService);
+		NoteService noteService = new NoteService(client, CODEC, searchService);
+		try {
+			ticketService.saveTicket(new Ticket(null, Ticket.Type.FEATURE, Ticket.Status.OPEN, "ticket 1", "Summary 1", "Description 1", null)).block();
+			for(int i = 1; i <= 10; i++) {
+				noteService.saveTicketNote(new Note(1l, null, "Note " + i, "Content " + i)).block();
+			}
+			
+			// The total number of notes is returned with each page
+			Tuple2<Long, List<Note>> page = noteService.listTicketNotes(1l, 0, 4).block();
+			
+			Assertions.assertEquals(10l, page.getT1());
+			Assertions.assertEquals(List.of(1, 2, 3, 4), page.getT2().stream().map(Note::getIndex).collect(Collectors.toList()));
+			
+			page = noteService.listTicketNotes(1l, 8, 5).block();
+			
+			Assertions.assertEquals(10l, page.getT1());
+			Assertions.assertEquals(List.of(9, 10), page.getT2().stream().map(Note::getIndex).collect(Collectors.toList()));
+			
+			page = noteService.listTicketNotes(1l, 10, 5).block();
+			
+			Assertions.assertEquals(10l, page.getT1());
+			Assertions.assertTrue(page.getT2().isEmpty());
+			
+			// A negative offset returns the latest notes
+			page = noteService.listTicketNotes(1l, -3, -1).block();
+			
+			Assertions.assertEquals(10l, page.getT1());
+			Assertions.assertEquals(List.of(8, 9, 10), page.getT2().stream().map(Note::getIndex).collect(Collectors.toList()));
+			Assertions.assertEquals("Note 10", page.getT2().get(2).getTitle());
+			
+			page = noteService.listTicketNotes(1l, -3, 2).block();
+			
+			Assertions.assertEquals(List.of(8, 9), page.getT2().stream().map(Note::getIndex).collect(Collectors.toList()));
+			
+			page = noteService.listTicketNotes(1l, -3, 5).block();
+			
+			Assertions.assertEquals(List.of(8, 9, 10), page.getT2().stream().map(Note::getIndex).collect(Collectors.toList()));
+			
+			page = noteService.listTicketNotes(1l, -20, -1).block();
+			
+			Assertions.assertEquals(10, page.getT2().size());
+			
+			// A zero limit only returns the total number of notes
+			page = noteService.listTicketNotes(1l, 0, 0).block();
+			
+			Assertions.assertEquals(10l, page.getT1());
+			Assertions.assertTrue(page.getT2().isEmpty());
+			
+			// Removed notes are not counted
+			noteService.removeTicketNote(1l, 10).block();
+			page = noteService.listTicketNotes(1l, -2, -1).block();
+			
+			Assertions.assertEquals(9l, page.getT1());
+			Assertions.assertEquals(List.of(8, 9), page.getT2().stream().map(Note::getIndex).collect(Collectors.toList()));
+			
+			page = noteService.listTicketNotes(2l, -20, -1).block();
+			
+			Assertions.assertEquals(0l, page.getT1());
+			Assertions.assertTrue(page.getT2().isEmpty());
+		}
+		finally {
+			client.close().block();
+			flushAll();
+		}
+	}
+}
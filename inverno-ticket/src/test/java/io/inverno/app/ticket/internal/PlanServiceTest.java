@@ -16,83 +16,93 @@
 package io.inverno.app.ticket.internal;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.inverno.app.ticket.TicketAppConfiguration;
+import io.inverno.app.ticket.internal.exception.PlanAlreadyExistsException;
+import io.inverno.app.ticket.internal.exception.TicketNotFoundInPlanException;
+import io.inverno.app.ticket.internal.exception.VersionMismatchException;
+import io.inverno.app.ticket.internal.model.BulkResult;
 import io.inverno.app.ticket.internal.model.Plan;
 import io.inverno.app.ticket.internal.model.Ticket;
 import io.inverno.app.ticket.internal.service.PlanService;
+import io.inverno.app.ticket.internal.service.SearchService;
 import io.inverno.app.ticket.internal.service.TicketService;
+import io.inverno.mod.boot.BootConfiguration;
 import io.inverno.mod.redis.RedisTransactionalClient;
-import io.inverno.mod.redis.lettuce.PoolRedisClient;
-import io.lettuce.core.RedisConnectionException;
+import io.inverno.mod.redis.lettuce.LettuceRedisClientConfiguration;
+import io.inverno.mod.web.server.WebServerConfiguration;
 import io.lettuce.core.RedisURI;
 import io.lettuce.core.api.StatefulRedisConnection;
-import io.lettuce.core.codec.StringCodec;
-import io.lettuce.core.support.AsyncConnectionPoolSupport;
-import io.lettuce.core.support.BoundedAsyncPool;
-import io.lettuce.core.support.BoundedPoolConfig;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.EnabledIf;
 import org.junit.jupiter.api.Assertions;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuple3;
+import reactor.util.function.Tuples;
 
 /**
  *
  * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
  */
 @EnabledIf( value = "isEnabled", disabledReason = "Failed to connect to test Redis database" )
-public class PlanServiceTest {
+public class PlanServiceTest extends AbstractRedisTest {
 	
-	static {
-		System.setProperty("org.apache.logging.log4j.simplelog.level", "INFO");
-		System.setProperty("org.apache.logging.log4j.simplelog.logFile", "system.out");
-	}
-
-	private static final ObjectMapper MAPPER;
-	
-	static {
-		MAPPER = new ObjectMapper();
-		MAPPER.registerModule(new JavaTimeModule());
-		MAPPER.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
-	}
-	
-	private static final io.lettuce.core.RedisClient REDIS_CLIENT = io.lettuce.core.RedisClient.create();
-	
-	private static PoolRedisClient<String, String, StatefulRedisConnection<String, String>> createClient() {
-		
-		BoundedAsyncPool<StatefulRedisConnection<String, String>> pool = AsyncConnectionPoolSupport.createBoundedObjectPool(
-			() -> REDIS_CLIENT.connectAsync(StringCodec.UTF8, RedisURI.create("redis://localhost:6379")), 
-			BoundedPoolConfig.create()
-		);
-		return new PoolRedisClient<>(pool, String.class, String.class);
-	}
-	
-	private static void flushAll() {
-		REDIS_CLIENT.connect(RedisURI.create("redis://localhost:6379")).reactive().flushall().block();
-	}
-	
-	public static boolean isEnabled() {
+	/**
+	 * Test of reconcilePlanTicketCounts method, of class PlanService.
+	 */
+	@Test
+	public void testReconcilePlanTicketCounts() {
+		RedisTransactionalClient<String, String> client = createClient();
+		SearchService searchService = new SearchService(client);
+		TicketService ticketService = new TicketService(client, CODEC, searchService);
+		PlanService planService = new PlanService(client, CODEC, ticketService);
 		try (StatefulRedisConnection<String, String> connection = REDIS_CLIENT.connect(RedisURI.create("redis://localhost:6379"))) {
-			return true;
+			planService.savePlan(new Plan(null, "Test plan", "Test plan summary", "Test plan description", null, null)).block();
+			for(long ticketId = 1; ticketId <= 3; ticketId++) {
+				ticketService.saveTicket(new Ticket(null, Ticket.Type.FEATURE, Ticket.Status.OPEN, "ticket " + ticketId, "Summary " + ticketId, "Description " + ticketId, null)).block();
+			}
+			planService.addTicket(1l, 1l).block();
+			planService.addTicket(1l, 2l).block();
+			ticketService.updateTicketStatus(2l, Ticket.Status.DONE).block();
+			
+			// Lost counters and plans of ticket 1, ticket 3 referencing a plan it doesn't belong to and a plan which doesn't exist
+			connection.sync().del(String.format(PlanService.REDIS_KEY_PLAN_STATUS_COUNTS, 1l), String.format(PlanService.REDIS_KEY_TICKET_PLANS, 1l));
+			connection.sync().sadd(String.format(PlanService.REDIS_KEY_TICKET_PLANS, 3l), "1", "9");
+			
+			Assertions.assertEquals(1l, planService.reconcilePlanTicketCounts().block());
+			
+			Map<Ticket.Status, Long> planCounts = planService.countPlanTickets().collectMap(Tuple2::getT1, Tuple2::getT2).block().get(1l);
+			
+			Assertions.assertEquals(1l, planCounts.get(Ticket.Status.OPEN));
+			Assertions.assertEquals(1l, planCounts.get(Ticket.Status.DONE));
+			Assertions.assertEquals(Set.of("1"), connection.sync().smembers(String.format(PlanService.REDIS_KEY_TICKET_PLANS, 1l)));
+			Assertions.assertEquals(Set.of("1"), connection.sync().smembers(String.format(PlanService.REDIS_KEY_TICKET_PLANS, 2l)));
+			Assertions.assertEquals(0l, connection.sync().exists(String.format(PlanService.REDIS_KEY_TICKET_PLANS, 3l)));
+		}
+		finally {
+			client.close().block();
+			flushAll();
 		}
-		catch (RedisConnectionException e) {
-			return false;
-		}	
 	}
 	
+	
 	/**
 	 * Test of savePlan method, of class PlanService.
 	 */
 	@Test
 	public void testPlanService() throws JsonProcessingException {
 		RedisTransactionalClient<String, String> client = createClient();
-		TicketService ticketService = new TicketService(client, MAPPER);
-		PlanService planService = new PlanService(client, MAPPER, ticketService);
+		TicketService ticketService = new TicketService(client, CODEC, new SearchService(client));
+		PlanService planService = new PlanService(client, CODEC, ticketService);
 		try {
 			ZonedDateTime planCreationDateTime = ZonedDateTime.now(ZoneOffset.UTC);
 			Plan savePlan = new Plan(null, "Test plan", "Test plan summary", "Test plan description", null, null);
@@ -103,6 +113,7 @@ public class PlanServiceTest {
 			Assertions.assertEquals("Test plan summary", savedPlan.getSummary());
 			Assertions.assertEquals("Test plan description", savedPlan.getDescription());
 			Assertions.assertTrue(ChronoUnit.SECONDS.between(planCreationDateTime, savedPlan.getCreationDateTime()) < 1);
+			Assertions.assertEquals(1l, savedPlan.getVersion());
 			
 			Plan getPlan = planService.getPlan(1).block();
 			
@@ -124,6 +135,12 @@ public class PlanServiceTest {
 			Assertions.assertEquals("Test plan summary", updatedPlan.getSummary());
 			Assertions.assertEquals("Test plan updated description", updatedPlan.getDescription());
 			Assertions.assertTrue(ChronoUnit.SECONDS.between(planCreationDateTime, updatedPlan.getCreationDateTime()) < 1);
+			Assertions.assertEquals(2l, updatedPlan.getVersion());
+			
+			Plan staleUpdatePlan = new Plan(1l, "Test plan", "Test plan summary", "Test plan stale description", planCreationDateTime, null);
+			staleUpdatePlan.setVersion(1l);
+			Assertions.assertThrows(VersionMismatchException.class, () -> planService.savePlan(staleUpdatePlan).block());
+			Assertions.assertEquals("Test plan updated description", planService.getPlan(1).block().getDescription());
 			
 			ticketService.saveTicket(new Ticket(null, Ticket.Type.FEATURE, Ticket.Status.OPEN, "ticket 1", "Summary 1", "Description 1", null)).block();
 			ticketService.saveTicket(new Ticket(null, Ticket.Type.FEATURE, Ticket.Status.OPEN, "ticket 2", "Summary 2", "Description 2", null)).block();
@@ -156,6 +173,29 @@ public class PlanServiceTest {
 			Assertions.assertEquals(3l, getPlanTickets.get(2).getId());
 			Assertions.assertEquals(2l, getPlanTickets.get(3).getId());
 			
+			ticketService.updateTicketStatus(3l, Ticket.Status.DONE).block();
+			ticketService.updateTicketStatus(2l, Ticket.Status.IN_PROGRESS).block();
+			
+			getPlanTickets = planService.getPlan(1l, List.of(Ticket.Status.DONE, Ticket.Status.IN_PROGRESS)).block().getTickets().collectList().block();
+			
+			Assertions.assertEquals(2, getPlanTickets.size());
+			
+			Assertions.assertEquals(3l, getPlanTickets.get(0).getId());
+			Assertions.assertEquals(2l, getPlanTickets.get(1).getId());
+			
+			getPlanTickets = planService.listPlanTickets(1l, List.of(Ticket.Status.values()), 1, 2, false).collectList().block();
+			
+			Assertions.assertEquals(2, getPlanTickets.size());
+			
+			Assertions.assertEquals(1l, getPlanTickets.get(0).getId());
+			Assertions.assertEquals(3l, getPlanTickets.get(1).getId());
+			
+			getPlanTickets = planService.listPlanTickets(1l, List.of(Ticket.Status.DONE, Ticket.Status.IN_PROGRESS), 1, 1, false).collectList().block();
+			
+			Assertions.assertEquals(1, getPlanTickets.size());
+			
+			Assertions.assertEquals(2l, getPlanTickets.get(0).getId());
+			
 			ZonedDateTime planCreationDateTime2 = ZonedDateTime.now(ZoneOffset.UTC);
 			Plan savePlan2 = new Plan(null, "Test plan 2", "Test plan 2 summary", "Test plan 2 description", planCreationDateTime2, null);
 			Plan savedPlan2 = planService.savePlan(savePlan2).block();
@@ -182,6 +222,64 @@ public class PlanServiceTest {
 			Assertions.assertEquals("Test plan 2 description", listPlans.get(1).getDescription());
 			Assertions.assertTrue(ChronoUnit.SECONDS.between(planCreationDateTime2, listPlans.get(1).getCreationDateTime()) < 1);
 			
+			planService.addTicket(2l, 1l).block();
+			
+			List<Plan> listPlansWithTickets = planService.listPlansWithTickets().sort(Comparator.comparing(Plan::getId)).collectList().block();
+			
+			Assertions.assertEquals(2, listPlansWithTickets.size());
+			
+			List<Ticket> listPlanTickets = listPlansWithTickets.get(0).getTickets().collectList().block();
+			
+			Assertions.assertEquals(4, listPlanTickets.size());
+			
+			Assertions.assertEquals(4l, listPlanTickets.get(0).getId());
+			Assertions.assertEquals(1l, listPlanTickets.get(1).getId());
+			Assertions.assertEquals(3l, listPlanTickets.get(2).getId());
+			Assertions.assertEquals(2l, listPlanTickets.get(3).getId());
+			
+			listPlanTickets = listPlansWithTickets.get(1).getTickets().collectList().block();
+			
+			Assertions.assertEquals(1, listPlanTickets.size());
+			
+			Assertions.assertEquals(1l, listPlanTickets.get(0).getId());
+			
+			Map<Long, Map<Ticket.Status, Long>> planCounts = planService.countPlanTickets().collectMap(Tuple2::getT1, Tuple2::getT2).block();
+			
+			Assertions.assertEquals(2l, planCounts.get(1l).get(Ticket.Status.OPEN));
+			Assertions.assertEquals(1l, planCounts.get(1l).get(Ticket.Status.IN_PROGRESS));
+			Assertions.assertEquals(1l, planCounts.get(1l).get(Ticket.Status.DONE));
+			Assertions.assertEquals(0l, planCounts.get(1l).get(Ticket.Status.REJECTED));
+			Assertions.assertEquals(1l, planCounts.get(2l).get(Ticket.Status.OPEN));
+			
+			planService.removeTicket(1l, 3l).block();
+			ticketService.updateTicketStatus(1l, Ticket.Status.REJECTED).block();
+			
+			planCounts = planService.countPlanTickets().collectMap(Tuple2::getT1, Tuple2::getT2).block();
+			
+			Assertions.assertEquals(1l, planCounts.get(1l).get(Ticket.Status.OPEN));
+			Assertions.assertEquals(0l, planCounts.get(1l).get(Ticket.Status.DONE));
+			Assertions.assertEquals(1l, planCounts.get(1l).get(Ticket.Status.REJECTED));
+			Assertions.assertEquals(0l, planCounts.get(2l).get(Ticket.Status.OPEN));
+			Assertions.assertEquals(1l, planCounts.get(2l).get(Ticket.Status.REJECTED));
+			
+			Assertions.assertEquals(2l, planService.reconcilePlanTicketCounts().block());
+			Assertions.assertEquals(planCounts, planService.countPlanTickets().collectMap(Tuple2::getT1, Tuple2::getT2).block());
+			
+			ticketService.removeTicket(1l).block();
+			
+			planCounts = planService.countPlanTickets().collectMap(Tuple2::getT1, Tuple2::getT2).block();
+			
+			Assertions.assertEquals(0l, planCounts.get(1l).get(Ticket.Status.REJECTED));
+			Assertions.assertEquals(0l, planCounts.get(2l).get(Ticket.Status.REJECTED));
+			Assertions.assertEquals(List.of(4l, 2l), planService.listPlanTicketIds(1l).collectList().block());
+			Assertions.assertEquals(0l, planService.compactPlanTickets().block());
+			
+			Tuple3<Long, Long, Long> indexesCheck = ticketService.checkTicketIndexes(false).block();
+			
+			Assertions.assertEquals(3l, indexesCheck.getT1());
+			Assertions.assertEquals(0l, indexesCheck.getT2());
+			Assertions.assertEquals(0l, indexesCheck.getT3());
+			
 			planService.removePlan(1l).block();
 			
 			listPlans = planService.listPlans().collectList().block();
@@ -199,4 +297,291 @@ public class PlanServiceTest {
 			flushAll();
 		}
 	}
+	
+	/**
+	 * Test of indexPlans method, of class PlanService.
+	 */
+	@Test
+	public void testPlanIndex() throws JsonProcessingException {
+		RedisTransactionalClient<String, String> client = createClient();
+		SearchService searchService = new SearchService(client);
+		TicketService ticketService = new TicketService(client, CODEC, searchService);
+		PlanService planService = new PlanService(client, CODEC, ticketService);
+		try (StatefulRedisConnection<String, String> connection = REDIS_CLIENT.connect(RedisURI.create("redis://localhost:6379"))) {
+			planService.savePlan(new Plan(null, "Test plan 1", "Test plan 1 summary", "Test plan 1 description", null, null)).block();
+			planService.savePlan(new Plan(null, "Test plan 2", "Test plan 2 summary", "Test plan 2 description", null, null)).block();
+			
+			Assertions.assertEquals(List.of("1", "2"), connection.sync().zrange(PlanService.REDIS_KEY_PLAN_INDEX, 0, -1));
+			Assertions.assertEquals(List.of(1l, 2l), planService.listPlans().map(Plan::getId).collectList().block());
+			
+			// Plans created before the index are only listed once the index has been backfilled
+			Plan legacyPlan = new Plan(3l, "Test plan 3", "Test plan 3 summary", "Test plan 3 description", ZonedDateTime.now(ZoneOffset.UTC).minusDays(1), null);
+			connection.sync().set(String.format(PlanService.REDIS_KEY_PLAN, 3l), MAPPER.writeValueAsString(legacyPlan));
+			
+			Assertions.assertEquals(List.of(1l, 2l), planService.listPlans().map(Plan::getId).collectList().block());
+			Assertions.assertEquals(3l, planService.indexPlans().block());
+			Assertions.assertEquals(List.of(3l, 1l, 2l), planService.listPlans().map(Plan::getId).collectList().block());
+			Assertions.assertEquals("Test plan 3", planService.listPlans().blockFirst().getTitle());
+			
+			planService.removePlan(1l).block();
+			
+			Assertions.assertEquals(List.of("3", "2"), connection.sync().zrange(PlanService.REDIS_KEY_PLAN_INDEX, 0, -1));
+			Assertions.assertEquals(List.of(3l, 2l), planService.listPlans().map(Plan::getId).collectList().block());
+		}
+		finally {
+			client.close().block();
+			flushAll();
+		}
+	}
+	
+	
+	/**
+	 * Test of getPlan method, of class PlanService.
+	 */
+	@Test
+	public void testCoalescePlanReads() {
+		RedisTransactionalClient<String, String> client = createClient();
+		SearchService searchService = new SearchService(client);
+		TicketService ticketService = new TicketService(client, CODEC, searchService);
+		PlanService planService = new PlanService(client, CODEC, ticketService);
+		try (StatefulRedisConnection<String, String> connection = REDIS_CLIENT.connect(RedisURI.create("redis://localhost:6379"))) {
+			planService.savePlan(new Plan(null, "Test plan", "Test plan summary", "Test plan description", null, null)).block();
+			ticketService.saveTicket(new Ticket(null, Ticket.Type.FEATURE, Ticket.Status.OPEN, "ticket 1", "Summary 1", "Description 1", null)).block();
+			ticketService.saveTicket(new Ticket(null, Ticket.Type.FEATURE, Ticket.Status.OPEN, "ticket 2", "Summary 2", "Description 2", null)).block();
+			ticketService.updateTicketStatus(2l, Ticket.Status.DONE).block();
+			planService.addTicket(1l, 1l).block();
+			planService.addTicket(1l, 2l).block();
+			connection.sync().configResetstat();
+			
+			// Concurrent reads share the plan but tickets are resolved for each caller
+			Tuple2<Plan, Plan> plans = Mono.zip(planService.getPlan(1l, List.of(Ticket.Status.OPEN)), planService.getPlan(1l, List.of(Ticket.Status.DONE))).block();
+			
+			Assertions.assertEquals(1l, commandCalls(connection, "get"));
+			Assertions.assertNotSame(plans.getT1(), plans.getT2());
+			Assertions.assertEquals("Test plan", plans.getT1().getTitle());
+			Assertions.assertEquals("Test plan", plans.getT2().getTitle());
+			Assertions.assertEquals(List.of(1l), plans.getT1().getTickets().map(Ticket::getId).collectList().block());
+			Assertions.assertEquals(List.of(2l), plans.getT2().getTickets().map(Ticket::getId).collectList().block());
+			
+			// Reads issued after a write don't join a read started before it
+			planService.savePlan(new Plan(1l, "Test plan updated", "Test plan summary", "Test plan description", null, null)).block();
+			
+			Assertions.assertEquals("Test plan updated", planService.getPlan(1l).block().getTitle());
+		}
+		finally {
+			client.close().block();
+			flushAll();
+		}
+	}
+	
+	
+	/**
+	 * Test of moveTickets method, of class PlanService.
+	 */
+	@Test
+	public void testMoveTickets() {
+		RedisTransactionalClient<String, String> client = createClient();
+		SearchService searchService = new SearchService(client);
+		TicketService ticketService = new TicketService(client, CODEC, searchService);
+		PlanService planService = new PlanService(client, CODEC, ticketService);
+		try {
+			planService.savePlan(new Plan(null, "Test plan", "Test plan summary", "Test plan description", null, null)).block();
+			for(long ticketId = 1; ticketId <= 4; ticketId++) {
+				ticketService.saveTicket(new Ticket(null, Ticket.Type.FEATURE, Ticket.Status.OPEN, "ticket " + ticketId, "Summary " + ticketId, "Description " + ticketId, null)).block();
+				planService.addTicket(1l, ticketId).block();
+			}
+			
+			List<BulkResult> results = planService.moveTickets(1l, List.of(
+				Tuples.of(4l, Optional.of(1l)),
+				Tuples.of(2l, Optional.<Long>empty()),
+				Tuples.of(3l, Optional.of(3l)),
+				Tuples.of(1l, Optional.of(9l))
+			)).collectList().block();
+			
+			// Moves are applied in order and their outcomes returned in order
+			Assertions.assertEquals(List.of(4l, 2l, 3l, 1l), results.stream().map(BulkResult::getId).collect(Collectors.toList()));
+			Assertions.assertEquals(List.of(BulkResult.Outcome.UPDATED, BulkResult.Outcome.UPDATED, BulkResult.Outcome.UNCHANGED, BulkResult.Outcome.REFERENCE_NOT_FOUND), results.stream().map(BulkResult::getOutcome).collect(Collectors.toList()));
+			Assertions.assertEquals(List.of(4l, 1l, 3l, 2l), planService.getPlan(1l).block().getTickets().map(Ticket::getId).collectList().block());
+			
+			Assertions.assertEquals(List.of(), planService.moveTickets(1l, List.of()).collectList().block());
+		}
+		finally {
+			client.close().block();
+			flushAll();
+		}
+	}
+	
+	
+	/**
+	 * Test of insertTicketBefore method, of class PlanService.
+	 */
+	@Test
+	public void testPlanTicketRanks() {
+		RedisTransactionalClient<String, String> client = createClient();
+		SearchService searchService = new SearchService(client);
+		TicketService ticketService = new TicketService(client, CODEC, searchService);
+		PlanService planService = new PlanService(client, CODEC, ticketService);
+		try (StatefulRedisConnection<String, String> connection = REDIS_CLIENT.connect(RedisURI.create("redis://localhost:6379"))) {
+			String planTicketsKey = String.format(PlanService.REDIS_KEY_PLAN_TICKETS, 1l);
+			planService.savePlan(new Plan(null, "Test plan", "Test plan summary", "Test plan description", null, null)).block();
+			for(int i = 1; i <= 4; i++) {
+				ticketService.saveTicket(new Ticket(null, Ticket.Type.FEATURE, Ticket.Status.OPEN, "ticket " + i, "Summary " + i, "Description " + i, null)).block();
+			}
+			planService.addTicket(1l, 1l).block();
+			planService.addTicket(1l, 2l).block();
+			planService.addTicket(1l, 3l).block();
+			
+			// A ticket can't be moved before itself when it is not in the plan
+			Assertions.assertThrows(TicketNotFoundInPlanException.class, () -> planService.insertTicketBefore(1l, 4l, 4l).block());
+			Assertions.assertEquals(List.of("1", "2", "3"), connection.sync().zrange(planTicketsKey, 0, -1));
+			
+			// Each move halves the room left before ticket 3 until scores are rebalanced
+			for(int i = 0; i < 100; i++) {
+				planService.insertTicketBefore(1l, i % 2 == 0 ? 1l : 2l, 3l).block();
+			}
+			
+			Assertions.assertEquals(List.of("1", "2", "3"), connection.sync().zrange(planTicketsKey, 0, -1));
+			// Scores were rebalanced while the moved ticket was out of the plan: ticket 3 was then second
+			Assertions.assertEquals(2 * 1024d, connection.sync().zscore(planTicketsKey, "3"));
+		}
+		finally {
+			client.close().block();
+			flushAll();
+		}
+	}
+	
+	
+	/**
+	 * Test of savePlan method, of class PlanService.
+	 */
+	@Test
+	public void testCreatePlan() {
+		RedisTransactionalClient<String, String> client = createClient();
+		TicketService ticketService = new TicketService(client, CODEC, new SearchService(client));
+		PlanService planService = new PlanService(client, CODEC, ticketService);
+		try (StatefulRedisConnection<String, String> connection = REDIS_CLIENT.connect(RedisURI.create("redis://localhost:6379"))) {
+			Plan savedPlan = planService.savePlan(new Plan(null, "Test plan", "Test plan summary", "Test plan description", null, null)).block();
+			
+			// The id is allocated by the creation script and the plan indexed by creation date time
+			Assertions.assertEquals(1l, savedPlan.getId());
+			Assertions.assertEquals(1l, savedPlan.getVersion());
+			Assertions.assertEquals("1", connection.sync().get(PlanService.REDIS_KEY_PLAN_SEQ));
+			Assertions.assertEquals((double)savedPlan.getCreationDateTime().toInstant().toEpochMilli(), connection.sync().zscore(PlanService.REDIS_KEY_PLAN_INDEX, "1"));
+			
+			// The plan is stored without id, it is given the id in its key when read
+			Plan storedPlan = CODEC.decode(connection.sync().get(String.format(PlanService.REDIS_KEY_PLAN, 1l)), Plan.class);
+			
+			Assertions.assertNull(storedPlan.getId());
+			Assertions.assertEquals("Test plan", storedPlan.getTitle());
+			Assertions.assertEquals(1l, planService.getPlan(1l).block().getId());
+			
+			planService.savePlan(new Plan(null, "Test plan 2", "Test plan 2 summary", "Test plan 2 description", null, null)).block();
+			
+			Assertions.assertEquals(List.of(1l, 2l), planService.listPlans().map(Plan::getId).collectList().block());
+			
+			// A plan is never overwritten by a creation
+			connection.sync().set(String.format(PlanService.REDIS_KEY_PLAN, 3l), CODEC.encode(new Plan(null, "Existing plan", "Existing plan summary", "Existing plan description", null, null)));
+			
+			Assertions.assertThrows(PlanAlreadyExistsException.class, () -> planService.savePlan(new Plan(null, "Test plan 3", "Test plan 3 summary", "Test plan 3 description", null, null)).block());
+			Assertions.assertEquals("Existing plan", planService.getPlan(3l).block().getTitle());
+			Assertions.assertNull(connection.sync().zscore(PlanService.REDIS_KEY_PLAN_INDEX, "3"));
+		}
+		finally {
+			client.close().block();
+			flushAll();
+		}
+	}
+	
+	
+	/**
+	 * Test of setReadConnection method, of class PlanService.
+	 */
+	@Test
+	public void testReadConnection() {
+		io.lettuce.core.RedisClient readClient = io.lettuce.core.RedisClient.create(RedisURI.create("redis://localhost:6379"));
+		RedisTransactionalClient<String, String> client = createClient();
+		TicketService ticketService = new TicketService(client, CODEC, new SearchService(client));
+		PlanService planService = new PlanService(client, CODEC, ticketService);
+		RedisReadConnection readConnection = new RedisReadConnection(readConnectionConfiguration(true), readClient);
+		RedisReadConnection disabledReadConnection = new RedisReadConnection(readConnectionConfiguration(false), readClient);
+		try {
+			readConnection.init();
+			disabledReadConnection.init();
+			
+			// Scripts borrow a pool connection whose wait time is measured
+			long acquisitions = RedisPoolWaitTimes.SCRIPTS.getCount();
+			planService.savePlan(new Plan(null, "Test plan", "Test plan summary", "Test plan description", null, null)).block();
+			
+			Assertions.assertTrue(RedisPoolWaitTimes.SCRIPTS.getCount() > acquisitions);
+			
+			planService.savePlan(new Plan(null, "Test plan 2", "Test plan 2 summary", "Test plan 2 description", null, null)).block();
+			for(long ticketId = 1; ticketId <= 3; ticketId++) {
+				ticketService.saveTicket(new Ticket(null, Ticket.Type.FEATURE, Ticket.Status.OPEN, "ticket " + ticketId, "Summary " + ticketId, "Description " + ticketId, null)).block();
+			}
+			planService.addTicket(1l, 3l).block();
+			planService.addTicket(1l, 1l).block();
+			
+			// Reads fall back to the pool when the read connection is disabled
+			ticketService.setReadConnection(disabledReadConnection);
+			planService.setReadConnection(disabledReadConnection);
+			
+			Assertions.assertFalse(disabledReadConnection.isEnabled());
+			
+			List<Plan> poolPlans = planService.listPlans().collectList().block();
+			List<Ticket> poolPlanTickets = planService.getPlan(1l).block().getTickets().collectList().block();
+			
+			Assertions.assertEquals(List.of(1l, 2l), poolPlans.stream().map(Plan::getId).collect(Collectors.toList()));
+			Assertions.assertEquals(List.of(3l, 1l), poolPlanTickets.stream().map(Ticket::getId).collect(Collectors.toList()));
+			Assertions.assertEquals(0l, disabledReadConnection.getCommands());
+			
+			// Reads are executed on the read connection when it is enabled and return the same results
+			ticketService.setReadConnection(readConnection);
+			planService.setReadConnection(readConnection);
+			
+			Assertions.assertTrue(readConnection.isEnabled());
+			
+			List<Plan> readPlans = planService.listPlans().collectList().block();
+			List<Ticket> readPlanTickets = planService.getPlan(1l).block().getTickets().collectList().block();
+			
+			Assertions.assertEquals(poolPlans.stream().map(Plan::getId).collect(Collectors.toList()), readPlans.stream().map(Plan::getId).collect(Collectors.toList()));
+			Assertions.assertEquals(poolPlans.stream().map(Plan::getTitle).collect(Collectors.toList()), readPlans.stream().map(Plan::getTitle).collect(Collectors.toList()));
+			Assertions.assertEquals(poolPlanTickets.stream().map(Ticket::getId).collect(Collectors.toList()), readPlanTickets.stream().map(Ticket::getId).collect(Collectors.toList()));
+			Assertions.assertEquals(poolPlanTickets.stream().map(Ticket::getDescription).collect(Collectors.toList()), readPlanTickets.stream().map(Ticket::getDescription).collect(Collectors.toList()));
+			Assertions.assertTrue(readConnection.getCommands() > 0);
+			Assertions.assertNull(ticketService.getTicket(4l).block());
+			Assertions.assertNull(planService.getPlan(3l).block());
+		}
+		finally {
+			readConnection.destroy();
+			disabledReadConnection.destroy();
+			client.close().block();
+			readClient.shutdown();
+			flushAll();
+		}
+	}
+	
+	private static TicketAppConfiguration readConnectionConfiguration(boolean enabled) {
+		return new TicketAppConfiguration() {
+			
+			@Override
+			public BootConfiguration boot() {
+				return null;
+			}
+
+			@Override
+			public LettuceRedisClientConfiguration redis() {
+				return null;
+			}
+
+			@Override
+			public WebServerConfiguration web_server() {
+				return null;
+			}
+
+			@Override
+			public boolean redis_read_connection() {
+				return enabled;
+			}
+		};
+	}
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal;
+
+import io.inverno.app.ticket.internal.model.Note;
+import io.inverno.app.ticket.internal.model.Ticket;
+import io.inverno.app.ticket.internal.service.NoteService;
+import io.inverno.app.ticket.internal.service.SearchService;
+import io.inverno.app.ticket.internal.service.TicketService;
+import io.inverno.mod.redis.RedisTransactionalClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.api.StatefulRedisConnection;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+
+/**
+ *
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+@EnabledIf( value = "isEnabled", disabledReason = "Failed to connect to test Redis database" )
+public class SearchServiceTest extends AbstractRedisTest {
+	
+	/**
+	 * Test of search method, of class SearchService.
+	 */
+	@Test
+	public void testSearch() {
+		RedisTransactionalClient<String, String> client = createClient();
+		SearchService searchService = new SearchService(client);
+		TicketService ticketService = new TicketService(client, CODEC, searchService);
+		NoteService noteService = new NoteService(client, CODEC, searchService);
+		try (StatefulRedisConnection<String, String> connection = REDIS_CLIENT.connect(RedisURI.create("redis://localhost:6379"))) {
+			ticketService.saveTicket(new Ticket(null, Ticket.Type.BUG, Ticket.Status.OPEN, "Database outage", "Primary down", "The primary database is unreachable", null)).block();
+			ticketService.saveTicket(new Ticket(null, Ticket.Type.FEATURE, Ticket.Status.OPEN, "Database migration", "New schema", "Migrate the database to the new schema", null)).block();
+			ticketService.saveTicket(new Ticket(null, Ticket.Type.BUG, Ticket.Status.OPEN, "Login page", "Misaligned button", "The login button is misaligned", null)).block();
+			noteService.saveTicketNote(new Note(2l, null, "Backup", "Backup the database first")).block();
+			noteService.saveTicketNote(new Note(3l, null, "Cause", "Database timeout on login")).block();
+			
+			// Tickets are ordered by the number of sources (ticket and notes) containing the terms then by id descending
+			Assertions.assertEquals(List.of(2l, 3l, 1l), searchService.search("database", 0, 10).collectList().block());
+			Assertions.assertEquals(List.of(2l, 3l, 1l), searchService.search("DATABASE!", 0, 10).collectList().block());
+			Assertions.assertEquals(List.of(2l, 3l), searchService.search("database", 0, 2).collectList().block());
+			Assertions.assertEquals(List.of(1l), searchService.search("database", 2, 2).collectList().block());
+			Assertions.assertEquals(List.of(), searchService.search("database", 3, 2).collectList().block());
+			Assertions.assertEquals(List.of(), searchService.search("database", 0, 0).collectList().block());
+			Assertions.assertEquals(List.of(), searchService.search("a", 0, 10).collectList().block());
+			
+			// Tickets must contain all terms
+			Assertions.assertEquals(List.of(3l), searchService.search("login database", 0, 10).collectList().block());
+			Assertions.assertEquals(List.of(1l), searchService.search("primary database", 0, 10).collectList().block());
+			Assertions.assertEquals(List.of(2l, 3l, 1l), searchService.search("the database", 0, 10).collectList().block());
+			Assertions.assertEquals(List.of(3l, 1l), searchService.search("the database", 1, 10).collectList().block());
+			Assertions.assertEquals(List.of(), searchService.search("login outage", 0, 10).collectList().block());
+			
+			// The intersection is kept for the next pages of the query
+			long resultTtl = connection.sync().pttl(String.format(SearchService.REDIS_KEY_SEARCH_RESULT, "database the"));
+			Assertions.assertTrue(resultTtl > 0 && resultTtl <= 10000);
+			
+			// The index is kept in sync with tickets and notes
+			ticketService.saveTicket(new Ticket(1l, Ticket.Type.BUG, Ticket.Status.OPEN, "Cache outage", "Primary down", "The primary cache is unreachable", null)).block();
+			noteService.removeTicketNote(2l, 1).block();
+			
+			Assertions.assertEquals(List.of(3l, 2l), searchService.search("database", 0, 10).collectList().block());
+			Assertions.assertEquals(List.of(1l), searchService.search("cache", 0, 10).collectList().block());
+			
+			ticketService.removeTicket(3l).block();
+			
+			Assertions.assertEquals(List.of(2l), searchService.search("database", 0, 10).collectList().block());
+			Assertions.assertEquals(List.of(), searchService.search("login", 0, 10).collectList().block());
+		}
+		finally {
+			client.close().block();
+			flushAll();
+		}
+	}
+}
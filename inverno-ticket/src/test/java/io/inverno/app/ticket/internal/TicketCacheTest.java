@@ -0,0 +1,112 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal;
+
+import io.inverno.app.ticket.internal.cache.TicketCache;
+import io.inverno.app.ticket.internal.model.Ticket;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+public class TicketCacheTest {
+
+	private static Ticket ticket(long id) {
+		Ticket ticket = new Ticket(id, Ticket.Type.FEATURE, Ticket.Status.OPEN, "Ticket " + id, "Summary " + id, "Description " + id, ZonedDateTime.now(ZoneOffset.UTC));
+		ticket.setVersion(1l);
+		return ticket;
+	}
+	
+	@Test
+	public void testTicketCache() {
+		TicketCache cache = new TicketCache(2);
+		
+		Assertions.assertTrue(cache.isEnabled());
+		Assertions.assertNull(cache.get(1));
+		
+		cache.put(ticket(1), cache.mark(1));
+		cache.put(ticket(2), cache.mark(2));
+		
+		Ticket cachedTicket = cache.get(1);
+		Assertions.assertEquals(1l, cachedTicket.getId());
+		Assertions.assertEquals("Description 1", cachedTicket.getDescription());
+		Assertions.assertEquals(1l, cachedTicket.getVersion());
+		
+		// Returned tickets are copies
+		cachedTicket.setDescription(null);
+		Assertions.assertEquals("Description 1", cache.get(1).getDescription());
+		
+		// Ticket 2 is the least recently used
+		cache.put(ticket(3), cache.mark(3));
+		Assertions.assertNull(cache.get(2));
+		Assertions.assertNotNull(cache.get(1));
+		Assertions.assertNotNull(cache.get(3));
+		
+		cache.invalidate(1);
+		Assertions.assertNull(cache.get(1));
+		
+		Assertions.assertEquals(2, cache.getMaxSize());
+		Assertions.assertEquals(1, cache.getSize());
+		Assertions.assertEquals(4, cache.getHits());
+		Assertions.assertEquals(3, cache.getMisses());
+		Assertions.assertEquals(1, cache.getEvictions());
+		Assertions.assertEquals(1, cache.getInvalidations());
+	}
+	
+	@Test
+	public void testStalePut() {
+		TicketCache cache = new TicketCache(10);
+		
+		// Ticket 1 is invalidated while it is read
+		long mark = cache.mark(1);
+		cache.invalidate(1);
+		cache.put(ticket(1), mark);
+		
+		Assertions.assertNull(cache.get(1));
+		
+		// Invalidating another ticket doesn't prevent ticket 2 from being cached
+		mark = cache.mark(2);
+		cache.invalidate(3);
+		cache.put(ticket(2), mark);
+		
+		Assertions.assertNotNull(cache.get(2));
+		
+		cache.put(ticket(1), cache.mark(1));
+		Assertions.assertNotNull(cache.get(1));
+		
+		mark = cache.mark(3);
+		cache.invalidateAll();
+		cache.put(ticket(3), mark);
+		Assertions.assertNull(cache.get(1));
+		Assertions.assertNull(cache.get(3));
+		Assertions.assertEquals(0, cache.getSize());
+	}
+	
+	@Test
+	public void testDisabledCache() {
+		TicketCache cache = new TicketCache(0);
+		
+		Assertions.assertFalse(cache.isEnabled());
+		
+		cache.put(ticket(1), cache.mark(1));
+		Assertions.assertNull(cache.get(1));
+		Assertions.assertEquals(0, cache.getSize());
+	}
+}
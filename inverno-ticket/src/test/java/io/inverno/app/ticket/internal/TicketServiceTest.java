@@ -0,0 +1,461 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.inverno.app.ticket.internal.codec.TicketHashCodec;
+import io.inverno.app.ticket.internal.exception.TicketException;
+import io.inverno.app.ticket.internal.model.BulkResult;
+import io.inverno.app.ticket.internal.model.Note;
+import io.inverno.app.ticket.internal.model.Ticket;
+import io.inverno.app.ticket.internal.rest.v1.dto.NoteDto;
+import io.inverno.app.ticket.internal.rest.v1.dto.TicketBulkDto;
+import io.inverno.app.ticket.internal.rest.v1.dto.TicketDto;
+import io.inverno.app.ticket.internal.service.NoteService;
+import io.inverno.app.ticket.internal.service.SearchService;
+import io.inverno.app.ticket.internal.service.TicketService;
+import io.inverno.mod.redis.RedisTransactionalClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.api.StatefulRedisConnection;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import reactor.core.publisher.Flux;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+/**
+ *
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+@EnabledIf( value = "isEnabled", disabledReason = "Failed to connect to test Redis database" )
+public class TicketServiceTest extends AbstractRedisTest {
+	
+	private static Tuple2<Ticket, List<Note>> toDomain(TicketBulkDto ticketBulk) {
+		TicketDto ticketDto = ticketBulk.getTicket();
+		Ticket ticket = new Ticket(ticketDto.getId(), ticketDto.getType(), ticketDto.getStatus(), ticketDto.getTitle(), ticketDto.getSummary(), ticketDto.getDescription(), ticketDto.getCreationDateTime());
+		List<Note> notes = ticketBulk.getNotes() != null ? ticketBulk.getNotes().stream().map(note -> new Note(note.getTicketId(), note.getIndex(), note.getTitle(), note.getContent())).collect(Collectors.toList()) : List.of();
+		return Tuples.of(ticket, notes);
+	}
+	
+	private static TicketBulkDto toDto(Ticket ticket, List<Note> notes) {
+		return new TicketBulkDto(
+			new TicketDto(ticket.getId(), ticket.getType(), ticket.getStatus(), ticket.getTitle(), ticket.getSummary(), ticket.getDescription(), ticket.getCreationDateTime()), 
+			notes.stream().map(note -> new NoteDto((int)note.getTicketId(), note.getIndex(), note.getTitle(), note.getContent())).collect(Collectors.toList())
+		);
+	}
+	
+	/**
+	 * Test of listTicketsByCreationDateTime method, of class TicketService.
+	 */
+	@Test
+	public void testTicketStatusIndexes() throws JsonProcessingException {
+		RedisTransactionalClient<String, String> client = createClient();
+		SearchService searchService = new SearchService(client);
+		TicketService ticketService = new TicketService(client, CODEC, searchService);
+		try (StatefulRedisConnection<String, String> connection = REDIS_CLIENT.connect(RedisURI.create("redis://localhost:6379"))) {
+			// Tickets used to be stored as strings and status indexes as plain sets
+			ZonedDateTime creationDateTime = ZonedDateTime.of(2022, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+			List<Ticket.Status> statuses = List.of(Ticket.Status.OPEN, Ticket.Status.DONE, Ticket.Status.OPEN, Ticket.Status.IN_PROGRESS);
+			for(int i = 0; i < statuses.size(); i++) {
+				long ticketId = i + 1;
+				Ticket ticket = new Ticket(ticketId, Ticket.Type.FEATURE, statuses.get(i), "ticket " + ticketId, "Summary " + ticketId, "Description " + ticketId, creationDateTime.plusDays(i));
+				connection.sync().set(String.format(TicketService.REDIS_KEY_TICKET, ticketId), MAPPER.writeValueAsString(ticket));
+				connection.sync().sadd(String.format(TicketService.REDIS_KEY_TICKET_STATUS, statuses.get(i)), Long.toString(ticketId));
+			}
+			connection.sync().set(TicketService.REDIS_KEY_TICKET_SEQ, "4");
+			
+			Assertions.assertEquals(4l, ticketService.migrateTicketsToHash().block());
+			Assertions.assertEquals(4l, ticketService.indexTicketStatuses().block());
+			Assertions.assertEquals("zset", connection.sync().type(TicketService.REDIS_KEY_TICKET_OPEN));
+			Assertions.assertEquals((double)creationDateTime.plusDays(2).toInstant().toEpochMilli(), connection.sync().zscore(TicketService.REDIS_KEY_TICKET_OPEN, "3"));
+			Assertions.assertEquals(0l, connection.sync().exists(TicketService.REDIS_KEY_TICKET_STUDIED));
+			Assertions.assertEquals(3d, connection.sync().zscore(String.format(TicketService.REDIS_KEY_TICKET_STATUS_IDS, Ticket.Status.OPEN), "3"));
+			Assertions.assertEquals(List.of(3l, 4l), ticketService.listTickets(List.of(Ticket.Status.OPEN, Ticket.Status.IN_PROGRESS), 1l, 2).map(Ticket::getId).collectList().block());
+			
+			// Tickets of several statuses are merged by creation date time
+			Assertions.assertEquals(List.of(1l, 2l, 3l), ticketService.listTicketsByCreationDateTime(List.of(Ticket.Status.OPEN, Ticket.Status.DONE), null, null, -1, false).map(Ticket::getId).collectList().block());
+			Assertions.assertEquals(List.of(4l, 3l), ticketService.listTicketsByCreationDateTime(List.of(Ticket.Status.values()), null, null, 2, true).map(Ticket::getId).collectList().block());
+			Assertions.assertEquals(List.of(2l, 3l), ticketService.listTicketsByCreationDateTime(List.of(Ticket.Status.values()), creationDateTime.plusDays(1), creationDateTime.plusDays(2), -1, false).map(Ticket::getId).collectList().block());
+			Assertions.assertEquals(List.of(), ticketService.listTicketsByCreationDateTime(List.of(Ticket.Status.STUDIED), null, null, -1, false).collectList().block());
+			
+			// Indexes are maintained on create, status change and removal
+			Ticket savedTicket = ticketService.saveTicket(new Ticket(null, Ticket.Type.FEATURE, Ticket.Status.OPEN, "ticket 5", "Summary 5", "Description 5", null)).block();
+			
+			Assertions.assertEquals(5l, savedTicket.getId());
+			Assertions.assertEquals(List.of(5l), ticketService.listTicketsByCreationDateTime(List.of(Ticket.Status.OPEN), null, null, 1, true).map(Ticket::getId).collectList().block());
+			
+			ticketService.updateTicketStatus(1l, Ticket.Status.DONE).block();
+			
+			Assertions.assertNull(connection.sync().zscore(TicketService.REDIS_KEY_TICKET_OPEN, "1"));
+			Assertions.assertNull(connection.sync().zscore(String.format(TicketService.REDIS_KEY_TICKET_STATUS_IDS, Ticket.Status.OPEN), "1"));
+			Assertions.assertEquals(List.of(1l, 2l), ticketService.listTickets(List.of(Ticket.Status.DONE)).map(Ticket::getId).collectList().block());
+			Assertions.assertEquals(List.of(1l, 2l), ticketService.listTicketsByCreationDateTime(List.of(Ticket.Status.DONE), null, null, -1, false).map(Ticket::getId).collectList().block());
+			
+			ticketService.removeTicket(3l).block();
+			
+			Assertions.assertEquals(List.of(5l), ticketService.listTicketsByCreationDateTime(List.of(Ticket.Status.OPEN), null, null, -1, false).map(Ticket::getId).collectList().block());
+			Assertions.assertEquals(List.of(1l, 2l, 4l, 5l), ticketService.listTickets().map(Ticket::getId).collectList().block());
+			Assertions.assertEquals(List.of(5l), ticketService.listTickets(List.of(Ticket.Status.OPEN)).map(Ticket::getId).collectList().block());
+		}
+		finally {
+			client.close().block();
+			flushAll();
+		}
+	}
+	
+	/**
+	 * Test of listTickets and listTicketsByCreationDateTime methods, of class TicketService.
+	 */
+	@Test
+	public void testListTicketsChunks() {
+		RedisTransactionalClient<String, String> client = createClient();
+		SearchService searchService = new SearchService(client);
+		TicketService ticketService = new TicketService(client, CODEC, searchService);
+		try {
+			// Tickets created at the same time span multiple chunks
+			ZonedDateTime creationDateTime = ZonedDateTime.of(2022, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+			ticketService.importTickets(Flux.range(1, 250)
+				.map(i -> Tuples.of(new Ticket(null, Ticket.Type.FEATURE, i % 2 == 0 ? Ticket.Status.DONE : Ticket.Status.OPEN, "ticket " + i, "Summary " + i, "Description " + i, i <= 200 ? creationDateTime : creationDateTime.plusDays(1)), List.<Note>of()))
+			).blockLast();
+			
+			List<Long> openTicketIds = LongStream.rangeClosed(1, 250).filter(id -> id % 2 == 1).boxed().collect(Collectors.toList());
+			
+			Assertions.assertEquals(openTicketIds, ticketService.listTickets(List.of(Ticket.Status.OPEN)).map(Ticket::getId).collectList().block());
+			Assertions.assertEquals(openTicketIds.subList(50, 130), ticketService.listTickets(List.of(Ticket.Status.OPEN), 100l, 80).map(Ticket::getId).collectList().block());
+			
+			Assertions.assertEquals(LongStream.rangeClosed(1, 250).boxed().collect(Collectors.toList()), ticketService.listTicketsByCreationDateTime(List.of(Ticket.Status.OPEN, Ticket.Status.DONE), null, null, -1, false).map(Ticket::getId).collectList().block());
+			Assertions.assertEquals(LongStream.iterate(250, id -> id > 90, id -> id - 1).boxed().collect(Collectors.toList()), ticketService.listTicketsByCreationDateTime(List.of(Ticket.Status.OPEN, Ticket.Status.DONE), null, null, 160, true).map(Ticket::getId).collectList().block());
+			Assertions.assertEquals(openTicketIds.subList(0, 100), ticketService.listTicketsByCreationDateTime(List.of(Ticket.Status.OPEN), null, creationDateTime, -1, false).map(Ticket::getId).collectList().block());
+		}
+		finally {
+			client.close().block();
+			flushAll();
+		}
+	}
+	
+	/**
+	 * Test of migrateTicketsToHash method, of class TicketService.
+	 */
+	@Test
+	public void testMigrateTicketsToHash() {
+		RedisTransactionalClient<String, String> client = createClient();
+		SearchService searchService = new SearchService(client);
+		TicketService ticketService = new TicketService(client, CODEC, searchService);
+		try (StatefulRedisConnection<String, String> connection = REDIS_CLIENT.connect(RedisURI.create("redis://localhost:6379"))) {
+			// Tickets used to be stored as encoded strings
+			ZonedDateTime creationDateTime = ZonedDateTime.of(2022, 1, 1, 10, 30, 15, 123_000_000, ZoneOffset.UTC);
+			connection.sync().set(String.format(TicketService.REDIS_KEY_TICKET, 1l), CODEC.encode(new Ticket(1l, Ticket.Type.BUG, Ticket.Status.IN_PROGRESS, "ticket 1", "Summary 1", "Description 1", creationDateTime)));
+			connection.sync().set(String.format(TicketService.REDIS_KEY_TICKET, 2l), CODEC.encode(new Ticket(2l, Ticket.Type.FEATURE, Ticket.Status.OPEN, "ticket 2", "Summary 2", null, creationDateTime.plusHours(1))));
+			connection.sync().set(TicketService.REDIS_KEY_TICKET_SEQ, "2");
+			ticketService.saveTicket(new Ticket(null, Ticket.Type.FEATURE, Ticket.Status.OPEN, "ticket 3", "Summary 3", "Description 3", null)).block();
+			
+			Assertions.assertEquals(2l, ticketService.migrateTicketsToHash().block());
+			Assertions.assertEquals(0l, ticketService.migrateTicketsToHash().block());
+			
+			String ticketKey = String.format(TicketService.REDIS_KEY_TICKET, 1l);
+			
+			Assertions.assertEquals("hash", connection.sync().type(ticketKey));
+			Assertions.assertEquals(Long.toString(creationDateTime.toInstant().toEpochMilli()), connection.sync().hget(ticketKey, TicketHashCodec.FIELD_CREATION_DATE_TIME));
+			Assertions.assertEquals("IN_PROGRESS", connection.sync().hget(ticketKey, TicketHashCodec.FIELD_STATUS));
+			
+			// Migrated tickets decode to the tickets that were stored
+			Ticket ticket = ticketService.getTicket(1l).block();
+			
+			Assertions.assertEquals(1l, ticket.getId());
+			Assertions.assertEquals(Ticket.Type.BUG, ticket.getType());
+			Assertions.assertEquals(Ticket.Status.IN_PROGRESS, ticket.getStatus());
+			Assertions.assertEquals("ticket 1", ticket.getTitle());
+			Assertions.assertEquals("Summary 1", ticket.getSummary());
+			Assertions.assertEquals("Description 1", ticket.getDescription());
+			Assertions.assertEquals(creationDateTime.toInstant(), ticket.getCreationDateTime().toInstant());
+			
+			ticket = ticketService.getTicket(2l).block();
+			
+			Assertions.assertEquals("ticket 2", ticket.getTitle());
+			Assertions.assertNull(ticket.getDescription());
+			Assertions.assertFalse(connection.sync().hexists(String.format(TicketService.REDIS_KEY_TICKET, 2l), TicketHashCodec.FIELD_DESCRIPTION));
+			
+			// Summaries leave out the description
+			List<Ticket> summaries = ticketService.getTicketSummaries(List.of(1l, 4l, 3l)).collectList().block();
+			
+			Assertions.assertEquals(2, summaries.size());
+			Assertions.assertEquals(1l, summaries.get(0).getId());
+			Assertions.assertEquals("Summary 1", summaries.get(0).getSummary());
+			Assertions.assertNull(summaries.get(0).getDescription());
+			Assertions.assertEquals(3l, summaries.get(1).getId());
+			
+			// Updates only write hash fields, the creation date time is preserved when not specified
+			Assertions.assertEquals(Ticket.Status.DONE, ticketService.updateTicketStatus(1l, Ticket.Status.DONE).block().getStatus());
+			ticketService.saveTicket(new Ticket(1l, Ticket.Type.BUG, Ticket.Status.DONE, "ticket 1 updated", "Summary 1", "Description 1", null)).block();
+			
+			ticket = ticketService.getTicket(1l).block();
+			
+			Assertions.assertEquals("ticket 1 updated", ticket.getTitle());
+			Assertions.assertEquals(Ticket.Status.DONE, ticket.getStatus());
+			Assertions.assertEquals(creationDateTime.toInstant(), ticket.getCreationDateTime().toInstant());
+		}
+		finally {
+			client.close().block();
+			flushAll();
+		}
+	}
+	
+	
+	/**
+	 * Test of getTicket method, of class TicketService.
+	 */
+	@Test
+	public void testCoalesceTicketReads() {
+		RedisTransactionalClient<String, String> client = createClient();
+		SearchService searchService = new SearchService(client);
+		TicketService ticketService = new TicketService(client, CODEC, searchService);
+		try (StatefulRedisConnection<String, String> connection = REDIS_CLIENT.connect(RedisURI.create("redis://localhost:6379"))) {
+			ticketService.saveTicket(new Ticket(null, Ticket.Type.FEATURE, Ticket.Status.OPEN, "ticket 1", "Summary 1", "Description 1", null)).block();
+			// Make sure the script is loaded
+			ticketService.getTicket(1l).block();
+			connection.sync().configResetstat();
+			
+			// Concurrent reads share one round trip but each caller gets its own ticket
+			List<Ticket> tickets = Flux.merge(ticketService.getTicket(1l), ticketService.getTicket(1l), ticketService.getTicket(1l), ticketService.getTicket(1l)).collectList().block();
+			
+			Assertions.assertEquals(4, tickets.size());
+			Assertions.assertEquals(1l, commandCalls(connection, "evalsha"));
+			Assertions.assertTrue(tickets.stream().allMatch(ticket -> ticket.getId() == 1l && ticket.getTitle().equals("ticket 1")));
+			Assertions.assertNotSame(tickets.get(0), tickets.get(1));
+			
+			tickets.get(0).setTitle("modified");
+			
+			Assertions.assertEquals("ticket 1", tickets.get(1).getTitle());
+			
+			// Reads issued after a write don't join a read started before it
+			ticketService.updateTicketStatus(1l, Ticket.Status.DONE).block();
+			
+			Assertions.assertEquals(Ticket.Status.DONE, ticketService.getTicket(1l).block().getStatus());
+		}
+		finally {
+			client.close().block();
+			flushAll();
+		}
+	}
+	
+	/**
+	 * Test of importTickets method, of class TicketService.
+	 */
+	@Test
+	public void testImportExportTickets() throws JsonProcessingException {
+		RedisTransactionalClient<String, String> client = createClient();
+		SearchService searchService = new SearchService(client);
+		TicketService ticketService = new TicketService(client, CODEC, searchService);
+		NoteService noteService = new NoteService(client, CODEC, searchService);
+		try {
+			List<String> importLines = List.of(
+				"{\"type\":\"BUG\",\"status\":\"DONE\",\"creationDateTime\":\"2021-01-01T10:00:00Z\",\"title\":\"Imported ticket 1\",\"summary\":\"Summary 1\",\"description\":\"Description 1\",\"notes\":[{\"title\":\"Note 1\",\"content\":\"Content 1\"},{\"title\":\"Note 2\",\"content\":\"Content 2\"}]}",
+				"{\"type\":\"FEATURE\",\"title\":\"Imported ticket 2\",\"summary\":\"Summary 2\",\"description\":\"Description 2\"}"
+			);
+			
+			List<TicketBulkDto> importDtos = new ArrayList<>();
+			for(String line : importLines) {
+				importDtos.add(MAPPER.readValue(line, TicketBulkDto.class));
+			}
+			
+			List<Ticket> importedTickets = ticketService.importTickets(Flux.fromIterable(importDtos).map(TicketServiceTest::toDomain)).collectList().block();
+			
+			Assertions.assertEquals(2, importedTickets.size());
+			Assertions.assertEquals(1l, importedTickets.get(0).getId());
+			Assertions.assertEquals(2l, importedTickets.get(1).getId());
+			
+			// Status is indexed, missing status defaults to OPEN
+			Assertions.assertEquals(List.of(1l), ticketService.listTickets(List.of(Ticket.Status.DONE)).map(Ticket::getId).collectList().block());
+			Assertions.assertEquals(List.of(2l), ticketService.listTickets(List.of(Ticket.Status.OPEN)).map(Ticket::getId).collectList().block());
+			
+			// Ids continue after imported tickets
+			Ticket savedTicket = ticketService.saveTicket(new Ticket(null, Ticket.Type.FEATURE, Ticket.Status.OPEN, "ticket 3", "Summary 3", "Description 3", null)).block();
+			Assertions.assertEquals(3l, savedTicket.getId());
+			
+			List<Ticket> exportedTickets = ticketService.listTickets().collectList().block();
+			List<Tuple2<Long, List<Note>>> exportedNotes = noteService.listTicketsNotes(exportedTickets.stream().map(Ticket::getId).collect(Collectors.toList())).collectList().block();
+			
+			Assertions.assertEquals(3, exportedTickets.size());
+			Assertions.assertEquals(3, exportedNotes.size());
+			
+			List<String> exportLines = new ArrayList<>();
+			for(int i = 0; i < exportedTickets.size(); i++) {
+				Assertions.assertEquals(exportedTickets.get(i).getId(), exportedNotes.get(i).getT1());
+				exportLines.add(MAPPER.writeValueAsString(toDto(exportedTickets.get(i), exportedNotes.get(i).getT2())));
+			}
+			
+			TicketBulkDto exportedTicket1 = MAPPER.readValue(exportLines.get(0), TicketBulkDto.class);
+			
+			Assertions.assertEquals(1l, exportedTicket1.getTicket().getId());
+			Assertions.assertEquals(Ticket.Type.BUG, exportedTicket1.getTicket().getType());
+			Assertions.assertEquals(Ticket.Status.DONE, exportedTicket1.getTicket().getStatus());
+			Assertions.assertEquals(importDtos.get(0).getTicket().getCreationDateTime().toInstant(), exportedTicket1.getTicket().getCreationDateTime().toInstant());
+			Assertions.assertEquals("Imported ticket 1", exportedTicket1.getTicket().getTitle());
+			Assertions.assertEquals("Summary 1", exportedTicket1.getTicket().getSummary());
+			Assertions.assertEquals("Description 1", exportedTicket1.getTicket().getDescription());
+			Assertions.assertEquals(2, exportedTicket1.getNotes().size());
+			Assertions.assertEquals(1l, exportedTicket1.getNotes().get(0).getTicketId());
+			Assertions.assertEquals(1, exportedTicket1.getNotes().get(0).getIndex());
+			Assertions.assertEquals("Note 1", exportedTicket1.getNotes().get(0).getTitle());
+			Assertions.assertEquals("Content 1", exportedTicket1.getNotes().get(0).getContent());
+			Assertions.assertEquals(2, exportedTicket1.getNotes().get(1).getIndex());
+			Assertions.assertEquals("Note 2", exportedTicket1.getNotes().get(1).getTitle());
+			Assertions.assertEquals("Content 2", exportedTicket1.getNotes().get(1).getContent());
+			
+			TicketBulkDto exportedTicket2 = MAPPER.readValue(exportLines.get(1), TicketBulkDto.class);
+			
+			Assertions.assertEquals(2l, exportedTicket2.getTicket().getId());
+			Assertions.assertEquals(Ticket.Status.OPEN, exportedTicket2.getTicket().getStatus());
+			Assertions.assertEquals("Imported ticket 2", exportedTicket2.getTicket().getTitle());
+			Assertions.assertTrue(exportedTicket2.getNotes().isEmpty());
+			
+			// The export can be imported as is, tickets get new ids
+			List<Ticket> reimportedTickets = ticketService.importTickets(Flux.fromIterable(exportLines)
+					.map(line -> {
+						try {
+							return toDomain(MAPPER.readValue(line, TicketBulkDto.class));
+						}
+						catch(JsonProcessingException e) {
+							throw new IllegalStateException(e);
+						}
+					})
+				)
+				.collectList()
+				.block();
+			
+			Assertions.assertEquals(List.of(4l, 5l, 6l), reimportedTickets.stream().map(Ticket::getId).collect(Collectors.toList()));
+			Assertions.assertEquals("Imported ticket 1", ticketService.getTicket(4l).block().getTitle());
+			Assertions.assertEquals(List.of("Note 1", "Note 2"), noteService.listTicketNotes(4l).map(Note::getTitle).collectList().block());
+		}
+		finally {
+			client.close().block();
+			flushAll();
+		}
+	}
+	
+	
+	/**
+	 * Test of updateTicketStatuses method, of class TicketService.
+	 */
+	@Test
+	public void testUpdateTicketStatuses() {
+		RedisTransactionalClient<String, String> client = createClient();
+		SearchService searchService = new SearchService(client);
+		TicketService ticketService = new TicketService(client, CODEC, searchService);
+		try {
+			ticketService.saveTicket(new Ticket(null, Ticket.Type.FEATURE, Ticket.Status.OPEN, "ticket 1", "Summary 1", "Description 1", null)).block();
+			ticketService.saveTicket(new Ticket(null, Ticket.Type.FEATURE, Ticket.Status.OPEN, "ticket 2", "Summary 2", "Description 2", null)).block();
+			ticketService.saveTicket(new Ticket(null, Ticket.Type.BUG, Ticket.Status.OPEN, "ticket 3", "Summary 3", "Description 3", null)).block();
+			ticketService.updateTicketStatus(3l, Ticket.Status.DONE).block();
+			long ticket1Version = ticketService.getTicket(1l).block().getVersion();
+			long ticket3Version = ticketService.getTicket(3l).block().getVersion();
+			
+			Ticket staleTicket3 = new Ticket(3l, null, Ticket.Status.REJECTED, null, null, null, null);
+			staleTicket3.setVersion(ticket3Version + 1);
+			
+			List<BulkResult> results = ticketService.updateTicketStatuses(List.of(
+				new Ticket(1l, null, Ticket.Status.IN_PROGRESS, null, null, null, null),
+				new Ticket(2l, null, Ticket.Status.OPEN, null, null, null, null),
+				staleTicket3,
+				new Ticket(9l, null, Ticket.Status.DONE, null, null, null, null)
+			)).collectList().block();
+			
+			// Outcomes are returned in order
+			Assertions.assertEquals(List.of(1l, 2l, 3l, 9l), results.stream().map(BulkResult::getId).collect(Collectors.toList()));
+			Assertions.assertEquals(List.of(BulkResult.Outcome.UPDATED, BulkResult.Outcome.UNCHANGED, BulkResult.Outcome.VERSION_MISMATCH, BulkResult.Outcome.NOT_FOUND), results.stream().map(BulkResult::getOutcome).collect(Collectors.toList()));
+			Assertions.assertEquals(Long.valueOf(ticket1Version + 1), results.get(0).getVersion());
+			
+			// Only updated tickets are moved to their new status index
+			Ticket ticket1 = ticketService.getTicket(1l).block();
+			
+			Assertions.assertEquals(Ticket.Status.IN_PROGRESS, ticket1.getStatus());
+			Assertions.assertEquals(Long.valueOf(ticket1Version + 1), ticket1.getVersion());
+			Assertions.assertEquals(List.of(1l), ticketService.listTickets(List.of(Ticket.Status.IN_PROGRESS)).map(Ticket::getId).collectList().block());
+			Assertions.assertEquals(List.of(2l), ticketService.listTickets(List.of(Ticket.Status.OPEN)).map(Ticket::getId).collectList().block());
+			Assertions.assertEquals(List.of(3l), ticketService.listTickets(List.of(Ticket.Status.DONE)).map(Ticket::getId).collectList().block());
+			Assertions.assertEquals(Ticket.Status.DONE, ticketService.getTicket(3l).block().getStatus());
+			Assertions.assertNull(ticketService.getTicket(9l).block());
+			
+			staleTicket3.setVersion(ticket3Version);
+			results = ticketService.updateTicketStatuses(List.of(staleTicket3)).collectList().block();
+			
+			Assertions.assertEquals(BulkResult.Outcome.UPDATED, results.get(0).getOutcome());
+			Assertions.assertEquals(List.of(3l), ticketService.listTickets(List.of(Ticket.Status.REJECTED)).map(Ticket::getId).collectList().block());
+			Assertions.assertEquals(List.of(), ticketService.listTickets(List.of(Ticket.Status.DONE)).map(Ticket::getId).collectList().block());
+		}
+		finally {
+			client.close().block();
+			flushAll();
+		}
+	}
+	
+	
+	/**
+	 * Test of saveTicket method, of class TicketService.
+	 */
+	@Test
+	public void testCreateTicket() {
+		RedisTransactionalClient<String, String> client = createClient();
+		SearchService searchService = new SearchService(client);
+		TicketService ticketService = new TicketService(client, CODEC, searchService);
+		try (StatefulRedisConnection<String, String> connection = REDIS_CLIENT.connect(RedisURI.create("redis://localhost:6379"))) {
+			ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+			Ticket savedTicket = ticketService.saveTicket(new Ticket(null, Ticket.Type.BUG, Ticket.Status.DONE, "ticket 1", "Summary 1", "Description 1", now.minusDays(1))).block();
+			
+			// The id, the creation date time, the version and the status are set by the creation script
+			Assertions.assertEquals(1l, savedTicket.getId());
+			Assertions.assertEquals(1l, savedTicket.getVersion());
+			Assertions.assertEquals(Ticket.Status.OPEN, savedTicket.getStatus());
+			Assertions.assertTrue(Math.abs(ChronoUnit.SECONDS.between(now, savedTicket.getCreationDateTime())) < 5);
+			
+			String ticketKey = String.format(TicketService.REDIS_KEY_TICKET, 1l);
+			long creationDateTime = savedTicket.getCreationDateTime().toInstant().toEpochMilli();
+			
+			Assertions.assertEquals("1", connection.sync().get(TicketService.REDIS_KEY_TICKET_SEQ));
+			Assertions.assertEquals("1", connection.sync().hget(ticketKey, TicketHashCodec.FIELD_ID));
+			Assertions.assertEquals("1", connection.sync().hget(ticketKey, TicketHashCodec.FIELD_VERSION));
+			Assertions.assertEquals("OPEN", connection.sync().hget(ticketKey, TicketHashCodec.FIELD_STATUS));
+			Assertions.assertEquals(Long.toString(creationDateTime), connection.sync().hget(ticketKey, TicketHashCodec.FIELD_CREATION_DATE_TIME));
+			Assertions.assertEquals((double)creationDateTime, connection.sync().zscore(TicketService.REDIS_KEY_TICKET_OPEN, "1"));
+			
+			Ticket ticket = ticketService.getTicket(1l).block();
+			
+			Assertions.assertEquals("ticket 1", ticket.getTitle());
+			Assertions.assertEquals(Ticket.Type.BUG, ticket.getType());
+			Assertions.assertEquals(savedTicket.getCreationDateTime().toInstant(), ticket.getCreationDateTime().toInstant());
+			
+			// A ticket is never overwritten by a creation
+			connection.sync().hset(String.format(TicketService.REDIS_KEY_TICKET, 2l), TicketHashCodec.FIELD_TITLE, "existing ticket");
+			
+			Assertions.assertThrows(TicketException.class, () -> ticketService.saveTicket(new Ticket(null, Ticket.Type.FEATURE, Ticket.Status.OPEN, "ticket 2", "Summary 2", "Description 2", null)).block());
+			Assertions.assertEquals("existing ticket", connection.sync().hget(String.format(TicketService.REDIS_KEY_TICKET, 2l), TicketHashCodec.FIELD_TITLE));
+			Assertions.assertNull(connection.sync().zscore(TicketService.REDIS_KEY_TICKET_OPEN, "2"));
+			Assertions.assertEquals(3l, ticketService.saveTicket(new Ticket(null, Ticket.Type.FEATURE, Ticket.Status.OPEN, "ticket 3", "Summary 3", "Description 3", null)).block().getId());
+		}
+		finally {
+			client.close().block();
+			flushAll();
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2022 Jeremy KUHN
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.inverno.app.ticket.internal;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.inverno.app.ticket.internal.codec.CompactValueCodec;
+import io.inverno.app.ticket.internal.codec.FormatDetectingValueCodec;
+import io.inverno.app.ticket.internal.codec.JsonValueCodec;
+import io.inverno.app.ticket.internal.codec.ValueCodec;
+import io.inverno.app.ticket.internal.model.Note;
+import io.inverno.app.ticket.internal.model.Plan;
+import io.inverno.app.ticket.internal.model.Ticket;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author <a href="mailto:jeremy.kuhn@inverno.io">Jeremy Kuhn</a>
+ */
+public class ValueCodecTest {
+
+	private static final ObjectMapper MAPPER;
+	
+	static {
+		MAPPER = new ObjectMapper();
+		MAPPER.registerModule(new JavaTimeModule());
+		MAPPER.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+	}
+	
+	private static final JsonValueCodec JSON_CODEC = new JsonValueCodec(MAPPER);
+	
+	private static final CompactValueCodec COMPACT_CODEC = new CompactValueCodec(MAPPER);
+	
+	@Test
+	public void testCompactValueCodec() {
+		ZonedDateTime creationDateTime = ZonedDateTime.of(2022, 1, 15, 10, 30, 0, 123_000_000, ZoneOffset.UTC);
+		Ticket ticket = new Ticket(1l, Ticket.Type.FEATURE, Ticket.Status.OPEN, "Ticket title", "Ticket summary", "Ticket description", creationDateTime);
+		ticket.setVersion(3l);
+		
+		String compactTicket = COMPACT_CODEC.encode(ticket);
+		
+		Assertions.assertEquals("#1[1,\"FEATURE\",\"OPEN\",1642242600123,\"Ticket title\",\"Ticket summary\",\"Ticket description\",3]", compactTicket);
+		Assertions.assertTrue(compactTicket.length() < JSON_CODEC.encode(ticket).length());
+		
+		Ticket decodedTicket = COMPACT_CODEC.decode(compactTicket, Ticket.class);
+		
+		Assertions.assertEquals(1l, decodedTicket.getId());
+		Assertions.assertEquals(Ticket.Type.FEATURE, decodedTicket.getType());
+		Assertions.assertEquals(Ticket.Status.OPEN, decodedTicket.getStatus());
+		Assertions.assertEquals("Ticket title", decodedTicket.getTitle());
+		Assertions.assertEquals("Ticket summary", decodedTicket.getSummary());
+		Assertions.assertEquals("Ticket description", decodedTicket.getDescription());
+		Assertions.assertTrue(creationDateTime.isEqual(decodedTicket.getCreationDateTime()));
+		Assertions.assertEquals(3l, decodedTicket.getVersion());
+		
+		// Values encoded before the version was introduced
+		Assertions.assertNull(COMPACT_CODEC.decode("[1,\"FEATURE\",\"OPEN\",1642242600123,\"Ticket title\",\"Ticket summary\",\"Ticket description\"]", Ticket.class).getVersion());
+		
+		// Values encoded before the format version header was introduced
+		Assertions.assertEquals(3l, COMPACT_CODEC.decode("[1,\"FEATURE\",\"OPEN\",1642242600123,\"Ticket title\",\"Ticket summary\",\"Ticket description\",3]", Ticket.class).getVersion());
+		
+		Assertions.assertThrows(IllegalArgumentException.class, () -> COMPACT_CODEC.decode("#2[1,\"FEATURE\",\"OPEN\",1642242600123,\"Ticket title\",\"Ticket summary\",\"Ticket description\",3]", Ticket.class));
+		
+		Plan plan = new Plan(2l, "Plan title", "Plan summary", null, creationDateTime, null);
+		plan.setVersion(1l);
+		
+		Plan decodedPlan = COMPACT_CODEC.decode(COMPACT_CODEC.encode(plan), Plan.class);
+		
+		Assertions.assertEquals(2l, decodedPlan.getId());
+		Assertions.assertEquals("Plan title", decodedPlan.getTitle());
+		Assertions.assertEquals("Plan summary", decodedPlan.getSummary());
+		Assertions.assertNull(decodedPlan.getDescription());
+		Assertions.assertTrue(creationDateTime.isEqual(decodedPlan.getCreationDateTime()));
+		Assertions.assertEquals(1l, decodedPlan.getVersion());
+		
+		Note note = new Note(1l, null, "Note title", "Note content");
+		
+		Note decodedNote = COMPACT_CODEC.decode(COMPACT_CODEC.encode(note), Note.class);
+		
+		Assertions.assertEquals(1l, decodedNote.getTicketId());
+		Assertions.assertNull(decodedNote.getIndex());
+		Assertions.assertEquals("Note title", decodedNote.getTitle());
+		Assertions.assertEquals("Note content", decodedNote.getContent());
+		Assertions.assertNull(decodedNote.getVersion());
+	}
+	
+	@Test
+	public void testCompactValueFormat() {
+		// Compact values are decoded by position, changing the property order of a domain class requires a new format version
+		Assertions.assertEquals(1, CompactValueCodec.FORMAT_VERSION);
+		Assertions.assertArrayEquals(new String[] { "id", "type", "status", "creationDateTime", "title", "summary", "description", "version" }, Ticket.class.getAnnotation(JsonPropertyOrder.class).value());
+		Assertions.assertArrayEquals(new String[] { "id", "title", "summary", "description", "creationDateTime", "version" }, Plan.class.getAnnotation(JsonPropertyOrder.class).value());
+		Assertions.assertArrayEquals(new String[] { "ticketId", "index", "title", "content", "version" }, Note.class.getAnnotation(JsonPropertyOrder.class).value());
+	}
+	
+	@Test
+	public void testFormatDetectingValueCodec() {
+		ValueCodec codec = new FormatDetectingValueCodec(COMPACT_CODEC, JSON_CODEC, COMPACT_CODEC);
+		
+		ZonedDateTime creationDateTime = ZonedDateTime.now(ZoneOffset.UTC);
+		Ticket ticket = new Ticket(1l, Ticket.Type.ISSUE, Ticket.Status.DONE, "Ticket title", "Ticket summary", "Ticket description", creationDateTime);
+		
+		Assertions.assertEquals(COMPACT_CODEC.encode(ticket), codec.encode(ticket));
+		
+		Ticket jsonTicket = codec.decode(JSON_CODEC.encode(ticket), Ticket.class);
+		Ticket compactTicket = codec.decode(COMPACT_CODEC.encode(ticket), Ticket.class);
+		
+		Assertions.assertEquals(jsonTicket.getId(), compactTicket.getId());
+		Assertions.assertEquals(jsonTicket.getType(), compactTicket.getType());
+		Assertions.assertEquals(jsonTicket.getStatus(), compactTicket.getStatus());
+		Assertions.assertEquals(jsonTicket.getTitle(), compactTicket.getTitle());
+		Assertions.assertEquals(jsonTicket.getSummary(), compactTicket.getSummary());
+		Assertions.assertEquals(jsonTicket.getDescription(), compactTicket.getDescription());
+		Assertions.assertTrue(jsonTicket.getCreationDateTime().isEqual(compactTicket.getCreationDateTime()));
+		
+		Assertions.assertEquals(1l, codec.decode("[1,\"ISSUE\",\"DONE\",1642242600123,\"Ticket title\",\"Ticket summary\",\"Ticket description\"]", Ticket.class).getId());
+	}
+}